@@ -0,0 +1,132 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ds.uc2ool.model.Uc2oolModel.InputType;
+
+/**
+ * JMH benchmarks of the conversions a <code>Uc2oolModel</code> performs
+ * for each input, for a code point in the Basic Multilingual Plane and one
+ * in a supplementary plane. Run with the Ant <code>bench</code> target,
+ * which adds the gc profiler so that the allocation rate per operation is
+ * reported next to the throughput.
+ *
+ * The model's property database and name indexes are loaded in setup, so
+ * the one-off cost of loading them is not measured. The conversions are
+ * measured with the encoding cache both off and on.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Uc2oolModelBenchmark {
+
+    // The inputs for U+00E9 and U+1F600 in each input type
+    private static final String[][] INPUTS = {
+        // CHARACTER, UTF8, DECCODEPOINT, HEXCODEPOINT, NAME
+        { "\u00e9", "C3 A9", "233", "U+00E9",
+          "LATIN SMALL LETTER E WITH ACUTE" },
+        { "\uD83D\uDE00", "F0 9F 98 80", "128512", "U+1F600",
+          "GRINNING FACE" }
+    };
+
+    /**
+     * An input string to parse.
+     */
+    @State(Scope.Thread)
+    public static class Input {
+
+        @Param({ "BMP", "SUPPLEMENTARY" })
+        public String plane;
+
+        @Param({ "CHARACTER", "UTF8", "DECCODEPOINT", "HEXCODEPOINT",
+                 "NAME" })
+        public InputType type;
+
+        Uc2oolModel m_model;
+        String m_input;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            m_model = model();
+            m_input = INPUTS[plane.equals("BMP") ? 0 : 1][type.ordinal()];
+        }
+    }
+
+    /**
+     * A model already holding a code point to convert.
+     */
+    @State(Scope.Thread)
+    public static class Converted {
+
+        @Param({ "BMP", "SUPPLEMENTARY" })
+        public String plane;
+
+        @Param({ "false", "true" })
+        public boolean encodingCache;
+
+        Uc2oolModel m_model;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Uc2oolModel.setEncodingCacheEnabled(encodingCache);
+            m_model = model();
+            m_model.setInput(plane.equals("BMP") ? "E9" : "1F600",
+                             InputType.HEXCODEPOINT);
+        }
+    }
+
+    // A model with the shared Unicode data already loaded
+    private static Uc2oolModel model() {
+        Uc2oolModel.preloadNameIndexes();
+        return new Uc2oolModel(Logger.getLogger("Uc2oolModelBenchmark"));
+    }
+
+    @Benchmark
+    public Uc2oolModel setInput(Input in) {
+        in.m_model.setInput(in.m_input, in.type);
+        return in.m_model;
+    }
+
+    @Benchmark
+    public String getUTF8Encoding(Converted c) {
+        return c.m_model.getUTF8Encoding();
+    }
+
+    @Benchmark
+    public String getUTF16Encoding(Converted c) {
+        return c.m_model.getUTF16Encoding();
+    }
+
+    @Benchmark
+    public String getUnicodeCharacterName(Converted c) {
+        return c.m_model.getUnicodeCharacterName();
+    }
+
+    @Benchmark
+    public String getUnicodeCharacter(Converted c) {
+        return c.m_model.getUnicodeCharacter();
+    }
+}
@@ -0,0 +1,449 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.debug;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * AsyncHandler writes log records to a rotating set of files, as a
+ * <code>java.util.logging.FileHandler</code> does, but off the logging
+ * thread. Publishing a record only places it in a bounded ring; a single
+ * background thread takes records from the ring, formats them and gathers
+ * the text into large writes. A write is made when
+ * <code>BUFFER_SIZE</code> bytes are gathered, when the oldest record
+ * gathered has waited <code>flushMillis</code>, or on flush or close.
+ *
+ * The ring is lock-free: each slot carries a sequence number, producers
+ * claim a slot with a single compare-and-set and the writer is the only
+ * consumer. When the ring is full the <code>OverflowPolicy</code> decides
+ * whether a record is dropped, which is counted and reported in the log
+ * once the writer catches up, or the publishing thread waits for space.
+ *
+ * File names follow the patterns of FileHandler: %t is the temporary
+ * directory, %h the user's home, %g the generation number and %% a
+ * percent sign. Unlike FileHandler no lock file is kept, so two processes
+ * must not share a pattern. A shutdown hook closes the handler, writing
+ * every record published before it.
+ *
+ * The source class and method of a record are found, where the caller did
+ * not give them, when it is published, because once on the writer thread
+ * the caller's frames are gone.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class AsyncHandler extends Handler {
+
+    /**
+     * What to do with a record published while the ring is full.
+     */
+    public enum OverflowPolicy {
+        /** Discard the record, counting it. */
+        DROP,
+        /** Wait for the writer to make space. */
+        BLOCK
+    }
+
+    /**
+     * The number of records the ring holds unless another is given.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * The most milliseconds a record waits to be written unless another
+     * is given.
+     */
+    public static final int DEFAULT_FLUSH_MILLIS = 200;
+
+    /**
+     * The bytes gathered before they are written.
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    // How long a blocked publisher waits before looking for space again
+    private static final long BLOCK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final String m_pattern;
+    private final long m_limit;
+    private final int m_count;
+    private final OverflowPolicy m_policy;
+    private final long m_flushNanos;
+
+    // The ring. A slot whose sequence equals the next claim is free; one
+    // whose sequence is one more holds a record for the writer
+    private final int m_mask;
+    private final AtomicReferenceArray<LogRecord> m_records;
+    private final AtomicLongArray m_sequence;
+    private final AtomicLong m_tail = new AtomicLong();
+    // Written only by the writer thread
+    private volatile long m_head;
+    // The records taken from the ring whose text has been written
+    private volatile long m_written;
+    private volatile long m_flushTarget = -1;
+    private volatile boolean m_closed;
+    private final AtomicLong m_dropped = new AtomicLong();
+    private volatile long m_droppedTotal;
+
+    // Owned by the writer thread
+    private final Thread m_writer;
+    private final Thread m_shutdownHook;
+    private byte[] m_buffer = new byte[BUFFER_SIZE];
+    private int m_length;
+    private long m_firstBuffered;
+    private FileOutputStream m_out;
+    private long m_size;
+
+    /**
+     * Create a handler with the default capacity and flush time, blocking
+     * when the ring is full.
+     *
+     * @param pattern the pattern of the file names
+     * @param limit the most bytes written to a file before the files are
+     *              rotated, or 0 for no limit
+     * @param count the number of files
+     * @param append true to append to an existing first file
+     * @throws IOException if the first file cannot be opened
+     */
+    public AsyncHandler(String pattern, int limit, int count, boolean append)
+    throws IOException {
+        this(pattern, limit, count, append, DEFAULT_CAPACITY,
+             OverflowPolicy.BLOCK, DEFAULT_FLUSH_MILLIS);
+    }
+
+    /**
+     * Create a handler.
+     *
+     * @param pattern the pattern of the file names
+     * @param limit the most bytes written to a file before the files are
+     *              rotated, or 0 for no limit
+     * @param count the number of files
+     * @param append true to append to an existing first file
+     * @param capacity the records the ring holds, rounded up to a power of
+     *                 two
+     * @param policy what to do with a record published when the ring is
+     *               full
+     * @param flushMillis the most milliseconds a record waits to be
+     *                    written, at least 1 as the writer sleeps this long
+     *                    when idle
+     * @throws IOException if the first file cannot be opened
+     */
+    public AsyncHandler(String pattern, int limit, int count, boolean append,
+                        int capacity, OverflowPolicy policy, int flushMillis)
+    throws IOException {
+        if (limit < 0 || count < 1 || capacity < 1 || flushMillis < 1) {
+            throw new IllegalArgumentException();
+        }
+        m_pattern = pattern;
+        m_limit = limit == 0 ? Long.MAX_VALUE : limit;
+        m_count = count;
+        m_policy = policy;
+        m_flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        m_mask = size - 1;
+        m_records = new AtomicReferenceArray<>(size);
+        m_sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            m_sequence.set(i, i);
+        }
+        setFormatter(new DebugFormatter());
+        File f = file(0);
+        m_size = append ? f.length() : 0;
+        m_out = new FileOutputStream(f, append);
+
+        m_writer = new Thread(this::drain, "ds.debug.AsyncHandler");
+        m_writer.setDaemon(true);
+        m_writer.start();
+        m_shutdownHook = new Thread(this::close);
+        Runtime.getRuntime().addShutdownHook(m_shutdownHook);
+    }
+
+    @Override
+    public void publish(LogRecord r) {
+        if (m_closed || !isLoggable(r)) {
+            return;
+        }
+        // Find the caller while still on its thread
+        r.getSourceMethodName();
+        while (!offer(r)) {
+            if (m_policy == OverflowPolicy.DROP) {
+                m_dropped.incrementAndGet();
+                return;
+            }
+            LockSupport.unpark(m_writer);
+            LockSupport.parkNanos(this, BLOCK_NANOS);
+            if (m_closed) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Write every record published before this call, waiting until it is
+     * written.
+     */
+    @Override
+    public void flush() {
+        long target = m_tail.get();
+        if (Thread.currentThread() == m_writer || m_written >= target) {
+            return;
+        }
+        m_flushTarget = target;
+        LockSupport.unpark(m_writer);
+        while (m_written < target && m_writer.isAlive()) {
+            LockSupport.parkNanos(this, BLOCK_NANOS);
+        }
+    }
+
+    /**
+     * Write every record published, stop the writer and close the file.
+     * Records published afterwards are ignored.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (m_closed) {
+                return;
+            }
+            m_closed = true;
+        }
+        LockSupport.unpark(m_writer);
+        boolean interrupted = false;
+        while (m_writer.isAlive()) {
+            try {
+                m_writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (Thread.currentThread() != m_shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(m_shutdownHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down
+            }
+        }
+    }
+
+    /**
+     * @return the number of records dropped because the ring was full
+     */
+    public long getDroppedCount() {
+        return m_droppedTotal + m_dropped.get();
+    }
+
+    // Place a record in the ring, or return false if it is full
+    private boolean offer(LogRecord r) {
+        while (true) {
+            long t = m_tail.get();
+            int slot = (int) t & m_mask;
+            long seq = m_sequence.get(slot);
+            if (seq == t) {
+                if (m_tail.compareAndSet(t, t + 1)) {
+                    m_records.lazySet(slot, r);
+                    m_sequence.set(slot, t + 1);
+                    // Wake the writer early once the ring is half full
+                    if (t - m_head == (m_mask + 1) / 2) {
+                        LockSupport.unpark(m_writer);
+                    }
+                    return true;
+                }
+            } else if (seq < t) {
+                return false;
+            }
+        }
+    }
+
+    // Take the next record from the ring, or null if it is empty
+    private LogRecord poll() {
+        long h = m_head;
+        int slot = (int) h & m_mask;
+        if (m_sequence.get(slot) != h + 1) {
+            return null;
+        }
+        LogRecord r = m_records.get(slot);
+        m_records.lazySet(slot, null);
+        m_sequence.set(slot, h + m_mask + 1);
+        m_head = h + 1;
+        return r;
+    }
+
+    // The body of the writer thread
+    private void drain() {
+        while (true) {
+            boolean closing = m_closed;
+            boolean taken = false;
+            for (LogRecord r; (r = poll()) != null;) {
+                taken = true;
+                gather(r);
+            }
+            long dropped = m_dropped.getAndSet(0);
+            if (dropped > 0) {
+                m_droppedTotal += dropped;
+                LogRecord r = new LogRecord(Level.WARNING, dropped +
+                    " log records dropped with the ring full");
+                r.setSourceClassName(AsyncHandler.class.getName());
+                r.setSourceMethodName("publish");
+                gather(r);
+            }
+            long now = System.nanoTime();
+            if (m_length > 0 && (closing || m_flushTarget >= 0 ||
+                                 now - m_firstBuffered >= m_flushNanos)) {
+                write();
+            }
+            if (m_length == 0) {
+                m_written = m_head;
+                if (m_flushTarget >= 0 && m_written >= m_flushTarget) {
+                    m_flushTarget = -1;
+                }
+            }
+            if (closing && m_head == m_tail.get()) {
+                break;
+            }
+            if (!taken) {
+                LockSupport.parkNanos(this, m_length == 0 ? m_flushNanos
+                    : m_flushNanos - (now - m_firstBuffered));
+            }
+        }
+        try {
+            m_out.close();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    // Format a record into the buffer, writing out the buffer and rotating
+    // the files first if need be
+    private void gather(LogRecord r) {
+        byte[] b;
+        try {
+            String s = getFormatter().format(r);
+            b = s.getBytes(charset());
+        } catch (RuntimeException | UnsupportedEncodingException e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+            return;
+        }
+        if (m_length + b.length > m_buffer.length ||
+            m_size + m_length + b.length > m_limit) {
+            write();
+        }
+        if (m_size > 0 && m_size + b.length > m_limit) {
+            rotate();
+        }
+        if (b.length > m_buffer.length) {
+            m_buffer = new byte[b.length];
+        }
+        if (m_length == 0) {
+            m_firstBuffered = System.nanoTime();
+        }
+        System.arraycopy(b, 0, m_buffer, m_length, b.length);
+        m_length += b.length;
+    }
+
+    private void write() {
+        if (m_length == 0) {
+            return;
+        }
+        try {
+            m_out.write(m_buffer, 0, m_length);
+            m_size += m_length;
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+        m_length = 0;
+    }
+
+    // Shift each file to the next generation and start a new first file
+    private void rotate() {
+        try {
+            m_out.close();
+            for (int g = m_count - 2; g >= 0; g--) {
+                File from = file(g);
+                if (from.exists()) {
+                    File to = file(g + 1);
+                    to.delete();
+                    from.renameTo(to);
+                }
+            }
+            m_out = new FileOutputStream(file(0), false);
+            m_size = 0;
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.OPEN_FAILURE);
+        }
+    }
+
+    private Charset charset() throws UnsupportedEncodingException {
+        String encoding = getEncoding();
+        if (encoding == null) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedEncodingException(encoding);
+        }
+    }
+
+    // The name of a generation of the files
+    File file(int generation) {
+        return file(m_pattern, generation, m_count);
+    }
+
+    /*
+     * Expand a FileHandler style pattern into the name of one generation
+     * of a set of count files.
+     */
+    static File file(String pattern, int generation, int count) {
+        StringBuilder sb = new StringBuilder();
+        boolean sawGeneration = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            char next = i + 1 < pattern.length() ? pattern.charAt(i + 1)
+                                                   : 0;
+            if (c != '%' || next == 0) {
+                sb.append(c);
+                continue;
+            }
+            i++;
+            switch (next) {
+                case 't':
+                    sb.append(System.getProperty("java.io.tmpdir"));
+                    break;
+                case 'h':
+                    sb.append(System.getProperty("user.home"));
+                    break;
+                case 'g':
+                    sb.append(generation);
+                    sawGeneration = true;
+                    break;
+                case 'u':
+                    sb.append('0');
+                    break;
+                default:
+                    sb.append(next);
+            }
+        }
+        if (!sawGeneration && count > 1) {
+            sb.append('.').append(generation);
+        }
+        return new File(sb.toString());
+    }
+}
@@ -0,0 +1,319 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.debug;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * BinaryTraceHandler writes log records to a compact binary trace file,
+ * to be read back by <code>BinaryTraceReader</code>. A record holds its
+ * time, level and thread, the ids of its source class and method, its
+ * message and the text of its parameters. Class and method names, and
+ * the messages of records with parameters, which are patterns logged
+ * again and again, are each written once and referred to afterwards by
+ * id, so a record takes 30 bytes besides the text of its arguments, where
+ * a DebugFormatter line repeats the date, names and pattern every time.
+ *
+ * The file is written through a memory mapping of <code>REGION_SIZE</code>
+ * bytes, remapped further on as it fills, so publishing a record is a
+ * copy into memory with no system call. Once published a record is in
+ * the page cache and survives the process dying; a file not closed
+ * normally just ends in zeros, which the reader takes as its end. Closing
+ * the handler trims the file to what was written.
+ *
+ * Like a FileHandler's the files are named by a pattern and rotated by
+ * generation: opening the handler, or the first file reaching the size
+ * limit, shifts each existing file to the next generation, discarding the
+ * last, and starts a new first file. Each file stands alone, with its own
+ * names and patterns.
+ *
+ * A mapping is only released when it is garbage collected, so the file
+ * may still be mapped when it is trimmed or renamed. Platforms such as
+ * Windows refuse both, leaving an untrimmed file ending in zeros or a
+ * generation not shifted. Such failures are reported to the ErrorManager,
+ * and if a new first file cannot be opened it is tried again by the next
+ * record published, so records are not dropped unreported.
+ *
+ * <pre>
+ *   file    := magic:int=0x44535452 version:short=1 0:short entry* 0:byte
+ *   entry   := 1:byte id:int string               a name or pattern
+ *            | 2:byte millis:long level:int thread:int class:int
+ *              method:int message:int [string] count:byte string*
+ *   string  := length:int utf8:byte[length]       length -1 for null
+ * </pre>
+ * An id of -1 stands for a null name; a message id of -1 is followed by
+ * the message itself. Numbers are big-endian.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class BinaryTraceHandler extends Handler {
+
+    /**
+     * The first four bytes of a trace file, "DSTR".
+     */
+    public static final int MAGIC = 0x44535452;
+
+    /**
+     * The version of the format written.
+     */
+    public static final short VERSION = 1;
+
+    /**
+     * The bytes mapped at a time.
+     */
+    public static final int REGION_SIZE = 1 << 20;
+
+    static final byte END = 0;
+    static final byte STRING = 1;
+    static final byte EVENT = 2;
+
+    private final String m_pattern;
+    private final long m_limit;
+    private final int m_count;
+    private final int m_regionSize;
+    private final Map<String, Integer> m_ids = new HashMap<>();
+    private FileChannel m_channel;
+    private MappedByteBuffer m_buffer;
+    // The file offset at which m_buffer is mapped
+    private long m_mapped;
+    private boolean m_closed;
+
+    /**
+     * Create a handler writing to a single file of no size limit.
+     *
+     * @param file the file, replaced if it exists
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public BinaryTraceHandler(File file) throws IOException {
+        this(file.getPath().replace("%", "%%"), 0, 1);
+    }
+
+    /**
+     * Create a handler writing to a rotating set of files.
+     *
+     * @param pattern the FileHandler style pattern of the file names
+     * @param limit the bytes written to a file before the files are
+     *              rotated, or 0 for no limit
+     * @param count the number of files
+     * @throws IOException if the first file cannot be created or mapped
+     */
+    public BinaryTraceHandler(String pattern, int limit, int count)
+    throws IOException {
+        this(pattern, limit, count, REGION_SIZE);
+    }
+
+    /*
+     * Create a handler mapping regionSize bytes at a time.
+     */
+    BinaryTraceHandler(String pattern, int limit, int count, int regionSize)
+    throws IOException {
+        if (limit < 0 || count < 1 || regionSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        m_pattern = pattern;
+        m_limit = limit == 0 ? Long.MAX_VALUE : limit;
+        m_count = count;
+        m_regionSize = regionSize;
+        shift();
+        open();
+    }
+
+    @Override
+    public synchronized void publish(LogRecord r) {
+        if (m_closed || !isLoggable(r)) {
+            return;
+        }
+        if (m_buffer == null) {
+            // The last rotation could not open a file
+            try {
+                open();
+            } catch (IOException e) {
+                reportError(null, e, ErrorManager.OPEN_FAILURE);
+                return;
+            }
+        }
+        try {
+            int classId = id(r.getSourceClassName());
+            int methodId = id(r.getSourceMethodName());
+            Object[] params = r.getParameters();
+            int count = params == null ? 0 : Math.min(params.length, 255);
+            // Only patterns are shared; a plain message is written inline
+            int messageId = count > 0 ? id(r.getMessage()) : -1;
+            byte[] message = messageId < 0 ? utf8(r.getMessage()) : null;
+            byte[][] args = new byte[count][];
+            int size = 1 + 8 + 4 * 5 + 1;
+            if (messageId < 0) {
+                size += 4 + (message == null ? 0 : message.length);
+            }
+            for (int i = 0; i < count; i++) {
+                args[i] = utf8(params[i] == null ? null
+                                                 : String.valueOf(params[i]));
+                size += 4 + (args[i] == null ? 0 : args[i].length);
+            }
+            reserve(size);
+            m_buffer.put(EVENT).putLong(r.getMillis())
+                    .putInt(r.getLevel().intValue())
+                    .putInt(r.getThreadID()).putInt(classId)
+                    .putInt(methodId).putInt(messageId);
+            if (messageId < 0) {
+                putString(message);
+            }
+            m_buffer.put((byte) count);
+            for (byte[] a : args) {
+                putString(a);
+            }
+        } catch (IOException | RuntimeException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+            return;
+        }
+        if (m_mapped + m_buffer.position() >= m_limit) {
+            try {
+                finish();
+            } catch (IOException e) {
+                reportError(null, e, ErrorManager.CLOSE_FAILURE);
+            }
+            shift();
+            try {
+                open();
+            } catch (IOException e) {
+                reportError(null, e, ErrorManager.OPEN_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * Published records are already in the page cache, so there is
+     * nothing to flush.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Close the file, trimming it to the records written.
+     */
+    @Override
+    public synchronized void close() {
+        if (m_closed) {
+            return;
+        }
+        m_closed = true;
+        try {
+            finish();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    // The name of a generation of the files
+    File file(int generation) {
+        return AsyncHandler.file(m_pattern, generation, m_count);
+    }
+
+    // Start a new first file
+    private void open() throws IOException {
+        m_ids.clear();
+        m_mapped = 0;
+        m_channel = FileChannel.open(file(0).toPath(),
+                                     StandardOpenOption.CREATE,
+                                     StandardOpenOption.READ,
+                                     StandardOpenOption.WRITE,
+                                     StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            m_buffer = m_channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                     regionSize(8));
+        } catch (IOException e) {
+            m_channel.close();
+            throw e;
+        }
+        m_buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+    }
+
+    // Trim and close the current file
+    private void finish() throws IOException {
+        if (m_buffer == null) {
+            return;
+        }
+        long end = m_mapped + m_buffer.position();
+        m_buffer.force();
+        m_buffer = null;
+        try {
+            // Leave a zero after the last entry, as the format requires
+            m_channel.truncate(end + 1);
+        } finally {
+            m_channel.close();
+        }
+    }
+
+    // Shift each file to the next generation, freeing the first
+    private void shift() {
+        for (int g = m_count - 2; g >= 0; g--) {
+            File from = file(g);
+            if (from.exists()) {
+                File to = file(g + 1);
+                if ((to.exists() && !to.delete()) || !from.renameTo(to)) {
+                    reportError(null, new IOException("Cannot rename " +
+                                                      from + " to " + to),
+                                ErrorManager.GENERIC_FAILURE);
+                }
+            }
+        }
+    }
+
+    // The bytes to map for an entry of size bytes and the end marker,
+    // mapping no further than the size limit unless the entry needs it
+    private long regionSize(int size) {
+        return Math.max(size + 1L, Math.min(m_regionSize, m_limit - m_mapped));
+    }
+
+    // Get the id of a name or pattern, writing it first if it is new
+    private int id(String s) throws IOException {
+        if (s == null) {
+            return -1;
+        }
+        Integer id = m_ids.get(s);
+        if (id == null) {
+            id = m_ids.size();
+            byte[] b = utf8(s);
+            reserve(1 + 4 + 4 + b.length);
+            m_buffer.put(STRING).putInt(id);
+            putString(b);
+            m_ids.put(s, id);
+        }
+        return id;
+    }
+
+    // Make sure the mapping has room for size bytes and the end marker
+    private void reserve(int size) throws IOException {
+        if (m_buffer.remaining() < size + 1) {
+            m_mapped += m_buffer.position();
+            m_buffer = m_channel.map(FileChannel.MapMode.READ_WRITE,
+                                     m_mapped, regionSize(size));
+        }
+    }
+
+    private void putString(byte[] b) {
+        if (b == null) {
+            m_buffer.putInt(-1);
+        } else {
+            m_buffer.putInt(b.length).put(b);
+        }
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+}
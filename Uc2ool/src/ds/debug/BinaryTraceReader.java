@@ -0,0 +1,265 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.debug;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * BinaryTraceReader decodes the trace files written by
+ * <code>BinaryTraceHandler</code> back into log records. Run from the
+ * command line it writes the records of one or more files, as filtered by
+ * its options, in the text format of <code>DebugFormatter</code>:
+ * <pre>
+ *   java ds.debug.BinaryTraceReader [--level FINE] [--class Uc2oolModel]
+ *        [--method setInput] [--thread 1] [--grep text] file...
+ * </pre>
+ * --level keeps records at or above a level, --class and --method those
+ * whose source names contain the given text, --thread those of a thread
+ * id and --grep those whose formatted message contains the given text.
+ *
+ * The file is mapped a window of <code>WINDOW_SIZE</code> bytes at a time,
+ * so traces of any length can be read.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class BinaryTraceReader implements Closeable {
+
+    /**
+     * The bytes mapped at a time.
+     */
+    public static final int WINDOW_SIZE = 1 << 26;
+
+    private static final String USAGE =
+        "Usage: java ds.debug.BinaryTraceReader [--level <level>] " +
+        "[--class <text>] [--method <text>] [--thread <id>] " +
+        "[--grep <text>] file...";
+
+    private final FileChannel m_channel;
+    private final long m_size;
+    private final int m_windowSize;
+    private final List<String> m_strings = new ArrayList<>();
+    private ByteBuffer m_buffer;
+    // The file offset at which m_buffer is mapped
+    private long m_mapped;
+    private boolean m_end;
+
+    /**
+     * Open a trace file.
+     *
+     * @param file the file
+     * @throws IOException if it cannot be read or is not a trace file
+     */
+    public BinaryTraceReader(File file) throws IOException {
+        this(file, WINDOW_SIZE);
+    }
+
+    /*
+     * Open a trace file mapping windowSize bytes at a time.
+     */
+    BinaryTraceReader(File file, int windowSize) throws IOException {
+        m_windowSize = windowSize;
+        m_channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        m_size = m_channel.size();
+        m_buffer = ByteBuffer.allocate(0);
+        try {
+            if (m_size < 8 ||
+                ensure(8).getInt() != BinaryTraceHandler.MAGIC) {
+                throw new IOException(file + ": not a trace file");
+            }
+            short version = m_buffer.getShort();
+            m_buffer.getShort();
+            if (version != BinaryTraceHandler.VERSION) {
+                throw new IOException(file + ": unknown version " + version);
+            }
+        } catch (IOException e) {
+            m_channel.close();
+            throw e;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Level level = Level.ALL;
+        String cls = null;
+        String method = null;
+        Integer thread = null;
+        String grep = null;
+        int first = 0;
+        try {
+            for (; first < args.length && args[first].startsWith("--");
+                 first++) {
+                switch (args[first]) {
+                    case "--level":
+                        level = Level.parse(args[++first]);
+                        break;
+                    case "--class":
+                        cls = args[++first];
+                        break;
+                    case "--method":
+                        method = args[++first];
+                        break;
+                    case "--thread":
+                        thread = Integer.valueOf(args[++first]);
+                        break;
+                    case "--grep":
+                        grep = args[++first];
+                        break;
+                    default:
+                        throw new IllegalArgumentException(args[first]);
+                }
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            first = args.length;
+        }
+        if (first >= args.length) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        DebugFormatter f = new DebugFormatter();
+        Writer out = new BufferedWriter(
+            new OutputStreamWriter(System.out, StandardCharsets.UTF_8),
+            64 * 1024);
+        for (int i = first; i < args.length; i++) {
+            try (BinaryTraceReader reader =
+                     new BinaryTraceReader(new File(args[i]))) {
+                for (LogRecord r; (r = reader.next()) != null;) {
+                    if (r.getLevel().intValue() < level.intValue() ||
+                        !contains(r.getSourceClassName(), cls) ||
+                        !contains(r.getSourceMethodName(), method) ||
+                        (thread != null && r.getThreadID() != thread) ||
+                        (grep != null &&
+                         !f.formatMessage(r).contains(grep))) {
+                        continue;
+                    }
+                    out.write(f.format(r));
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return the record, or null at the end of the file
+     * @throws IOException if the file is corrupt
+     */
+    public LogRecord next() throws IOException {
+        try {
+            while (!m_end && m_mapped + m_buffer.position() < m_size) {
+                byte type = ensure(1).get();
+                if (type == BinaryTraceHandler.END) {
+                    break;
+                } else if (type == BinaryTraceHandler.STRING) {
+                    int id = ensure(4).getInt();
+                    if (id != m_strings.size()) {
+                        throw corrupt();
+                    }
+                    m_strings.add(getString());
+                } else if (type == BinaryTraceHandler.EVENT) {
+                    return event();
+                } else {
+                    throw corrupt();
+                }
+            }
+            // Stay at the end however often called
+            m_end = true;
+            return null;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw corrupt();
+        }
+    }
+
+    /**
+     * Close the file.
+     *
+     * @throws IOException if it cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        m_channel.close();
+    }
+
+    /*
+     * Get the mapping with at least n bytes remaining from the current
+     * offset, mapping a new window there if need be.
+     */
+    private ByteBuffer ensure(int n) throws IOException {
+        if (m_buffer.remaining() < n) {
+            long offset = m_mapped + m_buffer.position();
+            if (n < 0 || offset + n > m_size) {
+                throw new BufferUnderflowException();
+            }
+            m_buffer = m_channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                                     Math.min(Math.max(n, m_windowSize),
+                                              m_size - offset));
+            m_mapped = offset;
+        }
+        return m_buffer;
+    }
+
+    private LogRecord event() throws IOException {
+        ensure(8 + 4 * 5);
+        long millis = m_buffer.getLong();
+        Level level = Level.parse(Integer.toString(m_buffer.getInt()));
+        int thread = m_buffer.getInt();
+        String cls = string(m_buffer.getInt());
+        String method = string(m_buffer.getInt());
+        int messageId = m_buffer.getInt();
+        String message = messageId < 0 ? getString() : string(messageId);
+        int count = ensure(1).get() & 0xff;
+        LogRecord r = new LogRecord(level, message);
+        r.setMillis(millis);
+        r.setThreadID(thread);
+        r.setSourceClassName(cls);
+        r.setSourceMethodName(method);
+        if (count > 0) {
+            String[] params = new String[count];
+            for (int i = 0; i < count; i++) {
+                params[i] = getString();
+            }
+            r.setParameters(params);
+        }
+        return r;
+    }
+
+    private String string(int id) {
+        return id < 0 ? null : m_strings.get(id);
+    }
+
+    private String getString() throws IOException {
+        int length = ensure(4).getInt();
+        if (length < 0) {
+            return null;
+        }
+        ByteBuffer buffer = ensure(length);
+        byte[] b = new byte[length];
+        buffer.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private IOException corrupt() {
+        return new IOException("Corrupt trace at offset " +
+                               (m_mapped + m_buffer.position()));
+    }
+
+    private static boolean contains(String s, String part) {
+        return part == null || (s != null && s.contains(part));
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.debug;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Counter is a named count kept by <code>Metrics</code>, such as the
+ * number of inputs that failed validation. It is a LongAdder, so threads
+ * counting at once do not contend, and counts nothing while metrics are
+ * disabled.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class Counter implements CounterMBean {
+
+    private final String m_name;
+    private final LongAdder m_count = new LongAdder();
+
+    Counter(String name) {
+        m_name = name;
+    }
+
+    /**
+     * Add one, if metrics are enabled.
+     */
+    public void increment() {
+        if (Metrics.isEnabled()) {
+            m_count.increment();
+        }
+    }
+
+    /**
+     * Add to the count, if metrics are enabled.
+     *
+     * @param n the amount to add
+     */
+    public void add(long n) {
+        if (Metrics.isEnabled()) {
+            m_count.add(n);
+        }
+    }
+
+    /**
+     * @return the name of the counter
+     */
+    public String getName() {
+        return m_name;
+    }
+
+    @Override
+    public long getCount() {
+        return m_count.sum();
+    }
+
+    @Override
+    public void reset() {
+        m_count.reset();
+    }
+
+    @Override
+    public String toString() {
+        return m_name + " count=" + getCount();
+    }
+}
@@ -0,0 +1,24 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.debug;
+
+/**
+ * The JMX management interface of a <code>Counter</code>.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public interface CounterMBean {
+
+    /**
+     * @return the count
+     */
+    long getCount();
+
+    /**
+     * Set the count back to zero.
+     */
+    void reset();
+}
@@ -3,33 +3,125 @@
  */
 package ds.debug;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.logging.Formatter;
 import java.util.logging.LogRecord;
 
 /**
  * DebugFormatter provides a very simple log format where a single record is
  * logged to a single trace log line.
- * 
+ *
+ * It is thread-safe and allocates little beyond the line it returns. Each
+ * thread keeps a reusable builder and the text of the last second it
+ * formatted, up to the seconds and with the zone offset, so records logged
+ * within the same second only add their milliseconds. Parameters of a
+ * record replace {0} to {9} in its message.
+ *
  * @author      Daniel Semler
  * @version     %I%, %G%
  * @since       1.0
  */
 public class DebugFormatter extends Formatter {
 
-    private final static SimpleDateFormat s_tmFormat =
-            new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
-    
+    private final static DateTimeFormatter s_secondFormat =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private final static DateTimeFormatter s_offsetFormat =
+            DateTimeFormatter.ofPattern("Z");
+    // A builder grown past this by a long message is not kept
+    private final static int MAX_KEPT_CAPACITY = 8192;
+
+    private final ZoneId m_zone = ZoneId.systemDefault();
+    private final ThreadLocal<State> m_state =
+            ThreadLocal.withInitial(State::new);
+
     @Override
     public String format(LogRecord r) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(s_tmFormat.format(new Date(r.getMillis()))).append(" ");
+        State s = m_state.get();
+        StringBuilder sb = s.m_sb;
+        sb.setLength(0);
+        appendTime(s, r.getMillis());
+        sb.append(" ");
         sb.append(r.getSourceClassName()).append(".");
         sb.append(r.getSourceMethodName()).append(" ");
-        sb.append(r.getLevel()).append(" ").append(r.getMessage());
+        sb.append(r.getLevel()).append(" ");
+        appendMessage(sb, r.getMessage(), r.getParameters());
         sb.append("\n");
+        String line = sb.toString();
+        if (sb.capacity() > MAX_KEPT_CAPACITY) {
+            s.m_sb = new StringBuilder(256);
+        }
+        return line;
+    }
+
+    /**
+     * Get the message of a record with {0} to {9} in it replaced by the
+     * text of its parameters. Unlike the MessageFormat of the default
+     * formatter nothing else in the message is treated specially, and a
+     * message without parameters is returned as it is.
+     *
+     * @param r the record
+     * @return the message
+     */
+    @Override
+    public String formatMessage(LogRecord r) {
+        Object[] params = r.getParameters();
+        if (params == null || params.length == 0) {
+            return r.getMessage();
+        }
+        StringBuilder sb = new StringBuilder();
+        appendMessage(sb, r.getMessage(), params);
         return sb.toString();
     }
 
+    /*
+     * Append a message with {0} to {9} replaced by the text of the
+     * parameters. Other braces, and those of missing parameters, are left
+     * as they are.
+     */
+    static void appendMessage(StringBuilder sb, String message,
+                              Object[] params) {
+        if (params == null || params.length == 0 || message == null) {
+            sb.append(message);
+            return;
+        }
+        int last = 0;
+        for (int i = message.indexOf('{'); i >= 0 && i + 2 < message.length();
+             i = message.indexOf('{', i + 1)) {
+            int n = message.charAt(i + 1) - '0';
+            if (n >= 0 && n < params.length && message.charAt(i + 2) == '}') {
+                sb.append(message, last, i).append(String.valueOf(params[n]));
+                last = i + 3;
+                i += 2;
+            }
+        }
+        sb.append(message, last, message.length());
+    }
+
+    // Append a time as yyyy-MM-dd'T'HH:mm:ss.SSSZ
+    private void appendTime(State s, long millis) {
+        long second = Math.floorDiv(millis, 1000);
+        if (second != s.m_second) {
+            ZonedDateTime t = Instant.ofEpochSecond(second).atZone(m_zone);
+            s.m_secondText = s_secondFormat.format(t);
+            s.m_offsetText = s_offsetFormat.format(t);
+            s.m_second = second;
+        }
+        int ms = (int) Math.floorMod(millis, 1000L);
+        s.m_sb.append(s.m_secondText).append('.')
+              .append((char) ('0' + ms / 100))
+              .append((char) ('0' + ms / 10 % 10))
+              .append((char) ('0' + ms % 10))
+              .append(s.m_offsetText);
+    }
+
+    // The reusable state of one thread
+    private static final class State {
+        StringBuilder m_sb = new StringBuilder(256);
+        long m_second = Long.MIN_VALUE;
+        String m_secondText;
+        String m_offsetText;
+    }
 }
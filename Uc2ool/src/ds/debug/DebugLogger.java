@@ -4,8 +4,10 @@
 package ds.debug;
 
 import java.io.IOException;
+import java.util.function.Supplier;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
+import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
 /**
@@ -15,6 +17,28 @@ import java.util.logging.Logger;
  * be passed as a system property on the VM command line. The property name
  * is ds.debug.logging.level and the levels are regular 
  * <code>java.util.logging.Level</code> levels.
+ *
+ * Setting the property ds.debug.logging.async to true writes the log
+ * through an <code>AsyncHandler</code> instead, so that logging costs the
+ * calling thread no formatting or file I/O. The property
+ * ds.debug.logging.overflow, BLOCK or DROP, then says what happens to
+ * records logged faster than they can be written.
+ *
+ * Setting ds.debug.logging.format to binary writes a compact binary trace
+ * through a <code>BinaryTraceHandler</code> instead of text, to files
+ * named by the destination with .trace in place of any .log suffix and
+ * rotated as the text logs are. <code>BinaryTraceReader</code> turns them
+ * back into text.
+ *
+ * If <code>Metrics</code> are enabled and ds.debug.metrics.dump gives a
+ * number of seconds, the metrics are logged that often.
+ *
+ * The static <code>log()</code> helpers log through any Logger, or none,
+ * building the message only if the level is enabled: from a Supplier, or
+ * from a pattern with {0} and {1} replaced by the text of its arguments
+ * when the record is formatted.
+ * A disabled level then costs one level check. The source class and
+ * method are given, saving the stack walk that would otherwise find them.
  * 
  * @author  Daniel Semler
  * @version %I%, %G%
@@ -27,6 +51,10 @@ public class DebugLogger extends Logger {
     private static final boolean APPEND = true;
     private static final String DEBUG_LOG_LEVEL = "ds.debug.logging.level";
     private static final String DEFAULT_LOG_LEVEL = "INFO";
+    private static final String DEBUG_LOG_ASYNC = "ds.debug.logging.async";
+    private static final String DEBUG_LOG_OVERFLOW =
+        "ds.debug.logging.overflow";
+    private static final String DEBUG_LOG_FORMAT = "ds.debug.logging.format";
     
     public DebugLogger(String name, String destFile)
     throws IOException
@@ -41,6 +69,38 @@ public class DebugLogger extends Logger {
         }
 
         setLevel(level);
+        long dump = Long.getLong(Metrics.DUMP_PROPERTY, 0);
+        if (Metrics.isEnabled() && dump > 0) {
+            Metrics.startDump(this, dump);
+        }
+        if ("binary".equalsIgnoreCase(System.getProperty(DEBUG_LOG_FORMAT))) {
+            String trace = destFile;
+            if (trace.endsWith(".log")) {
+                trace = trace.substring(0, trace.length() - 4);
+            }
+            addHandler(new BinaryTraceHandler(trace + ".trace",
+                                              MAX_FILE_SIZE,
+                                              FILE_COUNT));
+            return;
+        }
+        if (Boolean.getBoolean(DEBUG_LOG_ASYNC)) {
+            AsyncHandler.OverflowPolicy policy =
+                AsyncHandler.OverflowPolicy.BLOCK;
+            try {
+                policy = AsyncHandler.OverflowPolicy.valueOf(
+                    System.getProperty(DEBUG_LOG_OVERFLOW, policy.name()));
+            } catch (IllegalArgumentException iae) {
+                // Keep blocking
+            }
+            addHandler(new AsyncHandler(destFile,
+                                        MAX_FILE_SIZE,
+                                        FILE_COUNT,
+                                        APPEND,
+                                        AsyncHandler.DEFAULT_CAPACITY,
+                                        policy,
+                                        AsyncHandler.DEFAULT_FLUSH_MILLIS));
+            return;
+        }
         FileHandler fh = new FileHandler(destFile,
                                    MAX_FILE_SIZE,
                                    FILE_COUNT,
@@ -49,4 +109,83 @@ public class DebugLogger extends Logger {
         fh.setFormatter(new DebugFormatter());
         addHandler(fh);
     }
+
+    /**
+     * Log a message built by a Supplier only if the level is enabled.
+     *
+     * @param logger the logger, or null to log nothing
+     * @param level the level of the message
+     * @param sourceClass the name of the logging class
+     * @param sourceMethod the name of the logging method
+     * @param message supplies the message
+     */
+    public static void log(Logger logger, Level level, String sourceClass,
+                           String sourceMethod, Supplier<String> message) {
+        if (logger != null && logger.isLoggable(level)) {
+            logp(logger, level, sourceClass, sourceMethod, message.get());
+        }
+    }
+
+    /**
+     * Log a message with one argument only if the level is enabled. The
+     * argument is turned into text only then, so passing an object that
+     * already exists allocates nothing.
+     *
+     * @param logger the logger, or null to log nothing
+     * @param level the level of the message
+     * @param sourceClass the name of the logging class
+     * @param sourceMethod the name of the logging method
+     * @param pattern the message, with {0} standing for the argument
+     * @param arg the argument
+     */
+    public static void log(Logger logger, Level level, String sourceClass,
+                           String sourceMethod, String pattern, Object arg) {
+        if (logger != null && logger.isLoggable(level)) {
+            logp(logger, level, sourceClass, sourceMethod, pattern, arg);
+        }
+    }
+
+    /**
+     * Log a message with two arguments only if the level is enabled.
+     *
+     * @param logger the logger, or null to log nothing
+     * @param level the level of the message
+     * @param sourceClass the name of the logging class
+     * @param sourceMethod the name of the logging method
+     * @param pattern the message, with {0} and {1} standing for the
+     *                arguments
+     * @param arg0 the first argument
+     * @param arg1 the second argument
+     */
+    public static void log(Logger logger, Level level, String sourceClass,
+                           String sourceMethod, String pattern, Object arg0,
+                           Object arg1) {
+        if (logger != null && logger.isLoggable(level)) {
+            logp(logger, level, sourceClass, sourceMethod, pattern, arg0,
+                 arg1);
+        }
+    }
+
+    /*
+     * Log a message. The arguments, if any, are turned into text now, as
+     * their objects may change before a handler formats the record on
+     * another thread, and kept as its parameters so that a binary trace
+     * can store them apart from the pattern.
+     */
+    private static void logp(Logger logger, Level level, String sourceClass,
+                             String sourceMethod, String message,
+                             Object... args) {
+        LogRecord r = new LogRecord(level, message);
+        r.setSourceClassName(sourceClass);
+        r.setSourceMethodName(sourceMethod);
+        r.setLoggerName(logger.getName());
+        if (args.length > 0) {
+            String[] text = new String[args.length];
+            for (int i = 0; i < args.length; i++) {
+                text[i] = String.valueOf(args[i]);
+            }
+            r.setParameters(text);
+        }
+        logger.log(r);
+    }
 }
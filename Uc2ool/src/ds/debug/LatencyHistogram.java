@@ -0,0 +1,193 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.debug;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A LatencyHistogram is a named distribution of times kept by
+ * <code>Metrics</code>, in nanoseconds. As in an HDR histogram the buckets
+ * are linear within each power of two and there are
+ * <code>SUB_BUCKETS</code> of them per power, so any time is known to
+ * within 1/16 of itself, from a nanosecond to centuries, in under 1000
+ * counters. Recording is an index computed from the leading zeros of the
+ * time and an atomic increment, and never blocks.
+ *
+ * The usual way to time something is
+ * <pre>
+ *   long start = Metrics.start();
+ *   ...
+ *   s_histogram.stop(start);
+ * </pre>
+ * which records nothing, and costs a single read and branch, while
+ * metrics are disabled.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class LatencyHistogram implements LatencyHistogramMBean {
+
+    /**
+     * The number of buckets each power of two is divided into.
+     */
+    public static final int SUB_BUCKETS = 16;
+
+    private static final int SUB_BITS = 4;
+    // Enough buckets for any positive long
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final String m_name;
+    private final AtomicLongArray m_buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder m_count = new LongAdder();
+    private final LongAdder m_sum = new LongAdder();
+    private final AtomicLong m_max = new AtomicLong();
+
+    LatencyHistogram(String name) {
+        m_name = name;
+    }
+
+    /**
+     * Record the time since a start given by <code>Metrics.start()</code>,
+     * unless metrics were disabled at the start.
+     *
+     * @param start the start time, or 0
+     */
+    public void stop(long start) {
+        if (start != 0) {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Record a time. Negative times are recorded as 0.
+     *
+     * @param nanos the time in nanoseconds
+     */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        m_buckets.incrementAndGet(index(v));
+        m_count.increment();
+        m_sum.add(v);
+        long max = m_max.get();
+        while (v > max && !m_max.compareAndSet(max, v)) {
+            max = m_max.get();
+        }
+    }
+
+    /**
+     * @return the name of the histogram
+     */
+    public String getName() {
+        return m_name;
+    }
+
+    @Override
+    public long getCount() {
+        return m_count.sum();
+    }
+
+    /**
+     * Get the time within which a fraction of those recorded fell, given
+     * as the largest time of its bucket.
+     *
+     * @param fraction the fraction, from 0 to 1
+     * @return the time in nanoseconds, or 0 if none are recorded
+     */
+    public long getPercentile(double fraction) {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = m_buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highest(i), m_max.get());
+            }
+        }
+        return m_max.get();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long count = m_count.sum();
+        return count == 0 ? 0 : m_sum.sum() / 1000.0 / count;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return m_max.get() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return getPercentile(0.5) / 1000.0;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return getPercentile(0.9) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return getPercentile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return getPercentile(0.999) / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            m_buckets.set(i, 0);
+        }
+        m_count.reset();
+        m_sum.reset();
+        m_max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s count=%d mean=%.2fus p50=%.2fus " +
+                             "p90=%.2fus p99=%.2fus max=%.2fus", m_name,
+                             getCount(), getMeanMicros(), getP50Micros(),
+                             getP90Micros(), getP99Micros(), getMaxMicros());
+    }
+
+    /*
+     * The bucket of a time: times below SUB_BUCKETS have one each, and
+     * others are placed by their top SUB_BITS + 1 bits.
+     */
+    static int index(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (v >>> shift) - SUB_BUCKETS;
+    }
+
+    /*
+     * The largest time placed in a bucket.
+     */
+    static long highest(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long low = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return low + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.debug;
+
+/**
+ * The JMX management interface of a <code>LatencyHistogram</code>. Times
+ * are in microseconds.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public interface LatencyHistogramMBean {
+
+    /**
+     * @return the number of times recorded
+     */
+    long getCount();
+
+    /**
+     * @return the mean time
+     */
+    double getMeanMicros();
+
+    /**
+     * @return the longest time
+     */
+    double getMaxMicros();
+
+    /**
+     * @return the median time
+     */
+    double getP50Micros();
+
+    /**
+     * @return the time 90% of those recorded were within
+     */
+    double getP90Micros();
+
+    /**
+     * @return the time 99% of those recorded were within
+     */
+    double getP99Micros();
+
+    /**
+     * @return the time 99.9% of those recorded were within
+     */
+    double getP999Micros();
+
+    /**
+     * Discard every time recorded.
+     */
+    void reset();
+}
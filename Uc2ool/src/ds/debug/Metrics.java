@@ -0,0 +1,228 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.debug;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics is a registry of named <code>Counter</code>s and
+ * <code>LatencyHistogram</code>s, created on first use and kept for the
+ * life of the process. Classes hold the metrics they update in static
+ * fields, so looking one up by name is paid once.
+ *
+ * Metrics are disabled unless the system property ds.debug.metrics is
+ * true or <code>setEnabled()</code> is called. While disabled, counting
+ * and timing record nothing and cost a single read of a volatile flag.
+ * When first enabled every metric, and each created afterwards, is
+ * registered with the platform MBean server under the domain ds.debug,
+ * for example ds.debug:type=LatencyHistogram,name=Uc2oolModel.setInput.
+ *
+ * <code>startDump()</code> logs every metric periodically at INFO, one
+ * record each. DebugLogger starts it when metrics are enabled and the
+ * property ds.debug.metrics.dump gives the period in seconds.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class Metrics {
+
+    /**
+     * The system property which, set to "true", enables metrics.
+     */
+    public static final String ENABLED_PROPERTY = "ds.debug.metrics";
+
+    /**
+     * The system property giving the seconds between dumps of the metrics
+     * to the debug log.
+     */
+    public static final String DUMP_PROPERTY = "ds.debug.metrics.dump";
+
+    private static final String DOMAIN = "ds.debug";
+
+    private static volatile boolean s_enabled =
+        Boolean.getBoolean(ENABLED_PROPERTY);
+    private static boolean s_registered;
+    // Sorted so that dumps list the metrics by name
+    private static final ConcurrentSkipListMap<String, Object> s_metrics =
+        new ConcurrentSkipListMap<>();
+    private static ScheduledExecutorService s_dumper;
+    private static ScheduledFuture<?> s_dump;
+
+    static {
+        if (s_enabled) {
+            registerAll();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Get the counter of a name, creating it if need be.
+     *
+     * @param name the name
+     * @return the counter
+     * @throws IllegalArgumentException if a histogram has the name
+     */
+    public static Counter counter(String name) {
+        Object m = s_metrics.get(name);
+        if (m == null) {
+            m = add(name, new Counter(name));
+        }
+        if (!(m instanceof Counter)) {
+            throw new IllegalArgumentException(name);
+        }
+        return (Counter) m;
+    }
+
+    /**
+     * Get the histogram of a name, creating it if need be.
+     *
+     * @param name the name
+     * @return the histogram
+     * @throws IllegalArgumentException if a counter has the name
+     */
+    public static LatencyHistogram histogram(String name) {
+        Object m = s_metrics.get(name);
+        if (m == null) {
+            m = add(name, new LatencyHistogram(name));
+        }
+        if (!(m instanceof LatencyHistogram)) {
+            throw new IllegalArgumentException(name);
+        }
+        return (LatencyHistogram) m;
+    }
+
+    /**
+     * @return true if metrics are being recorded
+     */
+    public static boolean isEnabled() {
+        return s_enabled;
+    }
+
+    /**
+     * Start or stop recording metrics. Values already recorded are kept.
+     *
+     * @param enabled true to record metrics
+     */
+    public static void setEnabled(boolean enabled) {
+        s_enabled = enabled;
+        if (enabled) {
+            registerAll();
+        }
+    }
+
+    /**
+     * Get the start time of something to be timed by a LatencyHistogram.
+     *
+     * @return the current System.nanoTime(), or 0 if metrics are disabled
+     */
+    public static long start() {
+        return s_enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Describe every metric, one per line, sorted by name.
+     *
+     * @return the description
+     */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (Object m : s_metrics.values()) {
+            sb.append(m).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Log every metric at INFO every period seconds, replacing any dump
+     * already started.
+     *
+     * @param logger the logger
+     * @param period the seconds between dumps
+     */
+    public static synchronized void startDump(Logger logger, long period) {
+        stopDump();
+        if (s_dumper == null) {
+            s_dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ds.debug.Metrics");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        s_dump = s_dumper.scheduleAtFixedRate(() -> {
+            for (Object m : s_metrics.values()) {
+                logger.logp(Level.INFO, Metrics.class.getName(), "dump",
+                            m.toString());
+            }
+        }, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the periodic dump, if started.
+     */
+    public static synchronized void stopDump() {
+        if (s_dump != null) {
+            s_dump.cancel(false);
+            s_dump = null;
+        }
+    }
+
+    private static Object add(String name, Object metric) {
+        Object m = s_metrics.putIfAbsent(name, metric);
+        if (m != null) {
+            return m;
+        }
+        synchronized (Metrics.class) {
+            if (s_registered) {
+                register(name, metric);
+            }
+        }
+        return metric;
+    }
+
+    private static synchronized void registerAll() {
+        if (!s_registered) {
+            s_registered = true;
+            for (String name : s_metrics.keySet()) {
+                register(name, s_metrics.get(name));
+            }
+        }
+    }
+
+    private static void register(String name, Object metric) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = objectName(name, metric);
+            if (!server.isRegistered(on)) {
+                server.registerMBean(metric, on);
+            }
+        } catch (JMException | RuntimeException e) {
+            // Still recorded and dumped, only not visible through JMX
+        }
+    }
+
+    /*
+     * The JMX name a metric is registered under.
+     */
+    static ObjectName objectName(String name, Object metric)
+    throws JMException {
+        return new ObjectName(DOMAIN + ":type=" +
+                              metric.getClass().getSimpleName() + ",name=" +
+                              (name.matches("[\\w.-]+") ? name
+                                  : ObjectName.quote(name)));
+    }
+}
@@ -0,0 +1,360 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import ds.uc2ool.model.CodePointInfo;
+import ds.uc2ool.model.Uc2oolModel;
+import ds.uc2ool.model.Uc2oolModel.InputType;
+import ds.uc2ool.model.ValidationResult;
+
+/**
+ * BatchProcessor describes a stream of records, one per line, for jobs
+ * that would otherwise pay a process start or a request per code point.
+ * In the JSON format each line holds one of
+ * <pre>
+ *   {"id":7,"codepoint":"U+1F600"}   a code point in any notation
+ *   {"id":8,"codepoint":128512}      a code point as a decimal number
+ *   {"id":9,"text":"caf&#92;u00e9"}      every code point of a string
+ *   "caf&#92;u00e9"  or  128512          the same without an id
+ * </pre>
+ * and gives a line holding the <code>Uc2oolCli --json</code> object of the
+ * code point, or an object with a "codepoints" array for a string, with
+ * the id, if any, first. In the TSV format each line holds a code point
+ * in its first field and gives the tab separated line of
+ * <code>Uc2oolCli</code>. A record that cannot be read gives an object
+ * with an "error" field, or a line starting ERROR, in its place, so the
+ * output always holds one line per record. Blank lines are skipped.
+ * A code point written without a prefix is hex unless the processor was
+ * created to read decimal; a JSON number is always decimal.
+ *
+ * Lines are read into batches of <code>batchSize</code> and each batch is
+ * described as one task on an executor, the common ForkJoinPool unless
+ * another is given. Results are written in the order read. At most
+ * <code>maxPending</code> batches are read ahead of the one being
+ * written: once that many are pending, reading waits for the oldest to be
+ * written, so a slow reader of the output slows the reading of the input
+ * and memory stays bounded however long the input is. When the input
+ * runs dry the partial batch is processed and everything pending written
+ * and flushed, so an interactive caller gets each answer at once.
+ *
+ * An instance may be reused but not shared by concurrent calls.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class BatchProcessor {
+
+    /**
+     * The formats records are read and written in.
+     */
+    public enum Format { JSON, TSV }
+
+    /**
+     * The number of lines in a batch unless another is given.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final Format m_format;
+    private final boolean m_decimal;
+    private final Executor m_executor;
+    private final int m_batchSize;
+    private final int m_maxPending;
+    private long m_records;
+    private long m_errors;
+
+    /**
+     * Create a processor running batches of the default size on the
+     * common ForkJoinPool, with two batches pending for each of its
+     * threads.
+     *
+     * @param format the format of the input and output
+     * @param decimal true to read bare numbers as decimal rather than hex
+     */
+    public BatchProcessor(Format format, boolean decimal) {
+        this(format, decimal, ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE,
+             2 * ForkJoinPool.getCommonPoolParallelism() + 1);
+    }
+
+    /**
+     * Create a processor.
+     *
+     * @param format the format of the input and output
+     * @param decimal true to read bare numbers as decimal rather than hex
+     * @param executor the executor to describe batches on
+     * @param batchSize the number of lines in a batch
+     * @param maxPending the most batches read but not yet written
+     */
+    public BatchProcessor(Format format, boolean decimal, Executor executor,
+                          int batchSize, int maxPending) {
+        if (batchSize < 1 || maxPending < 1) {
+            throw new IllegalArgumentException(batchSize + ", " + maxPending);
+        }
+        m_format = format;
+        m_decimal = decimal;
+        m_executor = executor;
+        m_batchSize = batchSize;
+        m_maxPending = maxPending;
+    }
+
+    /**
+     * Describe every record of in, writing the results to out.
+     *
+     * @param in the records, one per line
+     * @param out where to write the results
+     * @return the number of records that could not be read
+     * @throws IOException if in cannot be read or out written
+     */
+    public long process(Reader in, Writer out) throws IOException {
+        m_records = 0;
+        m_errors = 0;
+        BufferedReader r = in instanceof BufferedReader
+            ? (BufferedReader) in : new BufferedReader(in);
+        ArrayDeque<CompletableFuture<Batch>> pending = new ArrayDeque<>();
+        String[] lines = new String[m_batchSize];
+        int n = 0;
+        try {
+            for (String line; (line = r.readLine()) != null;) {
+                lines[n++] = line;
+                boolean dry = !r.ready();
+                if (n == m_batchSize || dry) {
+                    submit(pending, new Batch(lines, n), out);
+                    lines = new String[m_batchSize];
+                    n = 0;
+                }
+                if (dry) {
+                    drain(pending, out);
+                }
+            }
+            if (n > 0) {
+                submit(pending, new Batch(lines, n), out);
+            }
+            drain(pending, out);
+        } finally {
+            // On failure let the pending batches finish unobserved
+            while (!pending.isEmpty()) {
+                pending.removeFirst().cancel(false);
+            }
+        }
+        return m_errors;
+    }
+
+    /**
+     * @return the number of records read by the last call to process
+     */
+    public long getRecordCount() {
+        return m_records;
+    }
+
+    // Queue a batch, first writing the oldest if too many are pending
+    private void submit(ArrayDeque<CompletableFuture<Batch>> pending,
+                        Batch b, Writer out) throws IOException {
+        if (pending.size() == m_maxPending) {
+            write(pending.removeFirst(), out);
+        }
+        pending.addLast(CompletableFuture.supplyAsync(() -> b.run(this),
+                                                      m_executor));
+    }
+
+    // Write every pending batch and flush
+    private void drain(ArrayDeque<CompletableFuture<Batch>> pending,
+                       Writer out) throws IOException {
+        while (!pending.isEmpty()) {
+            write(pending.removeFirst(), out);
+        }
+        out.flush();
+    }
+
+    private void write(CompletableFuture<Batch> f, Writer out)
+    throws IOException {
+        Batch b;
+        try {
+            b = f.join();
+        } catch (CompletionException e) {
+            // Describing a batch throws nothing checked
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+        m_records += b.m_records;
+        m_errors += b.m_errors;
+        out.append(b.m_out);
+    }
+
+    /*
+     * The input type for code points: bare numbers are hex, as in the
+     * code point field of the GUI, unless decimal is set. Any prefix is
+     * left to the model, which overrides this radix according to it.
+     */
+    static InputType inputType(boolean decimal) {
+        return decimal ? InputType.DECCODEPOINT : InputType.HEXCODEPOINT;
+    }
+
+    /*
+     * Append the tab separated line describing a code point.
+     */
+    static StringBuilder appendTsv(StringBuilder sb, CodePointInfo info) {
+        String name = info.getUnicodeCharacterName();
+        CodePointJson.appendCodePoint(sb, info.getCodePoint());
+        return sb.append('\t').append(name == null ? "" : name)
+                 .append('\t').append(info.getUTF8Encoding())
+                 .append('\t').append(info.getUTF16Encoding())
+                 .append('\t').append(info.getCodePoint())
+                 .append('\n');
+    }
+
+    // A batch of lines and, once run, their results
+    private static final class Batch {
+        private final String[] m_lines;
+        private final int m_count;
+        private StringBuilder m_out;
+        private int m_records;
+        private int m_errors;
+
+        Batch(String[] lines, int count) {
+            m_lines = lines;
+            m_count = count;
+        }
+
+        Batch run(BatchProcessor p) {
+            m_out = new StringBuilder(m_count * 112);
+            for (int i = 0; i < m_count; i++) {
+                String line = m_lines[i].trim();
+                m_lines[i] = null;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                m_records++;
+                if (p.m_format == Format.JSON) {
+                    json(p, line);
+                } else {
+                    tsv(p, line);
+                }
+            }
+            return this;
+        }
+
+        private void tsv(BatchProcessor p, String line) {
+            int tab = line.indexOf('\t');
+            String input = tab < 0 ? line : line.substring(0, tab).trim();
+            ValidationResult r =
+                Uc2oolModel.validate(input, inputType(p.m_decimal));
+            if (r.isValid()) {
+                appendTsv(m_out, Uc2oolModel.describe(r.getCodePoint()));
+            } else {
+                m_errors++;
+                m_out.append("ERROR\t").append(input).append('\t')
+                     .append(r.getMessage()).append('\n');
+            }
+        }
+
+        private void json(BatchProcessor p, String line) {
+            Object id = null;
+            Object cp = null;
+            Object text = null;
+            String error = null;
+            try {
+                Object v = JsonLine.parse(line);
+                if (v instanceof Map) {
+                    Map<?, ?> m = (Map<?, ?>) v;
+                    id = m.get("id");
+                    cp = m.get("codepoint");
+                    text = m.get("text");
+                    if ((cp == null) == (text == null)) {
+                        error = "Expected one of codepoint or text";
+                    }
+                } else if (v instanceof String) {
+                    text = v;
+                } else {
+                    cp = v;
+                }
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+            }
+            m_out.append('{');
+            if (id != null) {
+                m_out.append("\"id\":");
+                if (id instanceof String) {
+                    CodePointJson.quote(m_out, (String) id);
+                } else {
+                    m_out.append(id);
+                }
+                m_out.append(',');
+            }
+            if (error == null && text instanceof String) {
+                codePoints((String) text);
+            } else if (error == null && text == null) {
+                codePoint(p, cp);
+            } else {
+                m_errors++;
+                CodePointJson.appendErrorMembers(
+                    m_out, line, error == null ? "Expected a string" : error);
+            }
+            m_out.append("}\n");
+        }
+
+        private void codePoint(BatchProcessor p, Object cp) {
+            String input;
+            InputType type;
+            if (cp instanceof BigDecimal) {
+                // Never expand the number: 1e99999999 has a hundred million
+                // digits. Non-integral or out of int range numbers are left
+                // in their short form, which fails validation as usual.
+                try {
+                    input = Integer.toString(
+                        ((BigDecimal) cp).intValueExact());
+                } catch (ArithmeticException e) {
+                    input = cp.toString();
+                }
+                type = InputType.DECCODEPOINT;
+            } else if (cp instanceof String) {
+                input = ((String) cp).trim();
+                type = inputType(p.m_decimal);
+            } else {
+                m_errors++;
+                CodePointJson.appendErrorMembers(m_out, String.valueOf(cp),
+                                                 "Expected a code point");
+                return;
+            }
+            ValidationResult r = Uc2oolModel.validate(input, type);
+            if (r.isValid()) {
+                CodePointJson.appendMembers(
+                    m_out, Uc2oolModel.describe(r.getCodePoint()));
+            } else {
+                m_errors++;
+                CodePointJson.appendErrorMembers(m_out, input, r.getMessage());
+            }
+        }
+
+        private void codePoints(String text) {
+            m_out.append("\"codepoints\":[");
+            for (int i = 0; i < text.length();) {
+                int cp = text.codePointAt(i);
+                if (i > 0) {
+                    m_out.append(',');
+                }
+                m_out.append('{');
+                CodePointJson.appendMembers(m_out, Uc2oolModel.describe(cp))
+                             .append('}');
+                i += Character.charCount(cp);
+            }
+            m_out.append(']');
+        }
+    }
+}
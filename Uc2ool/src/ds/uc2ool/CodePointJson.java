@@ -0,0 +1,111 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool;
+
+import ds.uc2ool.model.CodePointInfo;
+
+/**
+ * CodePointJson writes the JSON shared by the headless front ends: one
+ * object per code point holding its name, UTF-8 and UTF-16 encodings and
+ * decimal value, for example
+ * <pre>
+ *   {"codepoint":"U+0041","name":"LATIN CAPITAL LETTER A","utf8":"41",
+ *    "utf16":"0041","decimal":65}
+ * </pre>
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+final class CodePointJson {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private CodePointJson() {
+    }
+
+    /*
+     * Append the object describing a code point, with an offset field
+     * first unless offset is negative.
+     */
+    static StringBuilder append(StringBuilder sb, long offset,
+                                CodePointInfo info) {
+        sb.append('{');
+        if (offset >= 0) {
+            sb.append("\"offset\":").append(offset).append(',');
+        }
+        return appendMembers(sb, info).append('}');
+    }
+
+    /*
+     * Append the members of the object describing a code point, without
+     * the braces, so that a caller may add members of its own.
+     */
+    static StringBuilder appendMembers(StringBuilder sb, CodePointInfo info) {
+        String name = info.getUnicodeCharacterName();
+        sb.append("\"codepoint\":\"");
+        appendCodePoint(sb, info.getCodePoint());
+        sb.append("\",\"name\":");
+        if (name == null) {
+            sb.append("null");
+        } else {
+            quote(sb, name);
+        }
+        return sb.append(",\"utf8\":\"").append(info.getUTF8Encoding())
+                 .append("\",\"utf16\":\"").append(info.getUTF16Encoding())
+                 .append("\",\"decimal\":").append(info.getCodePoint());
+    }
+
+    /*
+     * Append an object reporting invalid input.
+     */
+    static StringBuilder appendError(StringBuilder sb, String input,
+                                     String message) {
+        sb.append('{');
+        return appendErrorMembers(sb, input, message).append('}');
+    }
+
+    /*
+     * Append the members of an object reporting invalid input, without the
+     * braces.
+     */
+    static StringBuilder appendErrorMembers(StringBuilder sb, String input,
+                                            String message) {
+        sb.append("\"input\":");
+        quote(sb, input);
+        sb.append(",\"error\":");
+        return quote(sb, message);
+    }
+
+    /*
+     * Append a code point in U+ notation with at least four digits.
+     */
+    static StringBuilder appendCodePoint(StringBuilder sb, int cp) {
+        sb.append("U+");
+        int bits = 32 - Integer.numberOfLeadingZeros(cp);
+        int digits = Math.max(4, (bits + 3) / 4);
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            sb.append(HEX[(cp >>> shift) & 0xf]);
+        }
+        return sb;
+    }
+
+    /*
+     * Append a string as a JSON string literal.
+     */
+    static StringBuilder quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append("\\u00").append(HEX[c >>> 4]).append(HEX[c & 0xf]);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"');
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JsonLine reads the single line JSON values given to the batch mode: a
+ * string, a number, or an object whose members are strings, numbers,
+ * true, false or null. Strings are returned as Strings, numbers as
+ * BigDecimals so that an id is written back exactly as it was read, and
+ * null as <code>JsonLine.NULL</code>. Nested objects and arrays are not
+ * needed by any record so are rejected rather than skipped.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+final class JsonLine {
+
+    /**
+     * The value of a JSON null.
+     */
+    static final Object NULL = new Object() {
+        @Override
+        public String toString() {
+            return "null";
+        }
+    };
+
+    private final String m_text;
+    private int m_pos;
+
+    private JsonLine(String text) {
+        m_text = text;
+    }
+
+    /*
+     * Parse a line holding one value. Objects are returned as a Map from
+     * member name to value in the order written.
+     *
+     * @throws IllegalArgumentException if the line is not such a value
+     */
+    static Object parse(String line) {
+        JsonLine p = new JsonLine(line);
+        Object v = p.value(true);
+        p.skipSpace();
+        if (p.m_pos < line.length()) {
+            throw p.error("Unexpected text after the value");
+        }
+        return v;
+    }
+
+    private Object value(boolean top) {
+        skipSpace();
+        if (m_pos >= m_text.length()) {
+            throw error("Missing value");
+        }
+        char c = m_text.charAt(m_pos);
+        if (c == '{' && top) {
+            return object();
+        } else if (c == '"') {
+            return string();
+        } else if (c == '-' || (c >= '0' && c <= '9')) {
+            return number();
+        } else if (m_text.startsWith("true", m_pos)) {
+            m_pos += 4;
+            return Boolean.TRUE;
+        } else if (m_text.startsWith("false", m_pos)) {
+            m_pos += 5;
+            return Boolean.FALSE;
+        } else if (m_text.startsWith("null", m_pos)) {
+            m_pos += 4;
+            return NULL;
+        }
+        throw error(c == '{' || c == '[' ? "Nested values are not supported"
+                                         : "Unexpected character");
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> members = new LinkedHashMap<>();
+        m_pos++;
+        skipSpace();
+        if (m_pos < m_text.length() && m_text.charAt(m_pos) == '}') {
+            m_pos++;
+            return members;
+        }
+        while (true) {
+            skipSpace();
+            if (m_pos >= m_text.length() || m_text.charAt(m_pos) != '"') {
+                throw error("Expected a member name");
+            }
+            String name = string();
+            skipSpace();
+            expect(':');
+            members.put(name, value(false));
+            skipSpace();
+            if (m_pos < m_text.length() && m_text.charAt(m_pos) == ',') {
+                m_pos++;
+            } else {
+                expect('}');
+                return members;
+            }
+        }
+    }
+
+    private String string() {
+        StringBuilder sb = null;
+        int start = ++m_pos;
+        while (m_pos < m_text.length()) {
+            char c = m_text.charAt(m_pos);
+            if (c == '"') {
+                String s = sb == null ? m_text.substring(start, m_pos)
+                    : sb.append(m_text, start, m_pos).toString();
+                m_pos++;
+                return s;
+            } else if (c == '\\') {
+                if (sb == null) {
+                    sb = new StringBuilder();
+                }
+                sb.append(m_text, start, m_pos);
+                sb.append(escape());
+                start = m_pos;
+            } else if (c < ' ') {
+                throw error("Control character in string");
+            } else {
+                m_pos++;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    // Read the escape at m_pos, leaving m_pos after it
+    private char escape() {
+        if (m_pos + 1 >= m_text.length()) {
+            throw error("Unterminated string");
+        }
+        char c = m_text.charAt(m_pos + 1);
+        m_pos += 2;
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                if (m_pos + 4 <= m_text.length()) {
+                    try {
+                        char u = (char) Integer.parseInt(
+                            m_text.substring(m_pos, m_pos + 4), 16);
+                        m_pos += 4;
+                        return u;
+                    } catch (NumberFormatException e) {
+                        // Reported below
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+        m_pos -= 2;
+        throw error("Invalid escape");
+    }
+
+    private BigDecimal number() {
+        int start = m_pos;
+        while (m_pos < m_text.length() &&
+               "+-0123456789.eE".indexOf(m_text.charAt(m_pos)) >= 0) {
+            m_pos++;
+        }
+        try {
+            return new BigDecimal(m_text.substring(start, m_pos));
+        } catch (NumberFormatException e) {
+            m_pos = start;
+            throw error("Invalid number");
+        }
+    }
+
+    private void expect(char c) {
+        if (m_pos >= m_text.length() || m_text.charAt(m_pos) != c) {
+            throw error("Expected '" + c + "'");
+        }
+        m_pos++;
+    }
+
+    private void skipSpace() {
+        while (m_pos < m_text.length() && (m_text.charAt(m_pos) == ' ' ||
+               m_text.charAt(m_pos) == '\t' || m_text.charAt(m_pos) == '\r')) {
+            m_pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at column " +
+                                            (m_pos + 1));
+    }
+}
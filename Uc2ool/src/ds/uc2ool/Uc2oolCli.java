@@ -0,0 +1,313 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ds.uc2ool.model.CodePointInfo;
+import ds.uc2ool.model.FileTranscoder;
+import ds.uc2ool.model.FileTranscoder.Encoding;
+import ds.uc2ool.model.ParallelAnalyzer;
+import ds.uc2ool.model.TextStatistics;
+import ds.uc2ool.model.Uc2oolModel;
+import ds.uc2ool.model.ValidationResult;
+
+/**
+ * Uc2oolCli is a headless entry point for use from scripts and pipelines.
+ * It touches no JavaFX class so starts in tens of milliseconds rather than
+ * the seconds the GUI takes to boot its toolkit and scan the system fonts.
+ *
+ * Code points are taken from the arguments or, if there are none, one per
+ * line from standard input. Each is written as a line of tab separated
+ * values or as a JSON object holding its name, UTF-8 and UTF-16 encodings
+ * and decimal value:
+ * <pre>
+ *   java -cp uc2ool.jar ds.uc2ool.Uc2oolCli [--json] [--dec] [codepoint...]
+ * </pre>
+ * Code points may be written in any notation <code>CodePointParser</code>
+ * reads, such as U+1F600, 0x1F600 or &amp;#128512;. Bare numbers are hex,
+ * as in the GUI, or decimal if --dec is given. Invalid input is reported
+ * on standard error and processing continues; the exit status is then 1.
+ *
+ * With --file every code point of a file, UTF-8 unless --from says
+ * otherwise, is listed in the same way preceded by its byte offset. Adding
+ * --to and --out transcodes the file instead:
+ * <pre>
+ *   java -cp uc2ool.jar ds.uc2ool.Uc2oolCli --file in.txt [--from utf-16le]
+ *        [--to utf-16be --out out.txt]
+ * </pre>
+ * Or --stats summarises a UTF-8 file, analysed in parallel on all cores,
+ * with its counts of bytes, code points and malformed sequences and its
+ * distribution over Unicode blocks and scripts.
+ *
+ * With --batch standard input is read as records of code points or
+ * strings, JSON lines with --json and TSV otherwise, and described in
+ * parallel by a <code>BatchProcessor</code>, giving one line per record in
+ * the order read with invalid records reported in place.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class Uc2oolCli {
+
+    private static final String USAGE =
+        "Usage: java ds.uc2ool.Uc2oolCli [--json] [--dec] [codepoint...]\n" +
+        "       java ds.uc2ool.Uc2oolCli [--json] --file <file> " +
+        "[--from <enc>] [--to <enc> --out <file>]\n" +
+        "       java ds.uc2ool.Uc2oolCli [--json] --stats --file <file>\n" +
+        "       java ds.uc2ool.Uc2oolCli [--json] [--dec] --batch\n" +
+        "       where <enc> is one of utf-8, utf-16le or utf-16be";
+
+    private boolean m_json;
+    private boolean m_decimal;
+    private String m_inFile;
+    private String m_outFile;
+    private Encoding m_from = Encoding.UTF8;
+    private Encoding m_to;
+    private boolean m_stats;
+    private boolean m_batch;
+    private final PrintStream m_stdout;
+    private final PrintStream m_err;
+    private int m_errors;
+
+    /*
+     * Constructor taking the output and error streams.
+     */
+    Uc2oolCli(PrintStream out, PrintStream err) {
+        m_stdout = out;
+        m_err = err;
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Buffered, unlike System.out, and flushed as input runs dry
+        PrintStream out = new PrintStream(
+            new BufferedOutputStream(new FileOutputStream(FileDescriptor.out),
+                                     64 * 1024),
+            false, "UTF-8");
+        Reader in = new InputStreamReader(System.in, StandardCharsets.UTF_8);
+        int status = new Uc2oolCli(out, System.err).run(args, in);
+        out.flush();
+        System.exit(status);
+    }
+
+    /*
+     * Process the arguments, or the lines of in if no code points are
+     * given, returning the exit status.
+     */
+    int run(String[] args, Reader in) throws IOException {
+        int first = 0;
+        try {
+            for (; first < args.length && args[first].startsWith("--");
+                 first++) {
+                switch (args[first]) {
+                    case "--json":
+                        m_json = true;
+                        break;
+                    case "--tsv":
+                        m_json = false;
+                        break;
+                    case "--hex":
+                        m_decimal = false;
+                        break;
+                    case "--dec":
+                        m_decimal = true;
+                        break;
+                    case "--file":
+                        m_inFile = args[++first];
+                        break;
+                    case "--out":
+                        m_outFile = args[++first];
+                        break;
+                    case "--from":
+                        m_from = Encoding.forName(args[++first]);
+                        break;
+                    case "--stats":
+                        m_stats = true;
+                        break;
+                    case "--batch":
+                        m_batch = true;
+                        break;
+                    case "--to":
+                        m_to = Encoding.forName(args[++first]);
+                        break;
+                    default:
+                        m_err.println(USAGE);
+                        return 2;
+                }
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            m_err.println(USAGE);
+            return 2;
+        }
+        if (m_batch) {
+            if (m_inFile != null || m_stats || first < args.length) {
+                m_err.println(USAGE);
+                return 2;
+            }
+            return processBatch(in);
+        } else if (m_inFile != null) {
+            if ((m_to == null) != (m_outFile == null) ||
+                (m_stats && (m_to != null || m_from != Encoding.UTF8)) ||
+                first < args.length) {
+                m_err.println(USAGE);
+                return 2;
+            }
+            return m_stats ? processStats() : processFile();
+        } else if (first < args.length) {
+            for (int i = first; i < args.length; i++) {
+                process(args[i]);
+            }
+        } else {
+            BufferedReader r = new BufferedReader(in);
+            for (String line; (line = r.readLine()) != null;) {
+                process(line);
+                // Keep interactive callers in step, batch them otherwise
+                if (!r.ready()) {
+                    m_stdout.flush();
+                }
+            }
+        }
+        return m_errors == 0 ? 0 : 1;
+    }
+
+    /*
+     * List or transcode the code points of the --file file.
+     */
+    private int processFile() throws IOException {
+        FileTranscoder t = new FileTranscoder(m_from);
+        if (m_to != null) {
+            t.transcode(Paths.get(m_inFile), Paths.get(m_outFile), m_to);
+        } else {
+            t.analyze(Paths.get(m_inFile), (offset, cp) -> {
+                CodePointInfo info = Uc2oolModel.describe(cp);
+                if (m_json) {
+                    writeJson(offset, info);
+                } else {
+                    m_stdout.append(String.valueOf(offset)).append('\t');
+                    writeTsv(info);
+                }
+            });
+        }
+        if (t.getErrorCount() > 0) {
+            m_err.println(m_inFile + ": " + t.getErrorCount() +
+                          " malformed sequences replaced with U+FFFD");
+            return 1;
+        }
+        return 0;
+    }
+
+    /*
+     * Describe the records of in with a BatchProcessor.
+     */
+    private int processBatch(Reader in) throws IOException {
+        Writer out = new OutputStreamWriter(m_stdout, StandardCharsets.UTF_8);
+        long errors = new BatchProcessor(
+            m_json ? BatchProcessor.Format.JSON : BatchProcessor.Format.TSV,
+            m_decimal).process(in, out);
+        return errors == 0 ? 0 : 1;
+    }
+
+    /*
+     * Summarise the --file file.
+     */
+    private int processStats() throws IOException {
+        TextStatistics s = ParallelAnalyzer.analyze(Paths.get(m_inFile));
+        Map<String, Long> totals = new LinkedHashMap<>();
+        totals.put("bytes", s.getByteCount());
+        totals.put("codepoints", s.getCodePointCount());
+        totals.put("distinct", (long) s.getDistinctCount());
+        totals.put("errors", s.getErrorCount());
+        Map<String, Long> blocks = s.getBlockCounts();
+        Map<String, Long> scripts = s.getScriptCounts();
+        if (m_json) {
+            m_stdout.append('{');
+            for (Map.Entry<String, Long> e : totals.entrySet()) {
+                m_stdout.append(quote(e.getKey())).append(':')
+                        .append(String.valueOf(e.getValue())).append(',');
+            }
+            m_stdout.append("\"blocks\":");
+            writeJsonCounts(blocks);
+            m_stdout.append(",\"scripts\":");
+            writeJsonCounts(scripts);
+            m_stdout.append("}\n");
+        } else {
+            for (Map.Entry<String, Long> e : totals.entrySet()) {
+                m_stdout.append(e.getKey()).append('\t')
+                        .append(String.valueOf(e.getValue())).append('\n');
+            }
+            for (Map.Entry<String, Long> e : blocks.entrySet()) {
+                m_stdout.append("block\t").append(e.getKey()).append('\t')
+                        .append(String.valueOf(e.getValue())).append('\n');
+            }
+            for (Map.Entry<String, Long> e : scripts.entrySet()) {
+                m_stdout.append("script\t").append(e.getKey()).append('\t')
+                        .append(String.valueOf(e.getValue())).append('\n');
+            }
+        }
+        return s.getErrorCount() == 0 ? 0 : 1;
+    }
+
+    private void writeJsonCounts(Map<String, Long> counts) {
+        m_stdout.append('{');
+        String sep = "";
+        for (Map.Entry<String, Long> e : counts.entrySet()) {
+            m_stdout.append(sep).append(quote(e.getKey())).append(':')
+                    .append(String.valueOf(e.getValue()));
+            sep = ",";
+        }
+        m_stdout.append('}');
+    }
+
+    /*
+     * Describe a single code point, ignoring blank lines.
+     */
+    private void process(String input) {
+        String s = input.trim();
+        if (s.isEmpty()) {
+            return;
+        }
+        ValidationResult r =
+            Uc2oolModel.validate(s, BatchProcessor.inputType(m_decimal));
+        if (!r.isValid()) {
+            m_errors++;
+            m_err.println(r.getMessage());
+            return;
+        }
+        CodePointInfo info = Uc2oolModel.describe(r.getCodePoint());
+        if (m_json) {
+            writeJson(-1, info);
+        } else {
+            writeTsv(info);
+        }
+    }
+
+    private void writeTsv(CodePointInfo info) {
+        m_stdout.append(BatchProcessor.appendTsv(new StringBuilder(96), info));
+    }
+
+    // Write a JSON object, with an offset field unless offset is negative
+    private void writeJson(long offset, CodePointInfo info) {
+        m_stdout.append(CodePointJson.append(new StringBuilder(96), offset,
+                                             info).append('\n'));
+    }
+
+    // Quote a string as a JSON string literal
+    private static CharSequence quote(String s) {
+        return CodePointJson.quote(new StringBuilder(s.length() + 2), s);
+    }
+}
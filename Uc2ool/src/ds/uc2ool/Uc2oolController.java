@@ -2,6 +2,7 @@ package ds.uc2ool;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.ResourceBundle;
@@ -21,6 +22,7 @@ import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
@@ -83,6 +85,8 @@ public class Uc2oolController {
     private RadioButton m_decimalCodePointRB;
     @FXML // fx:id="m_UTF8Encoding"     
     private RadioButton m_UTF8EncodingRB;
+    @FXML // fx:id="m_nameRB"
+    private RadioButton m_nameRB;
     
     @FXML // fx:id="m_unicodeName"
     private Label m_unicodeName;
@@ -109,6 +113,13 @@ public class Uc2oolController {
     private final String DEFAULT_FONT_SIZE = "80";
     private double m_fontSizeValue = Double.valueOf(DEFAULT_FONT_SIZE);
     
+    @FXML // fx:id="m_searchField"
+    private TextField m_searchField;
+    
+    @FXML // fx:id="m_searchResults"
+    private ListView<String> m_searchResults;
+    private final int SEARCH_LIMIT = 50;
+    
     @FXML // fx:id="m_statusBar"
     private Label m_statuBar;
     
@@ -155,17 +166,21 @@ public class Uc2oolController {
          * interpretation.
          */ 
         if (m_inputType != null) {
-            StringBuilder sb = new StringBuilder("m_inputType buttons:\n");
             m_characterRB.setUserData(InputType.CHARACTER);
             m_hexCodePointRB.setUserData(InputType.HEXCODEPOINT);
             m_decimalCodePointRB.setUserData(InputType.DECCODEPOINT);
             m_UTF8EncodingRB.setUserData(InputType.UTF8);
+            m_nameRB.setUserData(InputType.NAME);
             
-            m_inputType.getToggles().forEach(
-                    (rb) -> {sb.append("  ").append(rb.toString()).
-                             append(" ").append(rb.isSelected()).
-                             append("\n");});
-            m_logger.log(Level.FINEST, sb.toString());
+            DebugLogger.log(m_logger, Level.FINEST, CLASS_NAME,
+                            "initializeUIElements", () -> {
+                StringBuilder sb = new StringBuilder("m_inputType buttons:\n");
+                m_inputType.getToggles().forEach(
+                        (rb) -> {sb.append("  ").append(rb.toString()).
+                                 append(" ").append(rb.isSelected()).
+                                 append("\n");});
+                return sb.toString();
+            });
         }
         
         /* Initialize the combobox for the font used for displaying the
@@ -209,6 +224,67 @@ public class Uc2oolController {
             });
             m_fontSize.setValue(DEFAULT_FONT_SIZE);
         }
+        
+        /* Set up the name search box to search as the user types and the
+         * result list to process whichever character is selected.
+         */
+        if (m_searchField != null && m_searchResults != null) {
+            m_searchField.textProperty().addListener(
+                new ChangeListener<String>() {
+                        @Override
+                        public void changed(ObservableValue<? extends String> o, String ov, String nv) {
+                            searchNames(nv);
+                        }
+            });
+            m_searchResults.getSelectionModel().selectedItemProperty().
+                addListener(
+                    new ChangeListener<String>() {
+                        @Override
+                        public void changed(ObservableValue<? extends String> o, String ov, String nv) {
+                            searchResultSelected(nv);
+                        }
+            });
+        }
+    }
+
+    /* Called as the name search text changes. Replaces the result list
+     * with the best matches for the new text, formatted as
+     * "U+XXXX NAME".
+     *
+     * @param query the search text
+     */
+    private void searchNames(String query) {
+        try {
+            DebugLogger.log(m_logger, Level.FINEST, CLASS_NAME,
+                            "searchNames", "{0}", query);
+            int[] cps = Uc2oolModel.searchNames(query, SEARCH_LIMIT);
+            List<String> items = new ArrayList<String>(cps.length);
+            for (int cp : cps) {
+                items.add(String.format("U+%04X %s", cp,
+                    Uc2oolModel.getUnicodeCharacterName(cp)));
+            }
+            m_searchResults.getItems().setAll(items);
+        } catch (Exception e) {
+            handleException(e);
+        }
+    }
+
+    /* Called when a search result is selected. Loads its code point into
+     * the input field as hex and processes it.
+     *
+     * @param item the selected "U+XXXX NAME" item, or null
+     */
+    private void searchResultSelected(String item) {
+        try {
+            if (item != null) {
+                m_inputCharacter.setText(
+                    item.substring(0, item.indexOf(' ')));
+                m_hexCodePointRB.setSelected(true);
+                processFired(null);
+            }
+        } catch (Exception e) {
+            handleException(e);
+        }
     }
 
     /**
@@ -238,7 +314,9 @@ public class Uc2oolController {
     void processFired(ActionEvent event) {
     	try {
             if (m_inputCharacter != null) {
-            	m_logger.log(Level.FINEST, m_inputCharacter.getText());
+            	DebugLogger.log(m_logger, Level.FINEST, CLASS_NAME,
+            	                "processFired", "{0}",
+            	                m_inputCharacter.getText());
             	
             	// Get the input type and prime Uc2oolModel
             	InputType type = 
@@ -246,7 +324,9 @@ public class Uc2oolController {
             	        ((RadioButton)m_inputType.getSelectedToggle()).
             	        getUserData();
             	m_model.setInput(m_inputCharacter.getText(), type);
-            	m_logger.log(Level.FINEST, m_model.toString());
+            	// m_model is only turned into text if FINEST is enabled
+            	DebugLogger.log(m_logger, Level.FINEST, CLASS_NAME,
+            	                "processFired", "{0}", m_model);
             	
             	// Now populate output display fields with data from the 
             	// Uc2oolModel
@@ -315,6 +395,13 @@ public class Uc2oolController {
     private void connectToCalculator() {
         if (m_model == null) {
             m_model = new Uc2oolModel(m_logger);
+            
+            // Build the name indexes in the background so that the first
+            // name lookup or search does not stall the UI.
+            Thread t = new Thread(() -> Uc2oolModel.preloadNameIndexes(),
+                                  "uc2ool-name-index");
+            t.setDaemon(true);
+            t.start();
         }
     }
 
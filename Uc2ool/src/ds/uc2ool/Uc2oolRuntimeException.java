@@ -3,9 +3,6 @@
  */
 package ds.uc2ool;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 import java.util.ResourceBundle;
 
 /**
@@ -16,6 +13,11 @@ import java.util.ResourceBundle;
  * handling mechanism which will catch this exception and process it as
  * required.
  * 
+ * The message is only looked up and formatted when it is asked for, so
+ * an exception that is caught and discarded costs little more than its
+ * allocation, and none at all for the stack trace if it was created
+ * without one.
+ * 
  * @author  Daniel Semler
  * @version %I%, %G%
  * @since   1.0
@@ -28,7 +30,7 @@ public class Uc2oolRuntimeException extends RuntimeException {
     private static final long serialVersionUID = 1L;
     
     private final String m_msgKey;
-    private final List<Object> m_args;
+    private final Object[] m_args;
     private final static String RESOURCE_BUNDLE_NAME =
             "ds.uc2ool.resources.Messages";
     
@@ -39,15 +41,35 @@ public class Uc2oolRuntimeException extends RuntimeException {
      * @param arguments required by the message substitution string
      */
     public Uc2oolRuntimeException(String msgKey, Object... args) {
+        this(true, msgKey, args);
+    }
+    
+    /*
+     * Constructor which can leave out the stack trace, for exceptions
+     * reporting bad input rather than a fault in the program.
+     * 
+     * @param stackTrace false to skip filling in the stack trace
+     * @param msgKey the resource bundle message key for the message
+     * @param arguments required by the message substitution string
+     */
+    protected Uc2oolRuntimeException(boolean stackTrace, String msgKey,
+                                     Object... args) {
+        super(null, null, stackTrace, stackTrace);
         m_msgKey = msgKey;
-        m_args = new ArrayList<Object>(Arrays.asList(args));
+        m_args = args;
+    }
+    
+    /**
+     * @return the resource bundle message key for the message
+     */
+    public String getMessageKey() {
+        return m_msgKey;
     }
     
     @Override
     public String getLocalizedMessage() {
         ResourceBundle mb = ResourceBundle.getBundle(RESOURCE_BUNDLE_NAME);
         String msg = mb.getString(m_msgKey);
-        return new StringBuilder(
-                String.format(msg, m_args.toArray())).toString();
+        return String.format(msg, m_args);
     }
 }
@@ -0,0 +1,352 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import ds.uc2ool.model.CodePointParser;
+import ds.uc2ool.model.Uc2oolModel;
+import ds.uc2ool.model.Uc2oolModel.InputType;
+import ds.uc2ool.model.ValidationResult;
+
+/**
+ * Uc2oolServer serves code point lookups over HTTP as JSON, using the
+ * HTTP server built into the JDK. The objects returned are those of
+ * <code>Uc2oolCli --json</code>:
+ * <pre>
+ *   GET  /cp/1F600              one code point, in hex or any notation
+ *                               CodePointParser reads, such as U+1F600
+ *   GET  /name?q=grinning&amp;limit=5
+ *                               an array of the characters whose names
+ *                               hold all the words of q, best match first
+ *   POST /batch?radix=16        an array describing each of the white
+ *                               space separated code points of the body
+ * </pre>
+ * Invalid input gives status 400 and an object with an "error" field; in
+ * a batch such an object takes the place of the invalid code point.
+ *
+ * Requests run on virtual threads where the JVM has them, and otherwise
+ * on a fixed pool. Every request uses the static, thread-safe API of
+ * <code>Uc2oolModel</code> and so shares its Unicode data, name indexes
+ * and encoding cache, all of which are loaded before the server starts
+ * listening. It listens on the loopback interface unless told otherwise:
+ * <pre>
+ *   java -cp uc2ool.jar ds.uc2ool.Uc2oolServer [--port 8080] [--bind addr]
+ * </pre>
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class Uc2oolServer {
+
+    /**
+     * The port listened on unless --port is given.
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    /**
+     * The largest batch request body accepted, in bytes.
+     */
+    public static final int MAX_BATCH_BYTES = 1 << 20;
+
+    private static final String USAGE =
+        "Usage: java ds.uc2ool.Uc2oolServer [--port <port>] " +
+        "[--bind <address>]";
+    private static final int BACKLOG = 1024;
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 1000;
+    private static final String JSON = "application/json; charset=utf-8";
+    // Read once by the JDK server, when it is first used
+    private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final HttpServer m_server;
+    private final ExecutorService m_executor;
+    private final boolean m_virtual;
+
+    /**
+     * Create a server, loading the Unicode data it needs. It does not
+     * listen until started.
+     *
+     * @param address the address to listen on; port 0 picks a free port
+     * @throws IOException if the address cannot be bound
+     */
+    public Uc2oolServer(InetSocketAddress address) throws IOException {
+        // The headers and body of a response are written separately, and
+        // with Nagle's algorithm on the body then waits for the client's
+        // delayed ACK, limiting a keep-alive connection to about 25
+        // requests a second
+        if (System.getProperty(NODELAY_PROPERTY) == null) {
+            System.setProperty(NODELAY_PROPERTY, "true");
+        }
+        Uc2oolModel.setEncodingCacheEnabled(true);
+        Uc2oolModel.preloadNameIndexes();
+        ExecutorService virtual = newVirtualThreadExecutor();
+        m_virtual = virtual != null;
+        m_executor = m_virtual ? virtual : Executors.newFixedThreadPool(
+            Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+        m_server = HttpServer.create(address, BACKLOG);
+        m_server.setExecutor(m_executor);
+        m_server.createContext("/cp/", this::codePoint);
+        m_server.createContext("/name", this::name);
+        m_server.createContext("/batch", this::batch);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        String bind = "127.0.0.1";
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--bind":
+                        bind = args[++i];
+                        break;
+                    default:
+                        throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        Uc2oolServer server =
+            new Uc2oolServer(new InetSocketAddress(bind, port));
+        server.start();
+        System.err.println("Listening on http://" + bind + ":" +
+                           server.getPort() + "/ using " +
+                           (server.m_virtual ? "virtual threads"
+                                             : "a thread pool"));
+    }
+
+    /**
+     * Start listening.
+     */
+    public void start() {
+        m_server.start();
+    }
+
+    /**
+     * Stop listening and release the request threads.
+     *
+     * @param delay the most seconds to wait for requests in progress
+     */
+    public void stop(int delay) {
+        m_server.stop(delay);
+        m_executor.shutdown();
+    }
+
+    /**
+     * @return the port listened on
+     */
+    public int getPort() {
+        return m_server.getAddress().getPort();
+    }
+
+    /**
+     * @return true if requests run on virtual threads
+     */
+    public boolean isVirtual() {
+        return m_virtual;
+    }
+
+    /*
+     * Get an executor starting a virtual thread per task, through
+     * reflection so as to still run on JVMs without them, or null.
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Before Java 21, or a preview not enabled
+            return null;
+        }
+    }
+
+    /*
+     * GET /cp/{codepoint}
+     */
+    private void codePoint(HttpExchange x) throws IOException {
+        try {
+            if (!"GET".equals(x.getRequestMethod())) {
+                sendError(x, 405, x.getRequestMethod(), "Use GET");
+                return;
+            }
+            String input = x.getRequestURI().getPath().substring(4);
+            ValidationResult r =
+                Uc2oolModel.validate(input, InputType.HEXCODEPOINT);
+            StringBuilder sb = new StringBuilder(128);
+            if (r.isValid()) {
+                send(x, 200, CodePointJson.append(
+                    sb, -1, Uc2oolModel.describe(r.getCodePoint())));
+            } else {
+                send(x, 400, CodePointJson.appendError(sb, input,
+                                                       r.getMessage()));
+            }
+        } catch (RuntimeException e) {
+            sendError(x, 500, x.getRequestURI().toString(), e.toString());
+        } finally {
+            x.close();
+        }
+    }
+
+    /*
+     * GET /name?q={words}&limit={n}
+     */
+    private void name(HttpExchange x) throws IOException {
+        try {
+            if (!"GET".equals(x.getRequestMethod())) {
+                sendError(x, 405, x.getRequestMethod(), "Use GET");
+                return;
+            }
+            Map<String, String> params =
+                parseQuery(x.getRequestURI().getRawQuery());
+            String q = params.get("q");
+            if (q == null) {
+                sendError(x, 400, x.getRequestURI().toString(),
+                          "Use GET /name?q=words");
+                return;
+            }
+            int limit = DEFAULT_LIMIT;
+            if (params.containsKey("limit")) {
+                limit = Math.min(MAX_LIMIT,
+                                 Integer.parseInt(params.get("limit")));
+            }
+            int[] cps = Uc2oolModel.searchNames(q, limit);
+            StringBuilder sb = new StringBuilder(128 * cps.length + 2);
+            sb.append('[');
+            for (int i = 0; i < cps.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                CodePointJson.append(sb, -1, Uc2oolModel.describe(cps[i]));
+            }
+            send(x, 200, sb.append(']'));
+        } catch (IllegalArgumentException e) {
+            // A bad limit or escape
+            sendError(x, 400, x.getRequestURI().toString(), e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(x, 500, x.getRequestURI().toString(), e.toString());
+        } finally {
+            x.close();
+        }
+    }
+
+    /*
+     * POST /batch?radix={10|16} with white space separated code points
+     */
+    private void batch(HttpExchange x) throws IOException {
+        try {
+            Map<String, String> params;
+            try {
+                params = parseQuery(x.getRequestURI().getRawQuery());
+            } catch (IllegalArgumentException e) {
+                sendError(x, 400, x.getRequestURI().toString(),
+                          e.getMessage());
+                return;
+            }
+            int radix = "10".equals(params.get("radix")) ? 10 : 16;
+            if (!"POST".equals(x.getRequestMethod())) {
+                sendError(x, 405, x.getRequestMethod(), "Use POST");
+                return;
+            }
+            String body = readBody(x.getRequestBody());
+            if (body == null) {
+                sendError(x, 413, "", "More than " + MAX_BATCH_BYTES +
+                                      " bytes");
+                return;
+            }
+            InputType type = radix == 10 ? InputType.DECCODEPOINT
+                                         : InputType.HEXCODEPOINT;
+            CodePointParser p = new CodePointParser(body, radix);
+            StringBuilder sb = new StringBuilder(body.length() * 16 + 2);
+            sb.append('[');
+            String sep = "";
+            for (int cp = p.next(); cp != CodePointParser.END;
+                 cp = p.next()) {
+                sb.append(sep);
+                sep = ",\n";
+                if (cp >= 0) {
+                    CodePointJson.append(sb, -1, Uc2oolModel.describe(cp));
+                } else {
+                    String input = body.substring(p.getTokenStart(),
+                                                  p.getTokenEnd());
+                    CodePointJson.appendError(
+                        sb, input, Uc2oolModel.validate(input, type)
+                                              .getMessage());
+                }
+            }
+            send(x, 200, sb.append(']'));
+        } catch (RuntimeException e) {
+            sendError(x, 500, x.getRequestURI().toString(), e.toString());
+        } finally {
+            x.close();
+        }
+    }
+
+    // Read a request body as UTF-8, or return null if it is too large
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] b = new byte[8192];
+        for (int n; (n = in.read(b)) > 0;) {
+            if (bytes.size() + n > MAX_BATCH_BYTES) {
+                return null;
+            }
+            bytes.write(b, 0, n);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    // Split a raw query string into decoded names and values, throwing
+    // IllegalArgumentException for a malformed escape. HttpServer refuses
+    // most such URIs itself, but the handlers do not rely on it.
+    static Map<String, String> parseQuery(String query)
+    throws UnsupportedEncodingException {
+        Map<String, String> m = new HashMap<>();
+        if (query == null) {
+            return m;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                m.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                      URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return m;
+    }
+
+    private static void sendError(HttpExchange x, int status, String input,
+                                  String message) throws IOException {
+        send(x, status, CodePointJson.appendError(new StringBuilder(),
+                                                  input, message));
+    }
+
+    private static void send(HttpExchange x, int status, CharSequence json)
+    throws IOException {
+        byte[] b = json.toString().getBytes(StandardCharsets.UTF_8);
+        x.getResponseHeaders().set("Content-Type", JSON);
+        x.sendResponseHeaders(status, b.length);
+        try (OutputStream out = x.getResponseBody()) {
+            out.write(b);
+        }
+    }
+}
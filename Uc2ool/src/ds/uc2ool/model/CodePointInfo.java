@@ -0,0 +1,91 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+/**
+ * CodePointInfo is an immutable description of a single Unicode code point
+ * holding its name and its various encodings. Instances are produced by
+ * <code>Uc2oolModel.describe(int)</code> and, having no mutable state, may be
+ * freely shared between threads.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class CodePointInfo {
+
+    private final int m_codepoint;
+    private final String m_name;
+    private final String m_utf8;
+    private final String m_utf16;
+
+    /*
+     * Constructor taking the code point and its precomputed values.
+     *
+     * @param cp the code point
+     * @param name the Unicode character name, possibly null
+     * @param utf8 the UTF-8 encoding as space separated hex bytes
+     * @param utf16 the UTF-16 encoding as space separated hex code units
+     */
+    CodePointInfo(int cp, String name, String utf8, String utf16) {
+        m_codepoint = cp;
+        m_name = name;
+        m_utf8 = utf8;
+        m_utf16 = utf16;
+    }
+
+    /**
+     * Get the code point value.
+     * @return the code point
+     */
+    public int getCodePoint() {
+        return m_codepoint;
+    }
+
+    /**
+     * Get the Unicode character name.
+     * @return the name, or null if the code point is unassigned
+     */
+    public String getUnicodeCharacterName() {
+        return m_name;
+    }
+
+    /**
+     * Get the UTF-8 encoding as space separated upper case hex bytes.
+     * @return the UTF-8 encoding
+     */
+    public String getUTF8Encoding() {
+        return m_utf8;
+    }
+
+    /**
+     * Get the UTF-16 encoding as space separated upper case hex code units.
+     * @return the UTF-16 encoding
+     */
+    public String getUTF16Encoding() {
+        return m_utf16;
+    }
+
+    /**
+     * Get the code point value as a decimal in String form.
+     * @return the decimal code point
+     */
+    public String getDecimalCodePoint() {
+        return String.valueOf(m_codepoint);
+    }
+
+    /**
+     * Get the character itself as a String.
+     * @return a String of one or two chars holding the character
+     */
+    public String getUnicodeCharacter() {
+        return Uc2oolModel.getUnicodeCharacter(m_codepoint);
+    }
+
+    @Override
+    public String toString() {
+        return "CodePointInfo [m_codepoint=" + m_codepoint +
+               ", m_name=" + m_name + "]";
+    }
+}
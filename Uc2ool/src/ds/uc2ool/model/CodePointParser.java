@@ -0,0 +1,208 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+/**
+ * CodePointParser reads code points written as numbers in a single pass,
+ * without allocating and without throwing. A number may be bare, in the
+ * radix the caller chooses, or in any of these notations, whose prefixes
+ * are accepted in either case:
+ * <pre>
+ *   0x1F600   U+1F600   &#92;u00E9   &#92;U0001F600   &amp;#x1F600;
+ *   &amp;#128512;
+ * </pre>
+ * A Java style pair of surrogate escapes, such as
+ * &#92;uD83D&#92;uDE00, is read as the one supplementary code point it
+ * encodes. Surrounding whitespace is ignored.
+ *
+ * The static <code>parse()</code> reads one number from part of a
+ * CharSequence. An instance reads a whole buffer of whitespace separated
+ * numbers with <code>next()</code>, reporting where each one lies. Both
+ * return the code point, or one of the negative error codes below.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class CodePointParser {
+
+    /**
+     * Returned by <code>next()</code> when there are no more numbers.
+     */
+    public static final int END = -1;
+
+    /**
+     * There are no digits, as in "" or "U+".
+     */
+    public static final int NO_DIGITS = -2;
+
+    /**
+     * A character is not a digit of the radix in use.
+     */
+    public static final int BAD_DIGIT = -3;
+
+    /**
+     * The value is above U+10FFFF.
+     */
+    public static final int OUT_OF_RANGE = -4;
+
+    /**
+     * A character reference does not end with ';'.
+     */
+    public static final int UNTERMINATED = -5;
+
+    private final CharSequence m_text;
+    private final int m_end;
+    private final int m_radix;
+    private int m_pos;
+    private int m_tokenStart;
+    private int m_tokenEnd;
+
+    /**
+     * Create a parser over a whole buffer.
+     *
+     * @param text the buffer of whitespace separated numbers
+     * @param radix the radix of numbers without a prefix, 10 or 16
+     */
+    public CodePointParser(CharSequence text, int radix) {
+        this(text, 0, text.length(), radix);
+    }
+
+    /**
+     * Create a parser over part of a buffer.
+     *
+     * @param text the buffer of whitespace separated numbers
+     * @param start the index of the first character to read
+     * @param end the index after the last character to read
+     * @param radix the radix of numbers without a prefix, 10 or 16
+     */
+    public CodePointParser(CharSequence text, int start, int end,
+                           int radix) {
+        m_text = text;
+        m_pos = start;
+        m_end = end;
+        m_radix = radix;
+        m_tokenStart = m_tokenEnd = start;
+    }
+
+    /**
+     * Read the next number.
+     *
+     * @return the code point, <code>END</code> if there are no more
+     * numbers, or an error code for a number that is not a valid code point
+     */
+    public int next() {
+        while (m_pos < m_end &&
+               Character.isWhitespace(m_text.charAt(m_pos))) {
+            m_pos++;
+        }
+        m_tokenStart = m_pos;
+        if (m_pos == m_end) {
+            m_tokenEnd = m_pos;
+            return END;
+        }
+        while (m_pos < m_end &&
+               !Character.isWhitespace(m_text.charAt(m_pos))) {
+            m_pos++;
+        }
+        m_tokenEnd = m_pos;
+        return parse(m_text, m_tokenStart, m_tokenEnd, m_radix);
+    }
+
+    /**
+     * @return the index of the first character of the number last read
+     */
+    public int getTokenStart() {
+        return m_tokenStart;
+    }
+
+    /**
+     * @return the index after the last character of the number last read
+     */
+    public int getTokenEnd() {
+        return m_tokenEnd;
+    }
+
+    /**
+     * Read one number.
+     *
+     * @param s the characters holding the number
+     * @param start the index of the first character of the number
+     * @param end the index after the last character of the number
+     * @param radix the radix if the number has no prefix, 10 or 16
+     * @return the code point, or a negative error code
+     */
+    public static int parse(CharSequence s, int start, int end, int radix) {
+        while (start < end && Character.isWhitespace(s.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(s.charAt(end - 1))) {
+            end--;
+        }
+        int i = start;
+        boolean escape = false;
+        if (end - i >= 2) {
+            char c0 = s.charAt(i);
+            char c1 = s.charAt(i + 1);
+            if ((c0 == '0' && (c1 == 'x' || c1 == 'X')) ||
+                ((c0 == 'U' || c0 == 'u') && c1 == '+')) {
+                radix = 16;
+                i += 2;
+            } else if (c0 == '\\' && (c1 == 'u' || c1 == 'U')) {
+                radix = 16;
+                i += 2;
+                escape = true;
+            } else if (c0 == '&' && c1 == '#') {
+                i += 2;
+                radix = 10;
+                if (i < end && (s.charAt(i) == 'x' || s.charAt(i) == 'X')) {
+                    radix = 16;
+                    i++;
+                }
+                if (s.charAt(end - 1) != ';') {
+                    return UNTERMINATED;
+                }
+                end--;
+            }
+        }
+        int value = 0;
+        int j = i;
+        for (; j < end; j++) {
+            int d = digit(s.charAt(j), radix);
+            if (d < 0) {
+                break;
+            }
+            // Stop accumulating once out of range, so as not to overflow
+            if (value <= Character.MAX_CODE_POINT) {
+                value = value * radix + d;
+            }
+        }
+        if (j == i) {
+            return j == end ? NO_DIGITS : BAD_DIGIT;
+        }
+        if (j < end) {
+            if (escape && value >= Character.MIN_HIGH_SURROGATE &&
+                value <= Character.MAX_HIGH_SURROGATE &&
+                s.charAt(j) == '\\') {
+                int low = parse(s, j, end, 16);
+                if (low >= Character.MIN_LOW_SURROGATE &&
+                    low <= Character.MAX_LOW_SURROGATE) {
+                    return Character.toCodePoint((char) value, (char) low);
+                }
+                return low < 0 ? low : BAD_DIGIT;
+            }
+            return BAD_DIGIT;
+        }
+        return value > Character.MAX_CODE_POINT ? OUT_OF_RANGE : value;
+    }
+
+    // The value of an ASCII digit, or -1 if c is not one in the radix
+    private static int digit(char c, int radix) {
+        int d = c >= '0' && c <= '9' ? c - '0'
+              : c >= 'a' && c <= 'f' ? c - 'a' + 10
+              : c >= 'A' && c <= 'F' ? c - 'A' + 10
+              : Integer.MAX_VALUE;
+        return d < radix ? d : -1;
+    }
+}
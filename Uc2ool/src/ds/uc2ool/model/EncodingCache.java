@@ -0,0 +1,178 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * EncodingCache holds the UTF-8 and UTF-16 encodings of code points packed
+ * into primitives, so that formatting one is a table read rather than an
+ * encode into a temporary array. It is enabled through
+ * <code>Uc2oolModel.setEncodingCacheEnabled()</code>.
+ *
+ * The UTF-8 bytes of every BMP code point are computed when the cache is
+ * created, packed into one int each for 256KB in all. Supplementary code
+ * points are filled in as they are used into a direct mapped table of
+ * <code>SUPPLEMENTARY_SLOTS</code> longs, each packing a code point with
+ * its four bytes; a code point evicts whichever other shared its slot. A
+ * UTF-16 encoding is the code point itself in the BMP, and a surrogate
+ * pair packed from it by shifts outside it, so needs no table.
+ *
+ * Most callers want the encodings as text in the default SPACE style, and
+ * there building the String costs more than the encoding. So the texts of
+ * the last code points formatted are also kept, in a second direct mapped
+ * table of <code>TEXT_SLOTS</code> entries, and a repeated lookup in that
+ * style returns the same String again.
+ *
+ * The cache is thread-safe and never blocks. Entries of the primitive
+ * table are single longs read and written atomically, and those of the
+ * text table immutable objects, so a reader sees either a whole entry or a
+ * miss.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+final class EncodingCache {
+
+    /**
+     * The number of supplementary code points held at once.
+     */
+    static final int SUPPLEMENTARY_SLOTS = 4096;
+
+    /**
+     * The number of code points whose formatted text is held at once.
+     */
+    static final int TEXT_SLOTS = 16384;
+
+    private static final int BMP_SIZE = 0x10000;
+
+    // UTF-8 bytes of each BMP code point, first byte most significant
+    private final int[] m_bmpUtf8 = new int[BMP_SIZE];
+    // Code point << 32 | UTF-8 bytes, or 0 for an empty slot
+    private final AtomicLongArray m_supplementary =
+        new AtomicLongArray(SUPPLEMENTARY_SLOTS);
+    private final Text[] m_text = new Text[TEXT_SLOTS];
+
+    EncodingCache() {
+        for (int cp = 0; cp < BMP_SIZE; cp++) {
+            m_bmpUtf8[cp] = pack(cp);
+        }
+    }
+
+    /*
+     * Get the UTF-8 bytes of a code point from 0 to U+10FFFF, packed with
+     * the first byte most significant.
+     */
+    int utf8(int cp) {
+        if (cp < BMP_SIZE) {
+            return m_bmpUtf8[cp];
+        }
+        int slot = cp & (SUPPLEMENTARY_SLOTS - 1);
+        long e = m_supplementary.get(slot);
+        if ((int) (e >>> 32) == cp) {
+            return (int) e;
+        }
+        int bytes = pack(cp);
+        m_supplementary.lazySet(slot,
+                                (long) cp << 32 | (bytes & 0xffffffffL));
+        return bytes;
+    }
+
+    /*
+     * Get the UTF-16 code units of a code point from 0 to U+10FFFF, packed
+     * with the first unit most significant.
+     */
+    static int utf16(int cp) {
+        return cp < BMP_SIZE ? cp : Character.highSurrogate(cp) << 16 |
+                                    Character.lowSurrogate(cp);
+    }
+
+    /*
+     * Format the UTF-8 encoding of a code point from 0 to U+10FFFF.
+     */
+    String formatUtf8(int cp, HexFormatter.Style style) {
+        return HexFormatter.formatPacked(utf8(cp), utf8Length(cp), 2, style);
+    }
+
+    /*
+     * Format the UTF-16 encoding of a code point from 0 to U+10FFFF.
+     */
+    static String formatUtf16(int cp, HexFormatter.Style style) {
+        return HexFormatter.formatPacked(utf16(cp), cp < BMP_SIZE ? 1 : 2,
+                                         4, style);
+    }
+
+    /*
+     * Get the UTF-8 encoding of a code point from 0 to U+10FFFF in the
+     * SPACE style.
+     */
+    String utf8Text(int cp) {
+        return text(cp).m_utf8;
+    }
+
+    /*
+     * Get the UTF-16 encoding of a code point from 0 to U+10FFFF in the
+     * SPACE style.
+     */
+    String utf16Text(int cp) {
+        return text(cp).m_utf16;
+    }
+
+    private Text text(int cp) {
+        // Fold the plane into the slot so that a character and those 64K
+        // away in the next plane do not always collide
+        int slot = (cp ^ cp >>> 12) & (TEXT_SLOTS - 1);
+        Text t = m_text[slot];
+        if (t == null || t.m_cp != cp) {
+            t = new Text(cp, formatUtf8(cp, HexFormatter.Style.SPACE),
+                         formatUtf16(cp, HexFormatter.Style.SPACE));
+            m_text[slot] = t;
+        }
+        return t;
+    }
+
+    /*
+     * Whether a supplementary code point is currently held, for tests.
+     */
+    boolean holds(int cp) {
+        long e = m_supplementary.get(cp & (SUPPLEMENTARY_SLOTS - 1));
+        return (int) (e >>> 32) == cp;
+    }
+
+    // The formatted encodings of one code point
+    private static final class Text {
+        final int m_cp;
+        final String m_utf8;
+        final String m_utf16;
+
+        Text(int cp, String utf8, String utf16) {
+            m_cp = cp;
+            m_utf8 = utf8;
+            m_utf16 = utf16;
+        }
+    }
+
+    private static int utf8Length(int cp) {
+        return cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < BMP_SIZE ? 3 : 4;
+    }
+
+    // Encode as UTF-8 packed into an int, as UTF8Codec would encode it
+    private static int pack(int cp) {
+        if (cp < 0x80) {
+            return cp;
+        } else if (cp < 0x800) {
+            return (0xc0 | cp >>> 6) << 8 | trail(cp);
+        } else if (cp < BMP_SIZE) {
+            return (0xe0 | cp >>> 12) << 16 | trail(cp >>> 6) << 8 |
+                   trail(cp);
+        }
+        return (0xf0 | cp >>> 18) << 24 | trail(cp >>> 12) << 16 |
+               trail(cp >>> 6) << 8 | trail(cp);
+    }
+
+    private static int trail(int v) {
+        return 0x80 | (v & 0x3f);
+    }
+}
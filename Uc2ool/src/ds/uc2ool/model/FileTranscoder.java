@@ -0,0 +1,232 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * FileTranscoder streams whole files through the model's codecs, either
+ * reporting every code point with its byte offset or transcoding between
+ * UTF-8, UTF-16LE and UTF-16BE.
+ *
+ * Input is read through a FileChannel into a fixed size buffer, decoded a
+ * chunk at a time and, when transcoding, encoded into a second fixed size
+ * buffer and written out. A sequence split across two chunks is carried
+ * over: by the <code>UTF8Decoder</code> state for UTF-8, and by leaving the
+ * partial code unit or surrogate pair in the buffer for UTF-16. Memory use
+ * is therefore constant whatever the size of the file.
+ *
+ * Malformed input is replaced with U+FFFD and counted. This covers both
+ * ill-formed UTF-8 and unpaired UTF-16 surrogates, so the output of a
+ * transcode is always well formed. A transcoder holds the state of one
+ * pass and must not be shared between threads.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class FileTranscoder {
+
+    /**
+     * The encodings a file may be read or written in.
+     */
+    public enum Encoding {
+        UTF8,
+        UTF16LE,
+        UTF16BE;
+
+        /**
+         * Look up an encoding by name, ignoring case and hyphens, so that
+         * "utf-8" and "UTF-16LE" are both accepted.
+         *
+         * @param name the encoding name
+         * @return the encoding
+         * @throws IllegalArgumentException if the name is not recognised
+         */
+        public static Encoding forName(String name) {
+            return valueOf(name.replace("-", "").toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Receives each code point of a file in turn.
+     */
+    public interface CodePointVisitor {
+        /**
+         * Called once for each code point.
+         *
+         * @param offset the byte offset in the file of the code point
+         * @param cp the code point, U+FFFD for malformed input
+         * @throws IOException if the visitor fails writing its output
+         */
+        void codePoint(long offset, int cp) throws IOException;
+    }
+
+    /**
+     * The size of the input buffer in bytes.
+     */
+    public static final int CHUNK_SIZE = 1 << 20;
+
+    private final Encoding m_from;
+    private final ByteBuffer m_in = ByteBuffer.allocate(CHUNK_SIZE);
+    private final int[] m_cps = new int[CHUNK_SIZE + 2];
+    private long[] m_starts;        // allocated only when analysing
+    private UTF8Decoder m_decoder;
+    private long m_offset;          // offset of m_in in UTF-16 input
+    private boolean m_eof;
+    private long m_errors;
+
+    /**
+     * Create a transcoder for input in the given encoding.
+     *
+     * @param from the input encoding
+     */
+    public FileTranscoder(Encoding from) {
+        m_from = from;
+    }
+
+    /**
+     * Visit every code point of a file.
+     *
+     * @param in the file
+     * @param v the visitor
+     * @return the number of code points visited
+     * @throws IOException if the file cannot be read or the visitor fails
+     */
+    public long analyze(Path in, CodePointVisitor v) throws IOException {
+        if (m_starts == null) {
+            m_starts = new long[m_cps.length];
+        }
+        long total = 0;
+        try (FileChannel fc = FileChannel.open(in, StandardOpenOption.READ)) {
+            start();
+            for (int n; (n = next(fc)) >= 0;) {
+                for (int i = 0; i < n; i++) {
+                    v.codePoint(m_starts[i], m_cps[i]);
+                }
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Transcode a file.
+     *
+     * @param in the input file
+     * @param out the output file, which is created or replaced
+     * @param to the output encoding
+     * @return the number of bytes written
+     * @throws IOException if either file cannot be accessed
+     */
+    public long transcode(Path in, Path out, Encoding to) throws IOException {
+        // Room for the largest encoding, 4 bytes, of every code point
+        ByteBuffer buf = ByteBuffer.allocate(m_cps.length * 4);
+        long total = 0;
+        try (FileChannel ic = FileChannel.open(in, StandardOpenOption.READ);
+             FileChannel oc = FileChannel.open(out,
+                                  StandardOpenOption.WRITE,
+                                  StandardOpenOption.CREATE,
+                                  StandardOpenOption.TRUNCATE_EXISTING)) {
+            start();
+            for (int n; (n = next(ic)) >= 0;) {
+                buf.clear();
+                switch (to) {
+                case UTF8:
+                    UTF8Codec.encodeUtf8(m_cps, 0, n, buf);
+                    break;
+                case UTF16LE:
+                    UTF16Codec.encodeUtf16LE(m_cps, 0, n, buf);
+                    break;
+                default:
+                    UTF16Codec.encodeUtf16BE(m_cps, 0, n, buf);
+                    break;
+                }
+                buf.flip();
+                while (buf.hasRemaining()) {
+                    total += oc.write(buf);
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of malformed sequences replaced in the last pass
+     */
+    public long getErrorCount() {
+        return m_errors;
+    }
+
+    // Prepare for a new pass
+    private void start() {
+        m_in.clear();
+        m_offset = 0;
+        m_eof = false;
+        m_errors = 0;
+        m_decoder = m_from == Encoding.UTF8 ? new UTF8Decoder() : null;
+    }
+
+    /*
+     * Read and decode the next chunk into m_cps, and m_starts if present.
+     * Returns the number of code points, possibly 0, or -1 at the end of
+     * the input.
+     */
+    private int next(FileChannel fc) throws IOException {
+        if (m_eof) {
+            return -1;
+        }
+        m_eof = fc.read(m_in) < 0;
+        m_in.flip();
+        int n = m_decoder != null ? decodeUTF8(m_eof) : decodeUTF16(m_eof);
+        m_in.compact();
+        return m_eof && n == 0 ? -1 : n;
+    }
+
+    private int decodeUTF8(boolean eof) {
+        int n = m_decoder.decode(m_in, m_cps, m_starts, 0);
+        if (eof) {
+            n += m_decoder.finish(m_cps, m_starts, n);
+        }
+        m_errors = m_decoder.getErrorCount();
+        return n;
+    }
+
+    private int decodeUTF16(boolean eof) {
+        int start = m_in.position();
+        boolean bigEndian = m_from == Encoding.UTF16BE;
+        int n = UTF16Codec.decodeUtf16(m_in, bigEndian, m_cps, 0);
+        if (eof && m_in.remaining() >= 2) {
+            // A high surrogate with nothing after it
+            m_cps[n++] = bigEndian ? m_in.getChar()
+                                   : Character.reverseBytes(m_in.getChar());
+        }
+        if (eof && m_in.hasRemaining()) {
+            // An odd trailing byte
+            m_in.get();
+            m_cps[n++] = UTF8Decoder.REPLACEMENT_CHARACTER;
+            m_errors++;
+        }
+        long offset = m_offset;
+        for (int i = 0; i < n; i++) {
+            int cp = m_cps[i];
+            if (m_starts != null) {
+                m_starts[i] = offset;
+            }
+            offset += cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT ? 4 : 2;
+            if (cp >= Character.MIN_SURROGATE &&
+                cp <= Character.MAX_SURROGATE) {
+                m_cps[i] = UTF8Decoder.REPLACEMENT_CHARACTER;
+                m_errors++;
+            }
+        }
+        m_offset += m_in.position() - start;
+        return n;
+    }
+}
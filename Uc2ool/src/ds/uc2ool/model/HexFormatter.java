@@ -0,0 +1,240 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+/**
+ * HexFormatter formats bytes and 16 bit code units as upper case hex using
+ * precomputed lookup tables. Output is written straight into a caller
+ * supplied StringBuilder or char[] with no intermediate Strings and no case
+ * conversion. The Style selects the per value prefix and the separator so
+ * that the same encodings may be produced as plain dumps, C literals or URL
+ * escapes. All methods are static and thread-safe.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class HexFormatter {
+
+    /**
+     * The output styles. For example the bytes F0 9F are written as:
+     * <pre>
+     *   SPACE        F0 9F
+     *   NONE         F09F
+     *   BACKSLASH_X  \xF0\x9F
+     *   PERCENT      %F0%9F
+     *   HEX_LITERAL  0xF0, 0x9F
+     * </pre>
+     */
+    public enum Style {
+        SPACE("", " "),
+        NONE("", ""),
+        BACKSLASH_X("\\x", ""),
+        PERCENT("%", ""),
+        HEX_LITERAL("0x", ", ");
+
+        private final char[] m_prefix;
+        private final char[] m_separator;
+
+        private Style(String prefix, String separator) {
+            m_prefix = prefix.toCharArray();
+            m_separator = separator.toCharArray();
+        }
+    }
+
+    // High and low hex digit of each byte value
+    private static final char[] HI = new char[256];
+    private static final char[] LO = new char[256];
+    static {
+        final char[] digits = "0123456789ABCDEF".toCharArray();
+        for (int i = 0; i < 256; i++) {
+            HI[i] = digits[i >>> 4];
+            LO[i] = digits[i & 0xf];
+        }
+    }
+
+    private HexFormatter() {
+    }
+
+    /**
+     * Get the number of chars needed to format a run of values.
+     *
+     * @param count the number of values
+     * @param digits the hex digits per value, 2 for bytes, 4 for code units
+     * @param s the output style
+     * @return the formatted length in chars
+     */
+    public static int formattedLength(int count, int digits, Style s) {
+        if (count == 0) {
+            return 0;
+        }
+        return count * (s.m_prefix.length + digits) +
+               (count - 1) * s.m_separator.length;
+    }
+
+    /**
+     * Format bytes as a new String.
+     *
+     * @param b the bytes
+     * @param off the offset of the first byte
+     * @param len the number of bytes
+     * @param s the output style
+     * @return the formatted String
+     */
+    public static String formatBytes(byte[] b, int off, int len, Style s) {
+        char[] c = new char[formattedLength(len, 2, s)];
+        formatBytes(b, off, len, s, c, 0);
+        return new String(c);
+    }
+
+    /**
+     * Format bytes into a char array.
+     *
+     * @param b the bytes
+     * @param off the offset of the first byte
+     * @param len the number of bytes
+     * @param s the output style
+     * @param dst the destination array
+     * @param pos the index in dst at which to write the first char
+     * @return the number of chars written
+     */
+    public static int formatBytes(byte[] b, int off, int len, Style s,
+                                  char[] dst, int pos) {
+        int p = pos;
+        for (int i = off, end = off + len; i < end; i++) {
+            if (i != off) {
+                p = put(s.m_separator, dst, p);
+            }
+            p = put(s.m_prefix, dst, p);
+            int v = b[i] & 0xff;
+            dst[p++] = HI[v];
+            dst[p++] = LO[v];
+        }
+        return p - pos;
+    }
+
+    /**
+     * Append formatted bytes to a StringBuilder.
+     *
+     * @param b the bytes
+     * @param off the offset of the first byte
+     * @param len the number of bytes
+     * @param s the output style
+     * @param sb the destination
+     * @return sb
+     */
+    public static StringBuilder appendBytes(byte[] b, int off, int len,
+                                            Style s, StringBuilder sb) {
+        sb.ensureCapacity(sb.length() + formattedLength(len, 2, s));
+        for (int i = off, end = off + len; i < end; i++) {
+            if (i != off) {
+                sb.append(s.m_separator);
+            }
+            sb.append(s.m_prefix);
+            int v = b[i] & 0xff;
+            sb.append(HI[v]).append(LO[v]);
+        }
+        return sb;
+    }
+
+    /**
+     * Format 16 bit code units, four hex digits each, as a new String.
+     *
+     * @param c the code units
+     * @param off the offset of the first code unit
+     * @param len the number of code units
+     * @param s the output style
+     * @return the formatted String
+     */
+    public static String formatUnits(char[] c, int off, int len, Style s) {
+        char[] d = new char[formattedLength(len, 4, s)];
+        formatUnits(c, off, len, s, d, 0);
+        return new String(d);
+    }
+
+    /**
+     * Format 16 bit code units, four hex digits each, into a char array.
+     *
+     * @param c the code units
+     * @param off the offset of the first code unit
+     * @param len the number of code units
+     * @param s the output style
+     * @param dst the destination array
+     * @param pos the index in dst at which to write the first char
+     * @return the number of chars written
+     */
+    public static int formatUnits(char[] c, int off, int len, Style s,
+                                  char[] dst, int pos) {
+        int p = pos;
+        for (int i = off, end = off + len; i < end; i++) {
+            if (i != off) {
+                p = put(s.m_separator, dst, p);
+            }
+            p = put(s.m_prefix, dst, p);
+            int hi = c[i] >>> 8;
+            int lo = c[i] & 0xff;
+            dst[p++] = HI[hi];
+            dst[p++] = LO[hi];
+            dst[p++] = HI[lo];
+            dst[p++] = LO[lo];
+        }
+        return p - pos;
+    }
+
+    /**
+     * Append formatted 16 bit code units to a StringBuilder.
+     *
+     * @param c the code units
+     * @param off the offset of the first code unit
+     * @param len the number of code units
+     * @param s the output style
+     * @param sb the destination
+     * @return sb
+     */
+    public static StringBuilder appendUnits(char[] c, int off, int len,
+                                            Style s, StringBuilder sb) {
+        sb.ensureCapacity(sb.length() + formattedLength(len, 4, s));
+        for (int i = off, end = off + len; i < end; i++) {
+            if (i != off) {
+                sb.append(s.m_separator);
+            }
+            sb.append(s.m_prefix);
+            int hi = c[i] >>> 8;
+            int lo = c[i] & 0xff;
+            sb.append(HI[hi]).append(LO[hi]).append(HI[lo]).append(LO[lo]);
+        }
+        return sb;
+    }
+
+    /*
+     * Format up to four bytes, or two code units, packed into an int with
+     * the first value most significant, as a new String.
+     */
+    static String formatPacked(int packed, int count, int digits, Style s) {
+        char[] c = new char[formattedLength(count, digits, s)];
+        int p = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            if (i != count - 1) {
+                p = put(s.m_separator, c, p);
+            }
+            p = put(s.m_prefix, c, p);
+            int v = packed >>> (i * digits * 4);
+            if (digits == 4) {
+                c[p++] = HI[(v >>> 8) & 0xff];
+                c[p++] = LO[(v >>> 8) & 0xff];
+            }
+            c[p++] = HI[v & 0xff];
+            c[p++] = LO[v & 0xff];
+        }
+        return new String(c);
+    }
+
+    // Copy a short char sequence into dst
+    private static int put(char[] src, char[] dst, int p) {
+        for (int i = 0; i < src.length; i++) {
+            dst[p++] = src[i];
+        }
+        return p;
+    }
+}
@@ -0,0 +1,511 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * NameSearchIndex answers substring searches such as "ARROW" or
+ * "greek small" over the Unicode character names using a trigram inverted
+ * index. Each query word of three or more characters selects the posting
+ * lists of its trigrams, the lists are intersected and the surviving
+ * candidates are verified and ranked. When every query word is shorter
+ * than three characters a second table, of the one and two character
+ * strings of each name word tagged with how well they match, yields the
+ * whole word matches of a query word before its prefix and then its other
+ * matches, so a search for "ar" stops once it has enough of the best.
+ *
+ * Names are numbered shortest first so every posting list is already in
+ * result order within a ranking tier. A search therefore never sorts and
+ * stops as soon as it holds enough best tier matches, which keeps queries
+ * for common words such as "LETTER" as quick as those for rare ones.
+ *
+ * The explicit names held by <code>UnicodeNameIndex</code> are indexed;
+ * generated names such as "CJK UNIFIED IDEOGRAPHS 4E00" are reachable
+ * through its exact and prefix lookups instead. The index is built once, on
+ * first use, and is immutable thereafter so it may be shared between
+ * threads.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class NameSearchIndex {
+
+    private static volatile NameSearchIndex s_instance;
+
+    // Names use A-Z, 0-9, space and hyphen. Each maps to a 6 bit code so a
+    // trigram is an 18 bit key.
+    private static final int BITS = 6;
+    private static final int KEYS = 1 << (3 * BITS);
+    private static final int OTHER = (1 << BITS) - 1;
+    // Keys of the one and two character strings: a single code, or two
+    // codes whose first is never zero
+    private static final int SHORT_KEYS = 1 << (2 * BITS);
+
+    // Ranking weights for a query word matching a whole name word, the
+    // start of a name word, or elsewhere in a name word
+    private static final int WORD_SCORE = 3;
+    private static final int PREFIX_SCORE = 2;
+    private static final int SUBSTRING_SCORE = 1;
+
+    private final UnicodeNameIndex m_names;
+
+    // The name index in UnicodeNameIndex of each rank. Ranks order the
+    // names by length and then code point.
+    private final int[] m_rank;
+
+    // Posting lists in compressed row form: the ranks of the names holding
+    // trigram k are m_postings[m_postingStart[k] .. m_postingStart[k+1]-1],
+    // in ascending order.
+    private final int[] m_postingStart;
+    private final int[] m_postings;
+
+    // Posting lists of the one and two character strings of the names in
+    // the same form. Each entry is a rank shifted left two bits with the
+    // score of the string's best match in that name below.
+    private final int[] m_shortStart;
+    private final int[] m_shortPostings;
+
+    /*
+     * Build the trigram index over the explicit names.
+     */
+    private NameSearchIndex(UnicodeNameIndex names) {
+        m_names = names;
+        int count = names.size();
+
+        // Explicit names are in code point order so a stable sort by
+        // length gives the rank order.
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long) names.nameLength(i) << 32) | i;
+        }
+        Arrays.sort(keys);
+        m_rank = new int[count];
+        for (int r = 0; r < count; r++) {
+            m_rank[r] = (int) keys[r];
+        }
+
+        // First pass counts, second pass fills each list
+        m_postingStart = new int[KEYS + 1];
+        int[] last = new int[KEYS];
+        Arrays.fill(last, -1);
+        for (int r = 0; r < count; r++) {
+            forEachTrigram(r, last, null);
+        }
+        for (int k = 0; k < KEYS; k++) {
+            m_postingStart[k + 1] += m_postingStart[k];
+        }
+        m_postings = new int[m_postingStart[KEYS]];
+        int[] fill = Arrays.copyOf(m_postingStart, KEYS);
+        Arrays.fill(last, -1);
+        for (int r = 0; r < count; r++) {
+            forEachTrigram(r, last, fill);
+        }
+
+        // And the same for the short strings
+        m_shortStart = new int[SHORT_KEYS + 1];
+        last = new int[SHORT_KEYS];
+        Arrays.fill(last, -1);
+        int[] best = new int[SHORT_KEYS];
+        int maxLength = count == 0 ? 0 : (int) (keys[count - 1] >>> 32);
+        int[] touched = new int[2 * maxLength];
+        for (int r = 0; r < count; r++) {
+            forEachShortString(r, last, best, touched, null);
+        }
+        for (int k = 0; k < SHORT_KEYS; k++) {
+            m_shortStart[k + 1] += m_shortStart[k];
+        }
+        m_shortPostings = new int[m_shortStart[SHORT_KEYS]];
+        fill = Arrays.copyOf(m_shortStart, SHORT_KEYS);
+        Arrays.fill(last, -1);
+        for (int r = 0; r < count; r++) {
+            forEachShortString(r, last, best, touched, fill);
+        }
+    }
+
+    /**
+     * Get the shared index, building it, and the name index it depends on,
+     * on first use.
+     *
+     * @return the index
+     */
+    public static NameSearchIndex getInstance() {
+        NameSearchIndex idx = s_instance;
+        if (idx == null) {
+            synchronized (NameSearchIndex.class) {
+                idx = s_instance;
+                if (idx == null) {
+                    s_instance = idx =
+                        new NameSearchIndex(UnicodeNameIndex.getInstance());
+                }
+            }
+        }
+        return idx;
+    }
+
+    /*
+     * Discard the shared index so the next use rebuilds it from the
+     * current property database.
+     */
+    static void invalidate() {
+        synchronized (NameSearchIndex.class) {
+            s_instance = null;
+        }
+    }
+
+    /**
+     * Find the code points whose names contain every word of the query,
+     * ignoring case. Results are ranked with whole word matches before
+     * word prefix matches before other substring matches, then shorter
+     * names first, then by code point.
+     *
+     * @param query the words to search for
+     * @param limit the maximum number of results
+     * @return the matching code points, best first
+     */
+    public int[] search(String query, int limit) {
+        String[] words = tokenize(query);
+        if (words.length == 0 || limit <= 0) {
+            return new int[0];
+        }
+        int[][] lists = postingLists(words);
+        if (lists == null) {
+            return searchShort(words, limit);
+        }
+        int maxScore = WORD_SCORE * words.length;
+        int[][] tiers = new int[maxScore + 1][];
+        int[] tierCount = new int[maxScore + 1];
+
+        int[] cursors = new int[lists.length];
+        for (int r = lists[0][0], end = lists[0][1];
+             r < end && tierCount[maxScore] < limit; r++) {
+            int rank = m_postings[r];
+            if (!inAll(rank, lists, cursors)) {
+                continue;
+            }
+            int score = score(m_rank[rank], words);
+            if (score > 0 && tierCount[score] < limit) {
+                if (tiers[score] == null) {
+                    tiers[score] = new int[limit];
+                }
+                tiers[score][tierCount[score]++] =
+                    m_names.codePointAt(m_rank[rank]);
+            }
+        }
+
+        return concat(tiers, tierCount, limit);
+    }
+
+    /*
+     * Search for words all shorter than three characters. The shortest
+     * short string posting list of the words drives the search: its whole
+     * word matches are visited first, then its prefix matches and then the
+     * rest, and the other words' lists are probed for the same rank, their
+     * entries giving each word's score directly. A name's total score is
+     * at most its score for the driving word plus WORD_SCORE for each other
+     * word, so once enough names are found with a higher total the
+     * remaining passes are skipped. Names of a total score are found by
+     * more than one pass, so each tier is kept as a sorted list of the
+     * best ranks.
+     */
+    private int[] searchShort(String[] words, int limit) {
+        int[][] lists = new int[words.length][];
+        for (int w = 0; w < words.length; w++) {
+            int k = shortKey(words[w]);
+            lists[w] = new int[] { m_shortStart[k], m_shortStart[k + 1] };
+        }
+        Arrays.sort(lists, (a, b) -> (a[1] - a[0]) - (b[1] - b[0]));
+        int others = WORD_SCORE * (words.length - 1);
+        int maxScore = WORD_SCORE + others;
+        int[][] tiers = new int[maxScore + 1][];
+        int[] tierCount = new int[maxScore + 1];
+        int[] cursors = new int[lists.length];
+        for (int driver = WORD_SCORE; driver > 0; driver--) {
+            int top = driver + others;
+            int better = 0;
+            for (int t = top + 1; t <= maxScore; t++) {
+                better += tierCount[t];
+            }
+            if (better >= limit) {
+                break;
+            }
+            Arrays.fill(cursors, 0);
+            for (int p = lists[0][0]; p < lists[0][1]; p++) {
+                int e = m_shortPostings[p];
+                if ((e & 3) != driver) {
+                    continue;
+                }
+                int rank = e >>> 2;
+                if (tierCount[top] == limit &&
+                    tiers[top][limit - 1] < rank) {
+                    // Ranks ascend so no more can join the best tier
+                    break;
+                }
+                int score = driver + scoreOthers(rank, lists, cursors);
+                if (score > driver || lists.length == 1) {
+                    if (tiers[score] == null) {
+                        tiers[score] = new int[limit];
+                    }
+                    tierCount[score] =
+                        insert(tiers[score], tierCount[score], rank);
+                }
+            }
+        }
+        for (int t = 1; t <= maxScore; t++) {
+            for (int i = 0; i < tierCount[t]; i++) {
+                tiers[t][i] = m_names.codePointAt(m_rank[tiers[t][i]]);
+            }
+        }
+        return concat(tiers, tierCount, limit);
+    }
+
+    /*
+     * Sum the scores of a rank in all but the first of the short string
+     * posting lists, or 0 if it is missing from any. As in inAll() each
+     * list keeps a cursor which only moves forward.
+     */
+    private int scoreOthers(int rank, int[][] lists, int[] cursors) {
+        int total = 0;
+        for (int l = 1; l < lists.length; l++) {
+            int from = Math.max(cursors[l], lists[l][0]);
+            // Entries hold a score of at least 1 so this never matches
+            int at = -Arrays.binarySearch(m_shortPostings, from, lists[l][1],
+                                          rank << 2) - 1;
+            cursors[l] = at;
+            if (at == lists[l][1] || m_shortPostings[at] >>> 2 != rank) {
+                return 0;
+            }
+            total += m_shortPostings[at] & 3;
+        }
+        return total;
+    }
+
+    /*
+     * Insert a rank into a sorted tier of count ranks, dropping the
+     * highest if the tier is full. Returns the new count.
+     */
+    private static int insert(int[] tier, int count, int rank) {
+        int at = count;
+        while (at > 0 && tier[at - 1] > rank) {
+            at--;
+        }
+        if (at == tier.length) {
+            return count;
+        }
+        int moved = Math.min(count, tier.length - 1) - at;
+        System.arraycopy(tier, at, tier, at + 1, moved);
+        tier[at] = rank;
+        return Math.min(count + 1, tier.length);
+    }
+
+    /*
+     * Join the tiers of results, best first, up to the limit.
+     */
+    private static int[] concat(int[][] tiers, int[] tierCount, int limit) {
+        int n = 0;
+        for (int t = tiers.length - 1; t > 0; t--) {
+            n += tierCount[t];
+        }
+        int[] result = new int[Math.min(n, limit)];
+        int p = 0;
+        for (int t = tiers.length - 1; t > 0 && p < result.length; t--) {
+            int c = Math.min(tierCount[t], result.length - p);
+            if (c > 0) {
+                System.arraycopy(tiers[t], 0, result, p, c);
+                p += c;
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Get the posting list ranges of every trigram of every word of three
+     * or more characters, shortest first. The first list drives the search
+     * and the others are probed. Returns null if there are no such words.
+     */
+    private int[][] postingLists(String[] words) {
+        List<int[]> ranges = new ArrayList<>();
+        for (String w : words) {
+            for (int j = 0; j + 3 <= w.length(); j++) {
+                int k = key(code(w.charAt(j)), code(w.charAt(j + 1)),
+                            code(w.charAt(j + 2)));
+                ranges.add(new int[] { m_postingStart[k],
+                                       m_postingStart[k + 1] });
+            }
+        }
+        if (ranges.isEmpty()) {
+            return null;
+        }
+        ranges.sort((a, b) -> (a[1] - a[0]) - (b[1] - b[0]));
+        return ranges.toArray(new int[ranges.size()][]);
+    }
+
+    /*
+     * Is rank present in all but the first of the posting lists. Ranks are
+     * probed in ascending order so each list keeps a cursor which only
+     * moves forward.
+     */
+    private boolean inAll(int rank, int[][] lists, int[] cursors) {
+        for (int l = 1; l < lists.length; l++) {
+            int from = Math.max(cursors[l], lists[l][0]);
+            int at = Arrays.binarySearch(m_postings, from, lists[l][1], rank);
+            if (at < 0) {
+                cursors[l] = -at - 1;
+                return false;
+            }
+            cursors[l] = at + 1;
+        }
+        return true;
+    }
+
+    /*
+     * Score the i'th name against the query words, or 0 if any word does
+     * not occur in it.
+     */
+    private int score(int i, String[] words) {
+        int total = 0;
+        for (String w : words) {
+            int best = 0;
+            int len = m_names.nameLength(i);
+            for (int at = 0; at + w.length() <= len && best < WORD_SCORE;
+                 at++) {
+                if (!matchesAt(i, w, at)) {
+                    continue;
+                }
+                boolean start = at == 0 || m_names.nameCharAt(i, at - 1) == ' ';
+                int e = at + w.length();
+                boolean end = e == len || m_names.nameCharAt(i, e) == ' ';
+                int s = start ? (end ? WORD_SCORE : PREFIX_SCORE)
+                              : SUBSTRING_SCORE;
+                best = Math.max(best, s);
+            }
+            if (best == 0) {
+                return 0;
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    // Does word w occur in the i'th name at offset at
+    private boolean matchesAt(int i, String w, int at) {
+        for (int j = 0; j < w.length(); j++) {
+            if (m_names.nameCharAt(i, at + j) != w.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Visit each distinct trigram of each word of the name of the given
+     * rank. With a null fill array the posting list sizes are counted,
+     * otherwise the rank is stored. last[] suppresses repeats within a name.
+     */
+    private void forEachTrigram(int rank, int[] last, int[] fill) {
+        int i = m_rank[rank];
+        int len = m_names.nameLength(i);
+        for (int j = 0; j + 3 <= len; j++) {
+            int a = m_names.nameCharAt(i, j);
+            int b = m_names.nameCharAt(i, j + 1);
+            int c = m_names.nameCharAt(i, j + 2);
+            if (a == ' ' || b == ' ' || c == ' ') {
+                continue;
+            }
+            int k = key(code(a), code(b), code(c));
+            if (last[k] == rank) {
+                continue;
+            }
+            last[k] = rank;
+            if (fill == null) {
+                m_postingStart[k + 1]++;
+            } else {
+                m_postings[fill[k]++] = rank;
+            }
+        }
+    }
+
+    /*
+     * Visit each distinct one and two character string of each word of the
+     * name of the given rank, noting the best score of each: WORD_SCORE if
+     * it is a whole word, PREFIX_SCORE if it starts one. With a null fill
+     * array the posting list sizes are counted, otherwise the entries are
+     * stored. last[] marks the strings seen in this name and touched[]
+     * lists them.
+     */
+    private void forEachShortString(int rank, int[] last, int[] best,
+                                    int[] touched, int[] fill) {
+        int i = m_rank[rank];
+        int len = m_names.nameLength(i);
+        int n = 0;
+        for (int j = 0; j < len; j++) {
+            int a = m_names.nameCharAt(i, j);
+            if (a == ' ') {
+                continue;
+            }
+            boolean start = j == 0 || m_names.nameCharAt(i, j - 1) == ' ';
+            int b = j + 1 < len ? m_names.nameCharAt(i, j + 1) : ' ';
+            int k = code(a);
+            int s = start ? (b == ' ' ? WORD_SCORE : PREFIX_SCORE)
+                          : SUBSTRING_SCORE;
+            for (int pass = 0; pass < 2; pass++) {
+                if (last[k] != rank) {
+                    last[k] = rank;
+                    best[k] = s;
+                    touched[n++] = k;
+                } else {
+                    best[k] = Math.max(best[k], s);
+                }
+                if (b == ' ') {
+                    break;
+                }
+                boolean end = j + 2 >= len ||
+                              m_names.nameCharAt(i, j + 2) == ' ';
+                k = (k << BITS) | code(b);
+                s = start ? (end ? WORD_SCORE : PREFIX_SCORE)
+                          : SUBSTRING_SCORE;
+            }
+        }
+        for (int t = 0; t < n; t++) {
+            int k = touched[t];
+            if (fill == null) {
+                m_shortStart[k + 1]++;
+            } else {
+                m_shortPostings[fill[k]++] = (rank << 2) | best[k];
+            }
+        }
+    }
+
+    // The short string key of a word of one or two characters
+    private static int shortKey(String w) {
+        int k = code(w.charAt(0));
+        return w.length() == 1 ? k : (k << BITS) | code(w.charAt(1));
+    }
+
+    // Split a query into upper case words
+    private static String[] tokenize(String query) {
+        String q = query.trim().toUpperCase(Locale.ROOT);
+        return q.isEmpty() ? new String[0] : q.split("\\s+");
+    }
+
+    // The 6 bit code of a name character
+    private static int code(int c) {
+        if (c >= '0' && c <= '9') {
+            return 1 + c - '0';
+        } else if (c >= 'A' && c <= 'Z') {
+            return 11 + c - 'A';
+        } else if (c == '-') {
+            return 37;
+        }
+        return OTHER;
+    }
+
+    private static int key(int a, int b, int c) {
+        return (a << (2 * BITS)) | (b << BITS) | c;
+    }
+}
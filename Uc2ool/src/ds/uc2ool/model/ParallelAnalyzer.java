@@ -0,0 +1,163 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ParallelAnalyzer computes <code>TextStatistics</code> for a UTF-8 file
+ * using every core. The file is split recursively on a ForkJoinPool until
+ * pieces are no larger than <code>SPLIT_SIZE</code>; each piece is
+ * memory-mapped and decoded by its own <code>UTF8Decoder</code> and the
+ * per piece statistics are merged as the tasks complete.
+ *
+ * Split points are moved forward past any continuation bytes, up to the
+ * three a sequence may hold, so that each piece starts on a lead byte and
+ * no well formed sequence is ever divided. The statistics are therefore
+ * the same as a sequential decode of the whole file would give, except
+ * within runs of four or more stray continuation bytes, which are errors
+ * either way.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class ParallelAnalyzer {
+
+    /**
+     * The largest piece of a file decoded by a single task.
+     */
+    public static final int SPLIT_SIZE = 8 << 20;
+
+    // Bytes copied from the mapping to the heap, and decoded, at a time
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private ParallelAnalyzer() {
+    }
+
+    /**
+     * Analyse a UTF-8 file on the common ForkJoinPool.
+     *
+     * @param file the file
+     * @return the statistics
+     * @throws IOException if the file cannot be read
+     */
+    public static TextStatistics analyze(Path file) throws IOException {
+        return analyze(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Analyse a UTF-8 file on the given pool.
+     *
+     * @param file the file
+     * @param pool the pool to run the tasks on
+     * @return the statistics
+     * @throws IOException if the file cannot be read
+     */
+    public static TextStatistics analyze(Path file, ForkJoinPool pool)
+    throws IOException {
+        return analyze(file, pool, SPLIT_SIZE);
+    }
+
+    /*
+     * Analyse a file splitting it into pieces no larger than splitSize,
+     * which must be at least 4.
+     */
+    static TextStatistics analyze(Path file, ForkJoinPool pool,
+                                  int splitSize) throws IOException {
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            return pool.invoke(new Task(fc, 0, fc.size(), splitSize));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /*
+     * Find the first lead byte at or after pos, looking no further than
+     * three bytes or end.
+     */
+    static long resync(FileChannel fc, long pos, long end) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(3);
+        fc.read(b, pos);
+        b.flip();
+        long p = pos;
+        while (b.hasRemaining() && p < end && (b.get() & 0xc0) == 0x80) {
+            p++;
+        }
+        return p;
+    }
+
+    /*
+     * Analyse the bytes [start, end) of a file, splitting if too large.
+     */
+    private static final class Task extends RecursiveTask<TextStatistics> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel m_fc;
+        private final long m_start;
+        private final long m_end;
+        private final int m_splitSize;
+
+        Task(FileChannel fc, long start, long end, int splitSize) {
+            m_fc = fc;
+            m_start = start;
+            m_end = end;
+            m_splitSize = splitSize;
+        }
+
+        @Override
+        protected TextStatistics compute() {
+            try {
+                if (m_end - m_start <= m_splitSize) {
+                    return decode();
+                }
+                long mid = resync(m_fc, m_start + (m_end - m_start) / 2,
+                                  m_end);
+                if (mid == m_end) {
+                    // Only continuation bytes past the middle, so splitting
+                    // would leave the left piece as large as this one
+                    return decode();
+                }
+                Task left = new Task(m_fc, m_start, mid, m_splitSize);
+                left.fork();
+                TextStatistics right =
+                    new Task(m_fc, mid, m_end, m_splitSize).compute();
+                return left.join().merge(right);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Decode this piece of the file
+        private TextStatistics decode() throws IOException {
+            TextStatistics stats = new TextStatistics();
+            if (m_end == m_start) {
+                return stats;
+            }
+            MappedByteBuffer map = m_fc.map(FileChannel.MapMode.READ_ONLY,
+                                            m_start, m_end - m_start);
+            UTF8Decoder decoder =
+                new UTF8Decoder((type, offset) -> stats.addError(type));
+            byte[] block = new byte[BLOCK_SIZE];
+            int[] cps = new int[BLOCK_SIZE + 1];
+            while (map.hasRemaining()) {
+                int n = Math.min(BLOCK_SIZE, map.remaining());
+                map.get(block, 0, n);
+                stats.add(cps, 0, decoder.decode(block, 0, n, cps, 0));
+            }
+            stats.add(cps, 0, decoder.finish(cps, 0));
+            stats.addBytes(m_end - m_start);
+            return stats;
+        }
+    }
+}
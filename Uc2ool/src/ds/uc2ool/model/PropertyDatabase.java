@@ -0,0 +1,480 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * PropertyDatabase is a compact, read only table of Unicode character
+ * properties: general category, script, block, UTF-8 and UTF-16 lengths
+ * and name, for every code point. It replaces ad-hoc
+ * <code>java.lang.Character</code> queries with a few buffer reads.
+ *
+ * The per code point properties are packed into an int and held in a two
+ * stage table. The first stage maps the high bits of the code point to one
+ * of a set of deduplicated second stage blocks, which the low bits index.
+ * Names are held as a sorted table of explicitly named code points plus
+ * runs of code points whose names are generated from a prefix and the hex
+ * code point.
+ *
+ * The database is generated by <code>PropertyDatabaseBuilder</code>. When
+ * loaded from a file it is memory-mapped and costs next to no heap. The
+ * shared instance is loaded, in order of preference, from the file named
+ * by the ds.uc2ool.props system property, from the Unicode Character
+ * Database directory named by the ds.uc2ool.ucd system property, see
+ * <code>UcdLoader</code>, from the uc2ool.props resource shipped alongside
+ * this class in the jar, or failing all of these is built in memory from
+ * the running JDK. Instances are immutable and thread-safe.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class PropertyDatabase {
+
+    static final int MAGIC = 0x55433250; // "UC2P"
+    static final int VERSION = 1;
+
+    /**
+     * The system property naming a database file to load.
+     */
+    public static final String PROPS_FILE_PROPERTY = "ds.uc2ool.props";
+
+    /**
+     * The system property naming a Unicode Character Database directory
+     * to load.
+     */
+    public static final String UCD_DIR_PROPERTY = "ds.uc2ool.ucd";
+
+    /**
+     * The name of the database resource shipped alongside this class.
+     */
+    public static final String PROPS_RESOURCE = "uc2ool.props";
+
+    // Field layout of the packed property value
+    static final int CATEGORY_BITS = 5;
+    static final int SCRIPT_SHIFT = 5;
+    static final int SCRIPT_BITS = 8;
+    static final int BLOCK_SHIFT = 13;
+    static final int BLOCK_BITS = 10;
+    static final int UTF8_SHIFT = 23;
+    static final int UTF16_SHIFT = 26;
+
+    private static volatile PropertyDatabase s_instance;
+    private static volatile boolean s_external;
+
+    private final ByteBuffer m_buf;
+    private final String m_unicodeVersion;
+    private final String[] m_scripts;
+    private final String[] m_blocks;
+
+    private final int m_shift;
+    private final int m_mask;
+    private final int m_stage1;     // offset of the first stage
+    private final int m_stage2;     // offset of the second stage
+
+    private final int m_nameCount;
+    private final int m_nameCps;    // offset of the named code points
+    private final int m_nameOffs;   // offset of the name offsets
+    private final int m_nameBytes;  // offset of the name bytes
+
+    private final int[] m_genStart;
+    private final int[] m_genEnd;
+    private final String[] m_genPrefix;
+
+    /*
+     * Parse the section headers of a database held in a buffer.
+     *
+     * @param buf the database, position 0 at its start
+     * @throws IOException if the buffer does not hold a valid database
+     */
+    private PropertyDatabase(ByteBuffer buf) throws IOException {
+        m_buf = buf;
+        ByteBuffer b = buf.duplicate();
+        if (b.getInt() != MAGIC || b.getInt() != VERSION) {
+            throw new IOException("Not a version " + VERSION +
+                                  " property database");
+        }
+        m_unicodeVersion = getString(b);
+        m_scripts = getStrings(b);
+        m_blocks = getStrings(b);
+
+        m_shift = b.getInt();
+        m_mask = (1 << m_shift) - 1;
+        int stage1Count = b.getInt();
+        m_stage1 = b.position();
+        b.position(m_stage1 + 2 * stage1Count);
+        int stage2Count = b.getInt();
+        m_stage2 = b.position();
+        b.position(m_stage2 + 4 * stage2Count);
+
+        m_nameCount = b.getInt();
+        m_nameCps = b.position();
+        m_nameOffs = m_nameCps + 4 * m_nameCount;
+        m_nameBytes = m_nameOffs + 4 * (m_nameCount + 1);
+        b.position(m_nameBytes + b.getInt(m_nameOffs + 4 * m_nameCount));
+
+        int runs = b.getInt();
+        m_genStart = new int[runs];
+        m_genEnd = new int[runs];
+        m_genPrefix = new String[runs];
+        for (int i = 0; i < runs; i++) {
+            m_genStart[i] = b.getInt();
+            m_genEnd[i] = b.getInt();
+            m_genPrefix[i] = getString(b);
+        }
+    }
+
+    /**
+     * Get the shared database, loading it on first use.
+     *
+     * @return the database
+     */
+    public static PropertyDatabase getInstance() {
+        PropertyDatabase db = s_instance;
+        if (db == null) {
+            synchronized (PropertyDatabase.class) {
+                db = s_instance;
+                if (db == null) {
+                    s_instance = db = loadDefault();
+                }
+            }
+        }
+        return db;
+    }
+
+    /**
+     * Get the shared database only if it has already been loaded.
+     *
+     * @return the database or null
+     */
+    public static PropertyDatabase getIfLoaded() {
+        return s_instance;
+    }
+
+    /**
+     * Is the shared database to come from somewhere other than the running
+     * JDK, either because it has been set or because a system property
+     * names its source. If so names must be taken from the database, even
+     * for single lookups, to stay consistent.
+     *
+     * @return true if the database may differ from the JDK
+     */
+    public static boolean isExternal() {
+        return s_external ||
+               System.getProperty(PROPS_FILE_PROPERTY) != null ||
+               System.getProperty(UCD_DIR_PROPERTY) != null;
+    }
+
+    /**
+     * Replace the shared database, for example with one loaded from a
+     * newer Unicode Character Database. The name indexes derived from the
+     * previous database are discarded and rebuilt on next use.
+     *
+     * @param db the new database
+     */
+    public static void setInstance(PropertyDatabase db) {
+        synchronized (PropertyDatabase.class) {
+            s_instance = db;
+            s_external = true;
+        }
+        UnicodeNameIndex.invalidate();
+        NameSearchIndex.invalidate();
+    }
+
+    /**
+     * Memory-map a database file.
+     *
+     * @param file the database file
+     * @return the database
+     * @throws IOException if the file cannot be read or is not a database
+     */
+    public static PropertyDatabase load(Path file) throws IOException {
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new PropertyDatabase(
+                fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size()));
+        }
+    }
+
+    /**
+     * Read a database from a stream into the heap.
+     *
+     * @param in the stream, which is read to its end but not closed
+     * @return the database
+     * @throws IOException if the stream cannot be read or does not hold a
+     * database
+     */
+    public static PropertyDatabase read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 << 20);
+        byte[] b = new byte[64 * 1024];
+        for (int n; (n = in.read(b)) > 0;) {
+            out.write(b, 0, n);
+        }
+        return wrap(out.toByteArray());
+    }
+
+    /**
+     * Wrap a database already held in a byte array.
+     *
+     * @param b the database bytes
+     * @return the database
+     * @throws IOException if the bytes do not hold a database
+     */
+    public static PropertyDatabase wrap(byte[] b) throws IOException {
+        return new PropertyDatabase(ByteBuffer.wrap(b));
+    }
+
+    /*
+     * Load the file named by the system property, else the UCD directory
+     * named by the other, else the shipped resource, else build from the
+     * JDK.
+     */
+    private static PropertyDatabase loadDefault() {
+        String file = System.getProperty(PROPS_FILE_PROPERTY);
+        String ucd = System.getProperty(UCD_DIR_PROPERTY);
+        try {
+            if (file != null) {
+                return load(Paths.get(file));
+            } else if (ucd != null) {
+                return UcdLoader.load(Paths.get(ucd));
+            }
+            try (InputStream in =
+                    PropertyDatabase.class.getResourceAsStream(PROPS_RESOURCE)) {
+                if (in != null) {
+                    return read(in);
+                }
+            }
+            return wrap(PropertyDatabaseBuilder.fromJDK().build());
+        } catch (IOException ioe) {
+            throw new UncheckedModelException("PROPS_LOAD_FAILED",
+                                              file != null ? file :
+                                              ucd != null ? ucd
+                                                          : PROPS_RESOURCE,
+                                              ioe.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * @return a description of the Unicode version the data came from
+     */
+    public String getUnicodeVersion() {
+        return m_unicodeVersion;
+    }
+
+    /**
+     * Get the general category of a code point.
+     *
+     * @param cp the code point
+     * @return the category using the <code>Character.getType()</code>
+     * values
+     * @throws IllegalArgumentException if cp is not a valid code point
+     */
+    public int getGeneralCategory(int cp) {
+        return value(cp) & ((1 << CATEGORY_BITS) - 1);
+    }
+
+    /**
+     * Get the script of a code point.
+     *
+     * @param cp the code point
+     * @return the script name as used by <code>Character.UnicodeScript</code>
+     * @throws IllegalArgumentException if cp is not a valid code point
+     */
+    public String getScript(int cp) {
+        return m_scripts[getScriptIndex(cp)];
+    }
+
+    /**
+     * Get the index of the script of a code point in
+     * <code>getScripts()</code>.
+     *
+     * @param cp the code point
+     * @return the script index
+     * @throws IllegalArgumentException if cp is not a valid code point
+     */
+    public int getScriptIndex(int cp) {
+        return (value(cp) >>> SCRIPT_SHIFT) & ((1 << SCRIPT_BITS) - 1);
+    }
+
+    /**
+     * Get the block of a code point.
+     *
+     * @param cp the code point
+     * @return the block name as used by <code>Character.UnicodeBlock</code>,
+     * or null if the code point is in no block
+     * @throws IllegalArgumentException if cp is not a valid code point
+     */
+    public String getBlock(int cp) {
+        int b = getBlockIndex(cp);
+        return b < 0 ? null : m_blocks[b];
+    }
+
+    /**
+     * Get the index of the block of a code point in
+     * <code>getBlocks()</code>.
+     *
+     * @param cp the code point
+     * @return the block index, or -1 if the code point is in no block
+     * @throws IllegalArgumentException if cp is not a valid code point
+     */
+    public int getBlockIndex(int cp) {
+        return ((value(cp) >>> BLOCK_SHIFT) & ((1 << BLOCK_BITS) - 1)) - 1;
+    }
+
+    /**
+     * @param cp the code point
+     * @return the number of bytes in the UTF-8 encoding of cp
+     * @throws IllegalArgumentException if cp is not a valid code point
+     */
+    public int getUTF8Length(int cp) {
+        return (value(cp) >>> UTF8_SHIFT) & 0x7;
+    }
+
+    /**
+     * @param cp the code point
+     * @return the number of chars in the UTF-16 encoding of cp
+     * @throws IllegalArgumentException if cp is not a valid code point
+     */
+    public int getUTF16Length(int cp) {
+        return (value(cp) >>> UTF16_SHIFT) & 0x3;
+    }
+
+    /**
+     * @return the script names, indexed by script index
+     */
+    public String[] getScripts() {
+        return m_scripts.clone();
+    }
+
+    /**
+     * @return the block names, indexed by block index
+     */
+    public String[] getBlocks() {
+        return m_blocks.clone();
+    }
+
+    /**
+     * Get the name of a code point.
+     *
+     * @param cp the code point
+     * @return the name, or null if the code point is unnamed
+     * @throws IllegalArgumentException if cp is not a valid code point
+     */
+    public String getName(int cp) {
+        checkCodePoint(cp);
+        int lo = 0;
+        int hi = m_nameCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int v = m_buf.getInt(m_nameCps + 4 * mid);
+            if (v < cp) {
+                lo = mid + 1;
+            } else if (v > cp) {
+                hi = mid - 1;
+            } else {
+                return nameAt(mid);
+            }
+        }
+        int g = generatedRun(cp);
+        return g < 0 ? null : m_genPrefix[g] + Integer.toHexString(cp).
+                                                   toUpperCase();
+    }
+
+    /*
+     * Accessors used by UnicodeNameIndex to copy out the name tables.
+     */
+    int nameCount() {
+        return m_nameCount;
+    }
+
+    int nameCodePoint(int i) {
+        return m_buf.getInt(m_nameCps + 4 * i);
+    }
+
+    int nameOffset(int i) {
+        return m_buf.getInt(m_nameOffs + 4 * i);
+    }
+
+    void nameBytes(byte[] dst) {
+        ByteBuffer b = m_buf.duplicate();
+        b.position(m_nameBytes);
+        b.get(dst);
+    }
+
+    int[] generatedStarts() {
+        return m_genStart.clone();
+    }
+
+    int[] generatedEnds() {
+        return m_genEnd.clone();
+    }
+
+    String[] generatedPrefixes() {
+        return m_genPrefix.clone();
+    }
+
+    // Get the packed property value of a code point
+    private int value(int cp) {
+        checkCodePoint(cp);
+        int block = m_buf.getChar(m_stage1 + 2 * (cp >>> m_shift));
+        return m_buf.getInt(m_stage2 + 4 * ((block << m_shift) | (cp & m_mask)));
+    }
+
+    private static void checkCodePoint(int cp) {
+        if (!Character.isValidCodePoint(cp)) {
+            throw new IllegalArgumentException("Invalid code point : " + cp);
+        }
+    }
+
+    // Decode the i'th explicit name
+    private String nameAt(int i) {
+        int start = nameOffset(i);
+        byte[] b = new byte[nameOffset(i + 1) - start];
+        ByteBuffer d = m_buf.duplicate();
+        d.position(m_nameBytes + start);
+        d.get(b);
+        return new String(b, StandardCharsets.US_ASCII);
+    }
+
+    // Find the generated name run holding cp, or -1
+    private int generatedRun(int cp) {
+        int lo = 0;
+        int hi = m_genStart.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cp < m_genStart[mid]) {
+                hi = mid - 1;
+            } else if (cp > m_genEnd[mid]) {
+                lo = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // Read a length prefixed UTF-8 string
+    private static String getString(ByteBuffer b) {
+        byte[] s = new byte[b.getChar()];
+        b.get(s);
+        return new String(s, StandardCharsets.UTF_8);
+    }
+
+    // Read a count prefixed table of strings
+    private static String[] getStrings(ByteBuffer b) {
+        String[] s = new String[b.getInt()];
+        for (int i = 0; i < s.length; i++) {
+            s[i] = getString(b);
+        }
+        return s;
+    }
+}
@@ -0,0 +1,368 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * PropertyDatabaseBuilder collects per code point properties and names and
+ * writes them in the binary format read by <code>PropertyDatabase</code>.
+ * Properties may come from the running JDK, see <code>fromJDK()</code>, or
+ * from any other source such as the Unicode Character Database files.
+ *
+ * Run as a program it generates the database from the JDK:
+ * <pre>
+ *   java ds.uc2ool.model.PropertyDatabaseBuilder bin/ds/uc2ool/model/uc2ool.props
+ * </pre>
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class PropertyDatabaseBuilder {
+
+    // Code points per second stage block, as a power of 2
+    private static final int SHIFT = 7;
+
+    private static final int CODEPOINTS = Character.MAX_CODE_POINT + 1;
+
+    private final String m_unicodeVersion;
+    private final int[] m_values = new int[CODEPOINTS];
+    private final Map<String, Integer> m_scripts = new LinkedHashMap<>();
+    private final Map<String, Integer> m_blocks = new LinkedHashMap<>();
+
+    // Explicit names indexed by code point
+    private final String[] m_names = new String[CODEPOINTS];
+
+    // Generated name runs, in ascending order, and their prefixes
+    private final List<int[]> m_genRuns = new ArrayList<>();
+    private final List<String> m_genPrefixes = new ArrayList<>();
+
+    /**
+     * Create a builder in which every code point is unassigned, of unknown
+     * script, in no block and unnamed.
+     *
+     * @param unicodeVersion a description of the data source
+     */
+    public PropertyDatabaseBuilder(String unicodeVersion) {
+        m_unicodeVersion = unicodeVersion;
+        int unknown = scriptIndex("UNKNOWN");
+        for (int cp = 0; cp < CODEPOINTS; cp++) {
+            m_values[cp] = pack(Character.UNASSIGNED, unknown, 0, cp);
+        }
+    }
+
+    /**
+     * Build a database from the properties of the running JDK.
+     *
+     * @return the populated builder
+     */
+    public static PropertyDatabaseBuilder fromJDK() {
+        PropertyDatabaseBuilder b = new PropertyDatabaseBuilder(
+            "Java " + System.getProperty("java.specification.version"));
+        int start = -1;
+        String runPrefix = null;
+        for (int cp = 0; cp < CODEPOINTS; cp++) {
+            Character.UnicodeBlock block = Character.UnicodeBlock.of(cp);
+            b.setProperties(cp, Character.getType(cp),
+                            Character.UnicodeScript.of(cp).name(),
+                            block == null ? null : block.toString());
+            String name = Character.getName(cp);
+            String prefix = name == null ? null
+                                         : generatedPrefix(cp, name, block);
+            if (prefix != null && start >= 0 && prefix.equals(runPrefix)) {
+                continue;
+            }
+            if (start >= 0) {
+                b.addGeneratedRun(start, cp - 1, runPrefix);
+                start = -1;
+            }
+            if (prefix != null) {
+                start = cp;
+                runPrefix = prefix;
+            } else if (name != null) {
+                b.setName(cp, name);
+            }
+        }
+        if (start >= 0) {
+            b.addGeneratedRun(start, CODEPOINTS - 1, runPrefix);
+        }
+        return b;
+    }
+
+    /**
+     * Set the category, script and block of a code point.
+     *
+     * @param cp the code point
+     * @param category the general category as a
+     * <code>Character.getType()</code> value
+     * @param script the script name, as used by
+     * <code>Character.UnicodeScript</code>
+     * @param block the block name, as used by
+     * <code>Character.UnicodeBlock</code>, or null if in no block
+     */
+    public void setProperties(int cp, int category, String script,
+                              String block) {
+        m_values[cp] = pack(category, scriptIndex(script),
+                            block == null ? 0 : blockIndex(block) + 1, cp);
+    }
+
+    /**
+     * Set the general category of a code point leaving its other
+     * properties unchanged.
+     *
+     * @param cp the code point
+     * @param category the general category
+     */
+    public void setCategory(int cp, int category) {
+        int mask = (1 << PropertyDatabase.CATEGORY_BITS) - 1;
+        m_values[cp] = (m_values[cp] & ~mask) | category;
+    }
+
+    /**
+     * Set the script of a code point leaving its other properties
+     * unchanged.
+     *
+     * @param cp the code point
+     * @param script the script name
+     */
+    public void setScript(int cp, String script) {
+        int mask = ((1 << PropertyDatabase.SCRIPT_BITS) - 1)
+                   << PropertyDatabase.SCRIPT_SHIFT;
+        m_values[cp] = (m_values[cp] & ~mask) |
+                       (scriptIndex(script) << PropertyDatabase.SCRIPT_SHIFT);
+    }
+
+    /**
+     * Set the block of a code point leaving its other properties
+     * unchanged.
+     *
+     * @param cp the code point
+     * @param block the block name
+     */
+    public void setBlock(int cp, String block) {
+        int mask = ((1 << PropertyDatabase.BLOCK_BITS) - 1)
+                   << PropertyDatabase.BLOCK_SHIFT;
+        m_values[cp] = (m_values[cp] & ~mask) |
+                       ((blockIndex(block) + 1) << PropertyDatabase.BLOCK_SHIFT);
+    }
+
+    /**
+     * Set the explicit name of a code point.
+     *
+     * @param cp the code point
+     * @param name the name, which must be ASCII
+     */
+    public void setName(int cp, String name) {
+        m_names[cp] = name;
+    }
+
+    /**
+     * Add a run of code points whose names are the prefix followed by the
+     * upper case hex code point, for example "CJK UNIFIED IDEOGRAPH-".
+     * Runs must be added in ascending order and must not overlap.
+     *
+     * @param start the first code point of the run
+     * @param end the last code point of the run
+     * @param prefix the name prefix
+     */
+    public void addGeneratedRun(int start, int end, String prefix) {
+        m_genRuns.add(new int[] { start, end });
+        m_genPrefixes.add(prefix);
+    }
+
+    /**
+     * Produce the binary database.
+     *
+     * @return the database bytes
+     */
+    public byte[] build() {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(2 << 20);
+        try {
+            write(bos);
+        } catch (IOException ioe) {
+            // Not possible writing to memory
+            throw new IllegalStateException(ioe);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Write the binary database to a stream.
+     *
+     * @param os the stream, which is not closed
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(PropertyDatabase.MAGIC);
+        out.writeInt(PropertyDatabase.VERSION);
+        putString(out, m_unicodeVersion);
+        putStrings(out, m_scripts.keySet());
+        putStrings(out, m_blocks.keySet());
+
+        // Two stage table, deduplicating identical second stage blocks
+        int blockSize = 1 << SHIFT;
+        int stage1Count = CODEPOINTS >>> SHIFT;
+        char[] stage1 = new char[stage1Count];
+        Map<IntBuffer, Integer> seen = new HashMap<>();
+        List<IntBuffer> stage2 = new ArrayList<>();
+        for (int i = 0; i < stage1Count; i++) {
+            IntBuffer block = IntBuffer.wrap(m_values, i * blockSize,
+                                             blockSize).slice();
+            Integer idx = seen.get(block);
+            if (idx == null) {
+                idx = stage2.size();
+                seen.put(block, idx);
+                stage2.add(block);
+            }
+            stage1[i] = (char) idx.intValue();
+        }
+        out.writeInt(SHIFT);
+        out.writeInt(stage1Count);
+        for (char c : stage1) {
+            out.writeChar(c);
+        }
+        out.writeInt(stage2.size() * blockSize);
+        for (IntBuffer block : stage2) {
+            for (int i = 0; i < blockSize; i++) {
+                out.writeInt(block.get(i));
+            }
+        }
+
+        // Explicit names in code point order
+        int count = 0;
+        for (String n : m_names) {
+            if (n != null) {
+                count++;
+            }
+        }
+        out.writeInt(count);
+        for (int cp = 0; cp < CODEPOINTS; cp++) {
+            if (m_names[cp] != null) {
+                out.writeInt(cp);
+            }
+        }
+        int offset = 0;
+        for (int cp = 0; cp < CODEPOINTS; cp++) {
+            if (m_names[cp] != null) {
+                out.writeInt(offset);
+                offset += m_names[cp].length();
+            }
+        }
+        out.writeInt(offset);
+        for (int cp = 0; cp < CODEPOINTS; cp++) {
+            if (m_names[cp] != null) {
+                out.write(m_names[cp].getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+
+        out.writeInt(m_genRuns.size());
+        for (int i = 0; i < m_genRuns.size(); i++) {
+            out.writeInt(m_genRuns.get(i)[0]);
+            out.writeInt(m_genRuns.get(i)[1]);
+            putString(out, m_genPrefixes.get(i));
+        }
+        out.flush();
+    }
+
+    /**
+     * Generate the database from the JDK into the named file.
+     *
+     * @param args the output file name
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println(
+                "Usage: java ds.uc2ool.model.PropertyDatabaseBuilder <file>");
+            System.exit(1);
+        }
+        byte[] db = fromJDK().build();
+        Files.write(Paths.get(args[0]), db);
+        System.out.println("Wrote " + db.length + " bytes to " + args[0]);
+    }
+
+    /*
+     * Return the block name prefix if this is a JDK generated name, or null
+     * if it is an explicit name. The JDK names code points missing from
+     * its name data as the block name followed by the hex code point.
+     */
+    private static String generatedPrefix(int cp, String name,
+                                          Character.UnicodeBlock b) {
+        if (b == null) {
+            return null;
+        }
+        String prefix = b.toString().replace('_', ' ') + " ";
+        String hex = Integer.toHexString(cp).toUpperCase(Locale.ROOT);
+        if (name.length() == prefix.length() + hex.length() &&
+            name.startsWith(prefix) && name.endsWith(hex)) {
+            return prefix;
+        }
+        return null;
+    }
+
+    private int scriptIndex(String script) {
+        return index(m_scripts, script, PropertyDatabase.SCRIPT_BITS);
+    }
+
+    private int blockIndex(String block) {
+        return index(m_blocks, block, PropertyDatabase.BLOCK_BITS);
+    }
+
+    // Find or assign the index of a name, checking it fits its field
+    private static int index(Map<String, Integer> m, String name, int bits) {
+        Integer i = m.get(name);
+        if (i == null) {
+            i = m.size();
+            if (i >= (1 << bits) - 1) {
+                throw new IllegalArgumentException("Too many values : " + name);
+            }
+            m.put(name, i);
+        }
+        return i;
+    }
+
+    // Pack the properties of a code point into a single int
+    private static int pack(int category, int script, int block, int cp) {
+        int utf8 = cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+        int utf16 = cp < 0x10000 ? 1 : 2;
+        return category |
+               (script << PropertyDatabase.SCRIPT_SHIFT) |
+               (block << PropertyDatabase.BLOCK_SHIFT) |
+               (utf8 << PropertyDatabase.UTF8_SHIFT) |
+               (utf16 << PropertyDatabase.UTF16_SHIFT);
+    }
+
+    private static void putString(DataOutputStream out, String s)
+    throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeChar(b.length);
+        out.write(b);
+    }
+
+    private static void putStrings(DataOutputStream out,
+                                   Iterable<String> strings)
+    throws IOException {
+        List<String> l = new ArrayList<>();
+        strings.forEach(l::add);
+        out.writeInt(l.size());
+        for (String s : l) {
+            putString(out, s);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TextStatistics holds the results of analysing some UTF-8 text: byte and
+ * code point totals, a histogram of code points and counts of each kind of
+ * malformed sequence. Statistics for adjacent pieces of text are combined
+ * with <code>merge()</code>, which is how <code>ParallelAnalyzer</code>
+ * builds the result for a whole file.
+ *
+ * The histogram is held per Unicode plane and a plane's counts are only
+ * allocated once a code point from it is seen, so typical text costs one
+ * or two 512KB planes. Block and script distributions are derived from the
+ * histogram through the shared <code>PropertyDatabase</code> on request,
+ * rather than looked up for every code point scanned.
+ *
+ * Instances are not thread-safe; each task of a parallel analysis fills
+ * its own before they are merged.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class TextStatistics {
+
+    private static final int PLANES = (Character.MAX_CODE_POINT >>> 16) + 1;
+    private static final int PLANE_SIZE = 1 << 16;
+
+    private final long[][] m_planes = new long[PLANES][];
+    private final long[] m_errors =
+        new long[UTF8Decoder.ErrorType.values().length];
+    private long m_bytes;
+    private long m_codepoints;
+
+    /**
+     * Create empty statistics.
+     */
+    public TextStatistics() {
+    }
+
+    /*
+     * Count a run of decoded code points.
+     */
+    void add(int[] cps, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            int cp = cps[i];
+            long[] plane = m_planes[cp >>> 16];
+            if (plane == null) {
+                plane = m_planes[cp >>> 16] = new long[PLANE_SIZE];
+            }
+            plane[cp & 0xffff]++;
+        }
+        m_codepoints += len;
+    }
+
+    /*
+     * Count bytes scanned.
+     */
+    void addBytes(long n) {
+        m_bytes += n;
+    }
+
+    /*
+     * Count a malformed sequence.
+     */
+    void addError(UTF8Decoder.ErrorType t) {
+        m_errors[t.ordinal()]++;
+    }
+
+    /**
+     * Add the counts of other statistics to these.
+     *
+     * @param other the statistics to add
+     * @return this
+     */
+    public TextStatistics merge(TextStatistics other) {
+        for (int p = 0; p < PLANES; p++) {
+            long[] o = other.m_planes[p];
+            if (o == null) {
+                continue;
+            }
+            if (m_planes[p] == null) {
+                m_planes[p] = o.clone();
+            } else {
+                long[] mine = m_planes[p];
+                for (int i = 0; i < PLANE_SIZE; i++) {
+                    mine[i] += o[i];
+                }
+            }
+        }
+        for (int i = 0; i < m_errors.length; i++) {
+            m_errors[i] += other.m_errors[i];
+        }
+        m_bytes += other.m_bytes;
+        m_codepoints += other.m_codepoints;
+        return this;
+    }
+
+    /**
+     * @return the number of bytes analysed
+     */
+    public long getByteCount() {
+        return m_bytes;
+    }
+
+    /**
+     * @return the number of code points decoded, including a U+FFFD for
+     * each malformed sequence
+     */
+    public long getCodePointCount() {
+        return m_codepoints;
+    }
+
+    /**
+     * Get the number of times a code point occurred.
+     *
+     * @param cp the code point
+     * @return the count
+     */
+    public long getCount(int cp) {
+        long[] plane = m_planes[cp >>> 16];
+        return plane == null ? 0 : plane[cp & 0xffff];
+    }
+
+    /**
+     * @return the number of distinct code points seen
+     */
+    public int getDistinctCount() {
+        int n = 0;
+        for (long[] plane : m_planes) {
+            if (plane != null) {
+                for (long c : plane) {
+                    if (c != 0) {
+                        n++;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return the total number of malformed sequences found
+     */
+    public long getErrorCount() {
+        long n = 0;
+        for (long e : m_errors) {
+            n += e;
+        }
+        return n;
+    }
+
+    /**
+     * Get the number of malformed sequences of one kind.
+     *
+     * @param t the kind of malformation
+     * @return the count
+     */
+    public long getErrorCount(UTF8Decoder.ErrorType t) {
+        return m_errors[t.ordinal()];
+    }
+
+    /**
+     * Get the most frequent code points.
+     *
+     * @param limit the maximum number of code points to return
+     * @return the code points, most frequent first and then in code point
+     * order
+     */
+    public int[] getMostFrequent(int limit) {
+        List<long[]> all = new ArrayList<>();
+        forEach((cp, count) -> all.add(new long[] { count, cp }));
+        all.sort((a, b) -> a[0] != b[0] ? Long.compare(b[0], a[0])
+                                        : Long.compare(a[1], b[1]));
+        int[] result = new int[Math.min(limit, all.size())];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (int) all.get(i)[1];
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of code points in each Unicode block, using the
+     * shared property database.
+     *
+     * @return block names to counts, most frequent first; code points in
+     * no block are counted under "NONE"
+     */
+    public Map<String, Long> getBlockCounts() {
+        PropertyDatabase db = PropertyDatabase.getInstance();
+        String[] names = db.getBlocks();
+        long[] counts = new long[names.length + 1];
+        forEach((cp, count) -> counts[db.getBlockIndex(cp) + 1] += count);
+        return distribution(counts, names, "NONE");
+    }
+
+    /**
+     * Get the number of code points in each Unicode script, using the
+     * shared property database.
+     *
+     * @return script names to counts, most frequent first
+     */
+    public Map<String, Long> getScriptCounts() {
+        PropertyDatabase db = PropertyDatabase.getInstance();
+        String[] names = db.getScripts();
+        long[] counts = new long[names.length + 1];
+        forEach((cp, count) -> counts[db.getScriptIndex(cp) + 1] += count);
+        return distribution(counts, names, null);
+    }
+
+    // Receives each code point seen and its count
+    private interface CountVisitor {
+        void visit(int cp, long count);
+    }
+
+    private void forEach(CountVisitor v) {
+        for (int p = 0; p < PLANES; p++) {
+            long[] plane = m_planes[p];
+            if (plane == null) {
+                continue;
+            }
+            for (int i = 0; i < PLANE_SIZE; i++) {
+                if (plane[i] != 0) {
+                    v.visit((p << 16) | i, plane[i]);
+                }
+            }
+        }
+    }
+
+    /*
+     * Build an ordered map of the non-zero counts. counts[0] is for index
+     * -1, named none, and counts[i + 1] for names[i].
+     */
+    private static Map<String, Long> distribution(long[] counts,
+                                                  String[] names,
+                                                  String none) {
+        Integer[] order = new Integer[counts.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+        Map<String, Long> m = new LinkedHashMap<>();
+        for (int i : order) {
+            if (counts[i] != 0) {
+                m.put(i == 0 ? none : names[i - 1], counts[i]);
+            }
+        }
+        return m;
+    }
+}
@@ -0,0 +1,326 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * UTF16Codec provides allocation free UTF-16 encoding and decoding between
+ * code points and char[]s, CharBuffers and big or little endian ByteBuffers.
+ * Surrogate pairs are produced and consumed in a single pass. It is intended
+ * for bulk work where the String based
+ * <code>Uc2oolModel.getUTF16Encoding()</code> would be too costly.
+ *
+ * Decoding follows the JDK convention: an unpaired surrogate is passed
+ * through as a code point in its own right. All methods are static and
+ * thread-safe.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class UTF16Codec {
+
+    /**
+     * The maximum number of chars a single code point may encode to.
+     */
+    public static final int MAX_CHARS_PER_CODEPOINT = 2;
+
+    private UTF16Codec() {
+    }
+
+    /**
+     * Get the number of chars required to encode a code point.
+     *
+     * @param cp the code point
+     * @return 1 or 2
+     * @throws IllegalArgumentException if cp is not a valid code point
+     */
+    public static int encodedLength(int cp) {
+        if (cp >>> 16 == 0) {
+            return 1;
+        } else if (cp <= Character.MAX_CODE_POINT && cp > 0) {
+            return 2;
+        }
+        throw new IllegalArgumentException("Invalid code point : " + cp);
+    }
+
+    /**
+     * Encode a single code point into a char array.
+     *
+     * @param cp the code point
+     * @param dst the destination array
+     * @param pos the index in dst at which to write the first char
+     * @return the number of chars written
+     * @throws IllegalArgumentException if cp is not a valid code point
+     */
+    public static int encode(int cp, char[] dst, int pos) {
+        if (encodedLength(cp) == 1) {
+            dst[pos] = (char) cp;
+            return 1;
+        }
+        dst[pos] = Character.highSurrogate(cp);
+        dst[pos + 1] = Character.lowSurrogate(cp);
+        return 2;
+    }
+
+    /**
+     * Encode a run of code points into a char array.
+     *
+     * @param cps the code points
+     * @param off the offset of the first code point in cps
+     * @param len the number of code points
+     * @param dst the destination array
+     * @param pos the index in dst at which to write the first char
+     * @return the number of chars written
+     */
+    public static int encode(int[] cps, int off, int len,
+                             char[] dst, int pos) {
+        int p = pos;
+        for (int i = off, end = off + len; i < end; i++) {
+            p += encode(cps[i], dst, p);
+        }
+        return p - pos;
+    }
+
+    /**
+     * Encode all code points into a CharBuffer starting at its current
+     * position.
+     *
+     * @param cps the code points
+     * @param dst the destination buffer
+     * @return the number of chars written
+     * @throws BufferOverflowException if dst has insufficient space
+     */
+    public static int encodeUtf16(int[] cps, CharBuffer dst) {
+        return encodeUtf16(cps, 0, cps.length, dst);
+    }
+
+    /**
+     * Encode a run of code points into a CharBuffer starting at its current
+     * position. Only whole code points are written. If the buffer fills
+     * the position is left after the last complete code point and a
+     * BufferOverflowException is thrown.
+     *
+     * @param cps the code points
+     * @param off the offset of the first code point in cps
+     * @param len the number of code points
+     * @param dst the destination buffer
+     * @return the number of chars written
+     * @throws BufferOverflowException if dst has insufficient space
+     */
+    public static int encodeUtf16(int[] cps, int off, int len,
+                                  CharBuffer dst) {
+        int start = dst.position();
+        for (int i = off, end = off + len; i < end; i++) {
+            int cp = cps[i];
+            if (dst.remaining() < encodedLength(cp)) {
+                throw new BufferOverflowException();
+            }
+            if (cp >>> 16 == 0) {
+                dst.put((char) cp);
+            } else {
+                dst.put(Character.highSurrogate(cp));
+                dst.put(Character.lowSurrogate(cp));
+            }
+        }
+        return dst.position() - start;
+    }
+
+    /**
+     * Encode a run of code points as big endian UTF-16 (UTF-16BE) bytes.
+     * The byte order of dst is not consulted or changed.
+     *
+     * @param cps the code points
+     * @param off the offset of the first code point in cps
+     * @param len the number of code points
+     * @param dst the destination buffer
+     * @return the number of bytes written
+     * @throws BufferOverflowException if dst has insufficient space
+     * @throws IllegalArgumentException if a code point is invalid
+     */
+    public static int encodeUtf16BE(int[] cps, int off, int len,
+                                    ByteBuffer dst) {
+        return encodeBytes(cps, off, len, dst, true);
+    }
+
+    /**
+     * Encode a run of code points as little endian UTF-16 (UTF-16LE) bytes.
+     * The byte order of dst is not consulted or changed.
+     *
+     * @param cps the code points
+     * @param off the offset of the first code point in cps
+     * @param len the number of code points
+     * @param dst the destination buffer
+     * @return the number of bytes written
+     * @throws BufferOverflowException if dst has insufficient space
+     * @throws IllegalArgumentException if a code point is invalid
+     */
+    public static int encodeUtf16LE(int[] cps, int off, int len,
+                                    ByteBuffer dst) {
+        return encodeBytes(cps, off, len, dst, false);
+    }
+
+    /**
+     * Decode a UTF-16 char sequence into code points.
+     *
+     * @param src the chars to decode
+     * @param dst the destination array, which must hold at least as many
+     * entries as there are code points in src
+     * @return the number of code points written
+     * @throws ArrayIndexOutOfBoundsException if dst is too small
+     */
+    public static int decodeUtf16(CharSequence src, int[] dst) {
+        return decodeUtf16(src, 0, src.length(), dst, 0);
+    }
+
+    /**
+     * Decode part of a UTF-16 char sequence into code points. A high
+     * surrogate at the very end of the range is not paired with any char
+     * beyond it.
+     *
+     * @param src the chars to decode
+     * @param start the index of the first char to decode
+     * @param end the index after the last char to decode
+     * @param dst the destination array
+     * @param pos the index in dst at which to write the first code point
+     * @return the number of code points written
+     * @throws ArrayIndexOutOfBoundsException if dst is too small
+     */
+    public static int decodeUtf16(CharSequence src, int start, int end,
+                                  int[] dst, int pos) {
+        int p = pos;
+        int i = start;
+        while (i < end) {
+            char c = src.charAt(i++);
+            if (Character.isHighSurrogate(c) && i < end) {
+                char d = src.charAt(i);
+                if (Character.isLowSurrogate(d)) {
+                    i++;
+                    dst[p++] = Character.toCodePoint(c, d);
+                    continue;
+                }
+            }
+            dst[p++] = c;
+        }
+        return p - pos;
+    }
+
+    /**
+     * Decode UTF-16 bytes of the given endianness from the current position
+     * of src up to its limit. An odd trailing byte, or a high surrogate
+     * whose low surrogate has not yet arrived, is left unconsumed so that
+     * the caller may compact the buffer and read more input.
+     *
+     * @param src the bytes to decode
+     * @param bigEndian true for UTF-16BE, false for UTF-16LE
+     * @param dst the destination array
+     * @param pos the index in dst at which to write the first code point
+     * @return the number of code points written
+     * @throws ArrayIndexOutOfBoundsException if dst is too small
+     */
+    public static int decodeUtf16(ByteBuffer src, boolean bigEndian,
+                                  int[] dst, int pos) {
+        int p = pos;
+        while (src.remaining() >= 2) {
+            int mark = src.position();
+            char c = getChar(src, bigEndian);
+            if (Character.isHighSurrogate(c)) {
+                if (src.remaining() < 2) {
+                    src.position(mark);
+                    break;
+                }
+                int next = src.position();
+                char d = getChar(src, bigEndian);
+                if (Character.isLowSurrogate(d)) {
+                    dst[p++] = Character.toCodePoint(c, d);
+                    continue;
+                }
+                src.position(next);
+            }
+            dst[p++] = c;
+        }
+        return p - pos;
+    }
+
+    // Read a single char in the required byte order
+    private static char getChar(ByteBuffer src, boolean bigEndian) {
+        int a = src.get() & 0xff;
+        int b = src.get() & 0xff;
+        return bigEndian ? (char) (a << 8 | b) : (char) (b << 8 | a);
+    }
+
+    // Write a single char in the required byte order
+    private static void putChar(ByteBuffer dst, char c, boolean bigEndian) {
+        if (bigEndian) {
+            dst.put((byte) (c >>> 8));
+            dst.put((byte) c);
+        } else {
+            dst.put((byte) c);
+            dst.put((byte) (c >>> 8));
+        }
+    }
+
+    // Shared byte encoder for both endiannesses
+    private static int encodeBytes(int[] cps, int off, int len,
+                                   ByteBuffer dst, boolean bigEndian) {
+        int start = dst.position();
+        if (dst.hasArray()) {
+            // Write straight into the backing array
+            byte[] a = dst.array();
+            int base = dst.arrayOffset();
+            int p = base + start;
+            int limit = base + dst.limit();
+            int hi = bigEndian ? 0 : 1;
+            for (int i = off, end = off + len; i < end; i++) {
+                int cp = cps[i];
+                if (cp >>> 16 == 0) {
+                    if (p + 2 > limit) {
+                        dst.position(p - base);
+                        throw new BufferOverflowException();
+                    }
+                    a[p + hi] = (byte) (cp >>> 8);
+                    a[p + 1 - hi] = (byte) cp;
+                    p += 2;
+                } else {
+                    // Rejected before overflow, as the direct buffer path
+                    // rejects them
+                    if (cp < 0 || cp > Character.MAX_CODE_POINT) {
+                        dst.position(p - base);
+                        throw new IllegalArgumentException(
+                            "Invalid code point : " + cp);
+                    }
+                    if (p + 4 > limit) {
+                        dst.position(p - base);
+                        throw new BufferOverflowException();
+                    }
+                    char h = Character.highSurrogate(cp);
+                    char l = Character.lowSurrogate(cp);
+                    a[p + hi] = (byte) (h >>> 8);
+                    a[p + 1 - hi] = (byte) h;
+                    a[p + 2 + hi] = (byte) (l >>> 8);
+                    a[p + 3 - hi] = (byte) l;
+                    p += 4;
+                }
+            }
+            dst.position(p - base);
+            return p - base - start;
+        }
+        for (int i = off, end = off + len; i < end; i++) {
+            int cp = cps[i];
+            if (dst.remaining() < 2 * encodedLength(cp)) {
+                throw new BufferOverflowException();
+            }
+            if (cp >>> 16 == 0) {
+                putChar(dst, (char) cp, bigEndian);
+            } else {
+                putChar(dst, Character.highSurrogate(cp), bigEndian);
+                putChar(dst, Character.lowSurrogate(cp), bigEndian);
+            }
+        }
+        return dst.position() - start;
+    }
+}
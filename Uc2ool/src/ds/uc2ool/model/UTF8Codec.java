@@ -0,0 +1,205 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * UTF8Codec provides allocation free UTF-8 encoding of code points into
+ * caller supplied byte arrays and ByteBuffers. It is intended for bulk work
+ * over large numbers of code points where the String based
+ * <code>Uc2oolModel.getUTF8Encoding()</code> would be too costly.
+ *
+ * The byte ranges are exactly those used by
+ * <code>Uc2oolModel.getUTF8Encoding()</code>, including the original five
+ * and six byte forms for values above 0x1FFFFF. All methods are static and
+ * thread-safe.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class UTF8Codec {
+
+    // First byte prefix bits
+    private static final int TWO_BYTE_UTF8_PFX     = 0b11000000;
+    private static final int THREE_BYTE_UTF8_PFX   = 0b11100000;
+    private static final int FOUR_BYTE_UTF8_PFX    = 0b11110000;
+    private static final int FIVE_BYTE_UTF8_PFX    = 0b11111000;
+    private static final int SIX_BYTE_UTF8_PFX     = 0b11111100;
+    // Prefix for bytes 2 through 6
+    private static final int SUBSEQ_BYTE_UTF8_PFX  = 0b10000000;
+    private static final int SUBSEQ_BYTE_UTF8_MASK = 0b00111111;
+
+    /**
+     * The maximum number of bytes a single code point may encode to.
+     */
+    public static final int MAX_BYTES_PER_CODEPOINT = 6;
+
+    private UTF8Codec() {
+    }
+
+    /**
+     * Get the number of bytes required to encode a code point.
+     *
+     * @param cp the code point
+     * @return the encoded length, 1 to 6
+     * @throws IllegalArgumentException if cp is negative
+     */
+    public static int encodedLength(int cp) {
+        if (cp < 0) {
+            throw new IllegalArgumentException("Invalid code point : " + cp);
+        } else if (cp <= 0x7f) {
+            return 1;
+        } else if (cp <= 0x7ff) {
+            return 2;
+        } else if (cp <= 0xffff) {
+            return 3;
+        } else if (cp <= 0x1fffff) {
+            return 4;
+        } else if (cp <= 0x3ffffff) {
+            return 5;
+        }
+        return 6;
+    }
+
+    /**
+     * Get the total number of bytes required to encode a run of code points.
+     *
+     * @param cps the code points
+     * @param off the offset of the first code point in cps
+     * @param len the number of code points
+     * @return the total encoded length in bytes
+     */
+    public static int encodedLength(int[] cps, int off, int len) {
+        int n = 0;
+        for (int i = off, end = off + len; i < end; i++) {
+            n += encodedLength(cps[i]);
+        }
+        return n;
+    }
+
+    /**
+     * Encode a single code point into a byte array.
+     *
+     * @param cp the code point
+     * @param dst the destination array
+     * @param pos the index in dst at which to write the first byte
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if cp is negative
+     * @throws ArrayIndexOutOfBoundsException if dst is too small
+     */
+    public static int encode(int cp, byte[] dst, int pos) {
+        int n = encodedLength(cp);
+        switch (n) {
+        case 1:
+            dst[pos] = (byte) cp;
+            return 1;
+        case 2:
+            dst[pos + 1] = trail(cp);
+            dst[pos] = (byte) (TWO_BYTE_UTF8_PFX | (cp >>> 6));
+            return 2;
+        case 3:
+            dst[pos + 2] = trail(cp);
+            dst[pos + 1] = trail(cp >>> 6);
+            dst[pos] = (byte) (THREE_BYTE_UTF8_PFX | (cp >>> 12));
+            return 3;
+        case 4:
+            dst[pos + 3] = trail(cp);
+            dst[pos + 2] = trail(cp >>> 6);
+            dst[pos + 1] = trail(cp >>> 12);
+            dst[pos] = (byte) (FOUR_BYTE_UTF8_PFX | (cp >>> 18));
+            return 4;
+        case 5:
+            dst[pos + 4] = trail(cp);
+            dst[pos + 3] = trail(cp >>> 6);
+            dst[pos + 2] = trail(cp >>> 12);
+            dst[pos + 1] = trail(cp >>> 18);
+            dst[pos] = (byte) (FIVE_BYTE_UTF8_PFX | (cp >>> 24));
+            return 5;
+        default:
+            dst[pos + 5] = trail(cp);
+            dst[pos + 4] = trail(cp >>> 6);
+            dst[pos + 3] = trail(cp >>> 12);
+            dst[pos + 2] = trail(cp >>> 18);
+            dst[pos + 1] = trail(cp >>> 24);
+            dst[pos] = (byte) (SIX_BYTE_UTF8_PFX | (cp >>> 30));
+            return 6;
+        }
+    }
+
+    /**
+     * Encode a run of code points into a byte array.
+     *
+     * @param cps the code points
+     * @param off the offset of the first code point in cps
+     * @param len the number of code points
+     * @param dst the destination array
+     * @param pos the index in dst at which to write the first byte
+     * @return the number of bytes written
+     */
+    public static int encode(int[] cps, int off, int len,
+                             byte[] dst, int pos) {
+        int p = pos;
+        for (int i = off, end = off + len; i < end; i++) {
+            p += encode(cps[i], dst, p);
+        }
+        return p - pos;
+    }
+
+    /**
+     * Encode a run of code points into a ByteBuffer starting at its current
+     * position. Only whole code points are written. If the buffer fills or
+     * a code point is invalid the position is left after the last complete
+     * code point and an exception is thrown.
+     *
+     * @param cps the code points
+     * @param off the offset of the first code point in cps
+     * @param len the number of code points
+     * @param dst the destination buffer
+     * @return the number of bytes written
+     * @throws BufferOverflowException if dst has insufficient space
+     * @throws IllegalArgumentException if a code point is negative
+     */
+    public static int encodeUtf8(int[] cps, int off, int len,
+                                 ByteBuffer dst) {
+        int start = dst.position();
+        if (dst.hasArray()) {
+            byte[] a = dst.array();
+            int base = dst.arrayOffset();
+            int p = base + start;
+            int limit = base + dst.limit();
+            for (int i = off, end = off + len; i < end; i++) {
+                int cp = cps[i];
+                if (cp < 0) {
+                    dst.position(p - base);
+                    throw new IllegalArgumentException(
+                        "Invalid code point : " + cp);
+                }
+                if (p + encodedLength(cp) > limit) {
+                    dst.position(p - base);
+                    throw new BufferOverflowException();
+                }
+                p += encode(cp, a, p);
+            }
+            dst.position(p - base);
+        } else {
+            byte[] tmp = new byte[MAX_BYTES_PER_CODEPOINT];
+            for (int i = off, end = off + len; i < end; i++) {
+                int n = encode(cps[i], tmp, 0);
+                if (dst.remaining() < n) {
+                    throw new BufferOverflowException();
+                }
+                dst.put(tmp, 0, n);
+            }
+        }
+        return dst.position() - start;
+    }
+
+    // Build a continuation byte from the lowest 6 bits of the value
+    private static byte trail(int v) {
+        return (byte) (SUBSEQ_BYTE_UTF8_PFX | (v & SUBSEQ_BYTE_UTF8_MASK));
+    }
+}
@@ -0,0 +1,437 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * UTF8Decoder is an incremental UTF-8 decoder. Input may be supplied in
+ * chunks of any size and a multi-byte sequence split across chunks is
+ * carried over to the next call. Decoding is a single linear pass over the
+ * input with no per byte allocation.
+ *
+ * Only well formed UTF-8 as defined by the Unicode standard is accepted.
+ * Overlong forms, encoded surrogates and values above U+10FFFF are all
+ * rejected. Each ill-formed subsequence is replaced by U+FFFD following the
+ * Unicode "maximal subpart" practice and reported, with the absolute byte
+ * offset of its first byte, to an optional ErrorListener.
+ *
+ * A decoder holds state between calls and so must not be shared between
+ * threads without external synchronization.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class UTF8Decoder {
+
+    /**
+     * The kinds of malformation the decoder reports.
+     */
+    public enum ErrorType {
+        /** A continuation byte without a preceding lead byte */
+        UNEXPECTED_CONTINUATION,
+        /** A byte, 0xF8 to 0xFF, that can never appear in UTF-8 */
+        INVALID_LEAD_BYTE,
+        /** A sequence cut short by a non-continuation byte or end of input */
+        TRUNCATED_SEQUENCE,
+        /** A value encoded in more bytes than necessary */
+        OVERLONG,
+        /** An encoded UTF-16 surrogate code point, U+D800 to U+DFFF */
+        SURROGATE,
+        /** A value above U+10FFFF */
+        OUT_OF_RANGE
+    }
+
+    /**
+     * Receives notification of each malformed sequence found.
+     */
+    public interface ErrorListener {
+        /**
+         * Called once for each ill-formed subsequence.
+         *
+         * @param type the kind of malformation
+         * @param offset the offset in the input of the first byte of the
+         * subsequence
+         */
+        void malformed(ErrorType type, long offset);
+    }
+
+    /**
+     * The code point emitted in place of each malformed sequence.
+     */
+    public static final int REPLACEMENT_CHARACTER = 0xFFFD;
+
+    private final ErrorListener m_listener;
+
+    private long m_offset;      // offset of the next byte to be read
+    private long m_seqStart;    // offset of the current sequence lead byte
+    private int m_lead;         // lead byte of the current sequence
+    private int m_codepoint;    // value accumulated so far
+    private int m_needed;       // continuation bytes still required
+    private int m_lower = 0x80; // bounds for the next continuation byte
+    private int m_upper = 0xBF;
+
+    private int m_index;        // array index reached by decodeArray
+
+    private long m_errorCount;
+    private ErrorType m_firstError;
+    private long m_firstErrorOffset = -1;
+
+    /**
+     * Create a decoder which counts, but does not report, errors.
+     */
+    public UTF8Decoder() {
+        this(null);
+    }
+
+    /**
+     * Create a decoder which reports errors to a listener.
+     *
+     * @param l the listener, may be null
+     */
+    public UTF8Decoder(ErrorListener l) {
+        m_listener = l;
+    }
+
+    /**
+     * Decode a chunk of bytes. All bytes are consumed; an incomplete
+     * trailing sequence is held until the next call or
+     * <code>finish()</code>.
+     *
+     * @param src the input bytes
+     * @param off the offset of the first byte in src
+     * @param len the number of bytes
+     * @param dst the destination array which must have room for
+     * len + 1 code points
+     * @param pos the index in dst at which to write the first code point
+     * @return the number of code points written
+     * @throws ArrayIndexOutOfBoundsException if dst is too small, leaving
+     * the decoder part way through src
+     */
+    public int decode(byte[] src, int off, int len, int[] dst, int pos) {
+        return decodeArray(src, off, off + len, dst, null, pos,
+                           Integer.MAX_VALUE) - pos;
+    }
+
+    /**
+     * Decode bytes from the current position of a ByteBuffer. Decoding
+     * stops at the limit of src or when dst has room for fewer than two
+     * further code points, whichever comes first, and src is left
+     * positioned after the last byte consumed.
+     *
+     * @param src the input bytes
+     * @param dst the destination array
+     * @param pos the index in dst at which to write the first code point
+     * @return the number of code points written
+     */
+    public int decode(ByteBuffer src, int[] dst, int pos) {
+        return decode(src, dst, null, pos);
+    }
+
+    /**
+     * Decode bytes from the current position of a ByteBuffer as
+     * <code>decode(ByteBuffer, int[], int)</code> does, also recording the
+     * absolute offset of the first byte of each code point written. For a
+     * replacement character this is the offset of the malformed sequence.
+     *
+     * @param src the input bytes
+     * @param dst the destination array
+     * @param starts the array receiving the offset of each code point, at
+     * the same index as the code point in dst, or null if not wanted
+     * @param pos the index in dst at which to write the first code point
+     * @return the number of code points written
+     */
+    public int decode(ByteBuffer src, int[] dst, long[] starts, int pos) {
+        int p = pos;
+        int stop = dst.length - 1;
+        if (src.hasArray()) {
+            int base = src.arrayOffset();
+            p = decodeArray(src.array(), base + src.position(),
+                            base + src.limit(), dst, starts, p, stop);
+            src.position(m_index - base);
+        } else {
+            while (src.hasRemaining() && p < stop) {
+                p = decodeByte(src.get(), dst, starts, p);
+            }
+        }
+        return p - pos;
+    }
+
+    /**
+     * Signal the end of the input. Any incomplete sequence still held is
+     * reported as truncated and replaced.
+     *
+     * @param dst the destination array which must have room for one code
+     * point
+     * @param pos the index in dst at which to write
+     * @return the number of code points written, 0 or 1
+     */
+    public int finish(int[] dst, int pos) {
+        return finish(dst, null, pos);
+    }
+
+    /**
+     * Signal the end of the input, also recording the offset of any
+     * replacement character written.
+     *
+     * @param dst the destination array which must have room for one code
+     * point
+     * @param starts the array receiving the offset, or null if not wanted
+     * @param pos the index in dst at which to write
+     * @return the number of code points written, 0 or 1
+     */
+    public int finish(int[] dst, long[] starts, int pos) {
+        if (m_needed == 0) {
+            return 0;
+        }
+        m_needed = 0;
+        error(ErrorType.TRUNCATED_SEQUENCE, m_seqStart);
+        emit(REPLACEMENT_CHARACTER, dst, starts, pos);
+        return 1;
+    }
+
+    /**
+     * Return the decoder to its initial state so it may be reused.
+     */
+    public void reset() {
+        m_offset = 0;
+        m_needed = 0;
+        m_lower = 0x80;
+        m_upper = 0xBF;
+        m_errorCount = 0;
+        m_firstError = null;
+        m_firstErrorOffset = -1;
+    }
+
+    /**
+     * @return the number of bytes consumed so far
+     */
+    public long getOffset() {
+        return m_offset;
+    }
+
+    /**
+     * @return true if an incomplete sequence is being held
+     */
+    public boolean hasPending() {
+        return m_needed != 0;
+    }
+
+    /**
+     * @return the number of malformed sequences found so far
+     */
+    public long getErrorCount() {
+        return m_errorCount;
+    }
+
+    /**
+     * @return the type of the first malformation found, or null if none
+     */
+    public ErrorType getFirstError() {
+        return m_firstError;
+    }
+
+    /**
+     * @return the offset of the first malformation found, or -1 if none
+     */
+    public long getFirstErrorOffset() {
+        return m_firstErrorOffset;
+    }
+
+    /**
+     * Decode a complete byte array in one call.
+     *
+     * @param src the UTF-8 bytes
+     * @param l the error listener, may be null
+     * @return the decoded code points
+     */
+    public static int[] decodeAll(byte[] src, ErrorListener l) {
+        UTF8Decoder d = new UTF8Decoder(l);
+        int[] dst = new int[src.length + 1];
+        int n = d.decode(src, 0, src.length, dst, 0);
+        n += d.finish(dst, n);
+        return n == dst.length ? dst : Arrays.copyOf(dst, n);
+    }
+
+    /*
+     * Decode a[i] to a[end - 1], stopping early if p reaches stop, and
+     * return the new output position leaving the index reached in m_index.
+     * Between sequences ASCII and complete well formed sequences are
+     * decoded directly from the array; anything else, including every
+     * sequence split across calls, goes byte by byte through decodeByte.
+     */
+    private int decodeArray(byte[] a, int i, int end, int[] dst,
+                            long[] starts, int p, int stop) {
+        long base = m_offset - i;   // stream offset of a[0]
+        while (i < end && p < stop) {
+            if (m_needed == 0) {
+                int v = a[i];
+                int cp = -1;
+                int n = 0;
+                if (v >= 0) {
+                    cp = v;
+                    n = 1;
+                } else {
+                    cp = sequence(a, i, end);
+                    n = cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+                }
+                if (cp >= 0) {
+                    if (starts != null) {
+                        starts[p] = base + i;
+                    }
+                    dst[p++] = cp;
+                    i += n;
+                    continue;
+                }
+            }
+            m_offset = base + i;
+            p = decodeByte(a[i++], dst, starts, p);
+        }
+        m_offset = base + i;
+        m_index = i;
+        return p;
+    }
+
+    /*
+     * Decode the well formed multi-byte sequence starting at a[i] if it
+     * lies wholly before end, or return -1.
+     */
+    private static int sequence(byte[] a, int i, int end) {
+        int v = a[i] & 0xff;
+        if (v >= 0xC2 && v <= 0xDF) {
+            if (i + 1 < end && (a[i + 1] & 0xc0) == 0x80) {
+                return (v & 0x1f) << 6 | (a[i + 1] & 0x3f);
+            }
+        } else if (v >= 0xE0 && v <= 0xEF) {
+            if (i + 2 < end) {
+                int b1 = a[i + 1] & 0xff;
+                int lower = v == 0xE0 ? 0xA0 : 0x80;
+                int upper = v == 0xED ? 0x9F : 0xBF;
+                if (b1 >= lower && b1 <= upper &&
+                    (a[i + 2] & 0xc0) == 0x80) {
+                    return (v & 0x0f) << 12 | (b1 & 0x3f) << 6 |
+                           (a[i + 2] & 0x3f);
+                }
+            }
+        } else if (v >= 0xF0 && v <= 0xF4) {
+            if (i + 3 < end) {
+                int b1 = a[i + 1] & 0xff;
+                int lower = v == 0xF0 ? 0x90 : 0x80;
+                int upper = v == 0xF4 ? 0x8F : 0xBF;
+                if (b1 >= lower && b1 <= upper &&
+                    (a[i + 2] & 0xc0) == 0x80 && (a[i + 3] & 0xc0) == 0x80) {
+                    return (v & 0x07) << 18 | (b1 & 0x3f) << 12 |
+                           (a[i + 2] & 0x3f) << 6 | (a[i + 3] & 0x3f);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Process a single byte returning the new output position. Every code
+     * point is written while m_seqStart holds the offset of its first byte.
+     */
+    private int decodeByte(byte b, int[] dst, long[] starts, int p) {
+        int v = b & 0xff;
+        if (m_needed != 0) {
+            if (v >= m_lower && v <= m_upper) {
+                m_codepoint = (m_codepoint << 6) | (v & 0x3f);
+                m_lower = 0x80;
+                m_upper = 0xBF;
+                m_offset++;
+                if (--m_needed == 0) {
+                    p = emit(m_codepoint, dst, starts, p);
+                }
+                return p;
+            }
+            // The sequence so far is a maximal subpart; replace it and
+            // reprocess this byte as the start of a new sequence.
+            m_needed = 0;
+            ErrorType t = ErrorType.TRUNCATED_SEQUENCE;
+            if (v >= 0x80 && v <= 0xBF) {
+                t = boundError(m_lead);
+            }
+            m_lower = 0x80;
+            m_upper = 0xBF;
+            error(t, m_seqStart);
+            p = emit(REPLACEMENT_CHARACTER, dst, starts, p);
+        }
+        m_seqStart = m_offset++;
+        if (v < 0x80) {
+            p = emit(v, dst, starts, p);
+        } else if (v >= 0xC2 && v <= 0xDF) {
+            start(v, 1, v & 0x1f);
+        } else if (v >= 0xE0 && v <= 0xEF) {
+            start(v, 2, v & 0x0f);
+            if (v == 0xE0) {
+                m_lower = 0xA0;
+            } else if (v == 0xED) {
+                m_upper = 0x9F;
+            }
+        } else if (v >= 0xF0 && v <= 0xF4) {
+            start(v, 3, v & 0x07);
+            if (v == 0xF0) {
+                m_lower = 0x90;
+            } else if (v == 0xF4) {
+                m_upper = 0x8F;
+            }
+        } else {
+            ErrorType t;
+            if (v <= 0xBF) {
+                t = ErrorType.UNEXPECTED_CONTINUATION;
+            } else if (v <= 0xC1) {
+                t = ErrorType.OVERLONG;
+            } else if (v <= 0xF7) {
+                t = ErrorType.OUT_OF_RANGE;
+            } else {
+                t = ErrorType.INVALID_LEAD_BYTE;
+            }
+            error(t, m_seqStart);
+            p = emit(REPLACEMENT_CHARACTER, dst, starts, p);
+        }
+        return p;
+    }
+
+    // Write a code point and, if wanted, the offset of its sequence
+    private int emit(int cp, int[] dst, long[] starts, int p) {
+        if (starts != null) {
+            starts[p] = m_seqStart;
+        }
+        dst[p] = cp;
+        return p + 1;
+    }
+
+    // Begin a multi-byte sequence
+    private void start(int lead, int needed, int bits) {
+        m_lead = lead;
+        m_needed = needed;
+        m_codepoint = bits;
+    }
+
+    // Classify a continuation byte outside the range allowed after a lead
+    private static ErrorType boundError(int lead) {
+        switch (lead) {
+        case 0xED:
+            return ErrorType.SURROGATE;
+        case 0xF4:
+            return ErrorType.OUT_OF_RANGE;
+        default:
+            return ErrorType.OVERLONG;
+        }
+    }
+
+    // Record an error and notify the listener
+    private void error(ErrorType t, long offset) {
+        if (m_errorCount++ == 0) {
+            m_firstError = t;
+            m_firstErrorOffset = offset;
+        }
+        if (m_listener != null) {
+            m_listener.malformed(t, offset);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * UTF8Scanner checks and measures UTF-8 bytes without decoding them.
+ * <code>UTF8Validator.getScanner()</code> returns the fastest implementation
+ * available to the running JVM.
+ *
+ * Implementations must not change the position, limit or byte order of the
+ * buffers they are given and must be safe to share between threads.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public interface UTF8Scanner {
+
+    /**
+     * Check the bytes from the position to the limit of a buffer.
+     *
+     * @param b the bytes to check
+     * @return -1 if the bytes are well formed, otherwise the offset from
+     * the position of the first byte of the first ill-formed sequence
+     */
+    int validate(ByteBuffer b);
+
+    /**
+     * Count the code points in the bytes from the position to the limit of
+     * a buffer, which should already have been validated. Every byte that
+     * is not a continuation byte is counted, so ill-formed input gives a
+     * count but not a meaningful one.
+     *
+     * @param b the bytes to count
+     * @return the number of code points
+     */
+    long countCodePoints(ByteBuffer b);
+}
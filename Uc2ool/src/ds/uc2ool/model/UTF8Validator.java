@@ -0,0 +1,275 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * UTF8Validator checks that bytes are well formed UTF-8 without decoding
+ * them and without allocating. Text that is mostly ASCII is checked eight
+ * bytes at a time: each long read from the buffer is tested against the
+ * high bit of every byte at once and whole ASCII words are skipped. The
+ * first non-ASCII byte found drops into a small table driven DFA which
+ * follows multi-byte sequences until the next ASCII byte.
+ *
+ * The DFA accepts exactly the encodings <code>UTF8Codec</code> produces
+ * for U+0000 to U+10FFFF excluding the surrogates, as defined by table 3-7
+ * of the Unicode standard. Overlong forms, encoded surrogates, values above
+ * U+10FFFF and truncated sequences are rejected.
+ *
+ * <code>getScanner()</code> offers the same checks, and code point
+ * counting, through a <code>UTF8Scanner</code> which uses the incubating
+ * Vector API where the JVM provides it.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class UTF8Validator {
+
+    /**
+     * The system property which, set to "false", stops
+     * <code>getScanner()</code> using the Vector API.
+     */
+    public static final String VECTOR_PROPERTY = "ds.uc2ool.vector";
+
+    // Built from vector_src, and only loadable with jdk.incubator.vector
+    private static final String VECTOR_SCANNER =
+        "ds.uc2ool.model.VectorUTF8Scanner";
+
+    private static final UTF8Scanner SCALAR = new Scalar();
+    private static volatile UTF8Scanner s_scanner;
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    // Byte classes, by the ranges table 3-7 distinguishes
+    private static final int ASCII = 0;
+    private static final int CONT_80_8F = 1;
+    private static final int CONT_90_9F = 2;
+    private static final int CONT_A0_BF = 3;
+    private static final int INVALID = 4;   // C0, C1, F5..FF
+    private static final int LEAD_2 = 5;    // C2..DF
+    private static final int LEAD_E0 = 6;
+    private static final int LEAD_3 = 7;    // E1..EC, EE, EF
+    private static final int LEAD_ED = 8;
+    private static final int LEAD_F0 = 9;
+    private static final int LEAD_4 = 10;   // F1..F3
+    private static final int LEAD_F4 = 11;
+    private static final int CLASSES = 12;
+
+    // DFA states
+    private static final int ACCEPT = 0;
+    private static final int REJECT = 1;
+    private static final int NEED_1 = 2;    // any continuation, then done
+    private static final int NEED_2 = 3;    // any two continuations
+    private static final int AFTER_E0 = 4;  // A0..BF, then 1
+    private static final int AFTER_ED = 5;  // 80..9F, then 1
+    private static final int AFTER_F0 = 6;  // 90..BF, then 2
+    private static final int NEED_3 = 7;    // any continuation, then 2
+    private static final int AFTER_F4 = 8;  // 80..8F, then 2
+    private static final int STATES = 9;
+
+    private static final byte[] CLASS = new byte[256];
+    private static final byte[] NEXT = new byte[STATES * CLASSES];
+    static {
+        for (int b = 0; b < 256; b++) {
+            CLASS[b] = (byte) (b < 0x80 ? ASCII
+                             : b < 0x90 ? CONT_80_8F
+                             : b < 0xA0 ? CONT_90_9F
+                             : b < 0xC0 ? CONT_A0_BF
+                             : b < 0xC2 ? INVALID
+                             : b < 0xE0 ? LEAD_2
+                             : b == 0xE0 ? LEAD_E0
+                             : b == 0xED ? LEAD_ED
+                             : b < 0xF0 ? LEAD_3
+                             : b == 0xF0 ? LEAD_F0
+                             : b < 0xF4 ? LEAD_4
+                             : b == 0xF4 ? LEAD_F4
+                             : INVALID);
+        }
+        Arrays.fill(NEXT, (byte) REJECT);
+        on(ACCEPT, ASCII, ACCEPT);
+        on(ACCEPT, LEAD_2, NEED_1);
+        on(ACCEPT, LEAD_E0, AFTER_E0);
+        on(ACCEPT, LEAD_3, NEED_2);
+        on(ACCEPT, LEAD_ED, AFTER_ED);
+        on(ACCEPT, LEAD_F0, AFTER_F0);
+        on(ACCEPT, LEAD_4, NEED_3);
+        on(ACCEPT, LEAD_F4, AFTER_F4);
+        for (int c = CONT_80_8F; c <= CONT_A0_BF; c++) {
+            on(NEED_1, c, ACCEPT);
+            on(NEED_2, c, NEED_1);
+            on(NEED_3, c, NEED_2);
+        }
+        on(AFTER_E0, CONT_A0_BF, NEED_1);
+        on(AFTER_ED, CONT_80_8F, NEED_1);
+        on(AFTER_ED, CONT_90_9F, NEED_1);
+        on(AFTER_F0, CONT_90_9F, NEED_2);
+        on(AFTER_F0, CONT_A0_BF, NEED_2);
+        on(AFTER_F4, CONT_80_8F, NEED_2);
+    }
+
+    private static void on(int state, int byteClass, int next) {
+        NEXT[state * CLASSES + byteClass] = (byte) next;
+    }
+
+    private UTF8Validator() {
+    }
+
+    /**
+     * Get the fastest scanner available. When the JVM was started with
+     * <code>--add-modules jdk.incubator.vector</code> and the optional
+     * vector classes are on the class path a scanner that checks a whole
+     * SIMD register of bytes at a time is used, unless the system property
+     * <code>VECTOR_PROPERTY</code> is "false". Otherwise the scanner uses
+     * the word at a time methods of this class.
+     *
+     * @return the scanner
+     */
+    public static UTF8Scanner getScanner() {
+        UTF8Scanner s = s_scanner;
+        if (s == null) {
+            synchronized (UTF8Validator.class) {
+                s = s_scanner;
+                if (s == null) {
+                    s_scanner = s = loadScanner();
+                }
+            }
+        }
+        return s;
+    }
+
+    /*
+     * Try for the vector scanner, falling back to the scalar one if the
+     * incubator module or the class is missing, the class was compiled
+     * for a later JVM than this one or its constructor rejects the machine.
+     */
+    private static UTF8Scanner loadScanner() {
+        if (!"false".equalsIgnoreCase(System.getProperty(VECTOR_PROPERTY))) {
+            try {
+                return (UTF8Scanner) Class.forName(VECTOR_SCANNER)
+                                          .getDeclaredConstructor()
+                                          .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Not available here
+            }
+        }
+        return SCALAR;
+    }
+
+    /**
+     * Check the bytes from the position to the limit of a buffer. The
+     * buffer's position, limit and byte order are not changed.
+     *
+     * @param b the bytes to check
+     * @return -1 if the bytes are well formed, otherwise the offset from
+     * the position of the first byte of the first ill-formed sequence
+     */
+    public static int validate(ByteBuffer b) {
+        int start = b.position();
+        int end = b.limit();
+        boolean bigEndian = b.order() == ByteOrder.BIG_ENDIAN;
+        int i = start;
+        while (i < end) {
+            // Skip whole words of ASCII, stopping at the first byte with
+            // its high bit set
+            for (; i + 8 <= end; i += 8) {
+                long high = b.getLong(i) & HIGH_BITS;
+                if (high != 0) {
+                    i += (bigEndian ? Long.numberOfLeadingZeros(high)
+                                    : Long.numberOfTrailingZeros(high))
+                         >>> 3;
+                    break;
+                }
+            }
+            if (i >= end) {
+                break;
+            }
+            if (b.get(i) >= 0) {
+                i++;
+                continue;
+            }
+            i = sequences(b, i, end);
+            if (i < 0) {
+                return ~i - start;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Follow the multi-byte sequences starting at index i, which must not
+     * be ASCII, up to the next ASCII byte or end. Returns the index at
+     * which the sequences stop, or the complement of the index of the lead
+     * byte of an ill-formed sequence.
+     */
+    static int sequences(ByteBuffer b, int i, int end) {
+        int state = ACCEPT;
+        int lead = i;
+        for (; i < end; i++) {
+            int c = CLASS[b.get(i) & 0xff];
+            if (state == ACCEPT) {
+                if (c == ASCII) {
+                    return i;
+                }
+                lead = i;
+            }
+            state = NEXT[state * CLASSES + c];
+            if (state == REJECT) {
+                return ~lead;
+            }
+        }
+        return state == ACCEPT ? end : ~lead;
+    }
+
+    /**
+     * @param b the bytes to check, from position to limit
+     * @return true if the bytes are well formed UTF-8
+     */
+    public static boolean isValid(ByteBuffer b) {
+        return validate(b) < 0;
+    }
+
+    /**
+     * Count the code points in the bytes from the position to the limit of
+     * a buffer, eight bytes at a time. The bytes should already have been
+     * validated; every byte that is not a continuation byte is counted.
+     *
+     * @param b the bytes to count
+     * @return the number of code points
+     */
+    public static long countCodePoints(ByteBuffer b) {
+        int end = b.limit();
+        int i = b.position();
+        long n = 0;
+        for (; i + 8 <= end; i += 8) {
+            // A continuation byte has its top bit set and the next clear;
+            // shifting left by one lines each byte's bit 6 up with its bit 7
+            long w = b.getLong(i);
+            n += 8 - Long.bitCount(w & ~(w << 1) & HIGH_BITS);
+        }
+        for (; i < end; i++) {
+            if ((b.get(i) & 0xc0) != 0x80) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    // The word at a time implementation, as a scanner
+    private static final class Scalar implements UTF8Scanner {
+
+        @Override
+        public int validate(ByteBuffer b) {
+            return UTF8Validator.validate(b);
+        }
+
+        @Override
+        public long countCodePoints(ByteBuffer b) {
+            return UTF8Validator.countCodePoints(b);
+        }
+    }
+}
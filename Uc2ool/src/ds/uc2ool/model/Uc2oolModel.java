@@ -1,12 +1,28 @@
 package ds.uc2ool.model;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.file.Path;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import ds.debug.Counter;
+import ds.debug.DebugLogger;
+import ds.debug.LatencyHistogram;
+import ds.debug.Metrics;
+
 /**
  * Uc2oolModel is the model part of the MVC for this application. It handles
  * all Unicode conversion tasks and codepoint validation. Any failures will
  * be reported as UncheckedModelExceptions.
  * 
+ * An instance holds the most recent input and is therefore not thread-safe.
+ * The conversions themselves are also available as static methods, and
+ * <code>describe(int)</code> returns an immutable <code>CodePointInfo</code>,
+ * neither of which touch any shared mutable state. The instance methods
+ * delegate to these, so many threads may use the static API concurrently.
+ * 
  * @author	Daniel Semler
  * @version	%I%, %G%
  * @since	1.0
@@ -16,15 +32,43 @@ public class Uc2oolModel {
         CHARACTER,
         UTF8,
         DECCODEPOINT,
-        HEXCODEPOINT
+        HEXCODEPOINT,
+        NAME
     }
-    private final int MAX_CODEPOINT = 1114112; // As defined in Unicode 8.
+    
+    /**
+     * The system property which, set to "true", turns the encoding cache
+     * on from the start.
+     */
+    public static final String ENCODING_CACHE_PROPERTY =
+        "ds.uc2ool.encodingCache";
+    
+    private static volatile EncodingCache s_encodingCache =
+        Boolean.getBoolean(ENCODING_CACHE_PROPERTY) ? new EncodingCache()
+                                                    : null;
     
 	private String m_input;
 	private InputType m_type;
 	private int m_codepoint;
 	
 	private Logger m_logger;  // debug logger
+	private static final String CLASS_NAME = Uc2oolModel.class.getName();
+	
+	// Metrics, which cost a flag check while ds.debug.Metrics is disabled
+	private static final LatencyHistogram s_setInputTime =
+	    Metrics.histogram("Uc2oolModel.setInput");
+	private static final LatencyHistogram s_utf8Time =
+	    Metrics.histogram("Uc2oolModel.getUTF8Encoding");
+	private static final LatencyHistogram s_utf16Time =
+	    Metrics.histogram("Uc2oolModel.getUTF16Encoding");
+	private static final LatencyHistogram s_nameTime =
+	    Metrics.histogram("Uc2oolModel.getUnicodeCharacterName");
+	private static final LatencyHistogram s_nameLookupTime =
+	    Metrics.histogram("Uc2oolModel.codePointForName");
+	private static final LatencyHistogram s_nameSearchTime =
+	    Metrics.histogram("Uc2oolModel.searchNames");
+	private static final Counter s_invalidInputs =
+	    Metrics.counter("Uc2oolModel.invalidInputs");
 	
 	public Uc2oolModel(Logger l) {
 	    m_logger = l;
@@ -37,154 +81,439 @@ public class Uc2oolModel {
 	 * @param i the input String
 	 */
 	public void setInput(String i, InputType type) {
+		long start = Metrics.start();
 		m_input = i;
 		m_type = type;
 		
 		// Create a codepoint for this input
-		switch (type) {
-		    case CHARACTER:
-		        break;
-		    case UTF8:
-		        break;
-		    case DECCODEPOINT:
-		        validateDecimalCodePoint(i);
-		        m_codepoint = Integer.valueOf(i);
-		        break;
-		    case HEXCODEPOINT:
-		        validateHexCodePoint(i);
-		        m_codepoint = parseHexInput(i);
-		        break;
-		}
-	}
-	
-	// Validate the input codepoint value for a decimal input
-	private void validateDecimalCodePoint(String i) {
-	    try {
-            int cp = Integer.valueOf(i);
-            if (cp < 0 || cp > MAX_CODEPOINT) {
-                throw new UncheckedModelException("INV_DEC_CP", i);
-            }
-        } catch (NumberFormatException e) {
-            throw new UncheckedModelException("INV_DEC_CP", i);
-        }
+		m_codepoint = parseCodePoint(i, type);
+		s_setInputTime.stop(start);
+		// Pass objects, not text or boxed values, so that nothing is
+		// allocated unless FINEST is enabled
+		DebugLogger.log(m_logger, Level.FINEST, CLASS_NAME, "setInput",
+		                "{0}", this);
 	}
-
+	
+	/**
+	 * Returned by <code>tryParseCodePoint()</code> for input that is not a
+	 * valid code point.
+	 */
+	public static final int INVALID = -1;
+	
+	/**
+	 * Parse and validate a code point input string without touching any
+	 * instance state.
+	 * 
+	 * @param i the input String
+	 * @param type the interpretation of the input
+	 * @return the code point
+	 * @throws UncheckedModelException if the input is not a valid code point
+	 */
+	public static int parseCodePoint(String i, InputType type) {
+	    int cp = tryParseCodePoint(i, type);
+	    if (cp == INVALID) {
+	        throw new UncheckedModelException(false, messageKey(type), i);
+	    }
+	    return cp;
+	}
+	
+	/**
+	 * Parse and validate a code point input string without throwing, for
+	 * checking many inputs of which a lot may be invalid.
+	 * 
+	 * @param i the input String
+	 * @param type the interpretation of the input
+	 * @return the code point, or INVALID
+	 */
+	public static int tryParseCodePoint(String i, InputType type) {
+	    int cp;
+	    switch (type) {
+	        case CHARACTER:
+	            cp = parseCharacterInput(i);
+	            break;
+	        case UTF8:
+	            cp = parseUTF8Input(i);
+	            break;
+	        case NAME:
+	            cp = i == null ? INVALID : codePointForName(i);
+	            break;
+	        case DECCODEPOINT:
+	            cp = parseNumberInput(i, 10);
+	            break;
+	        case HEXCODEPOINT:
+	            cp = parseNumberInput(i, 16);
+	            break;
+	        default:
+	            throw new IllegalArgumentException(
+	                    "Unsupported input type : " + type);
+	    }
+	    if (cp == INVALID) {
+	        s_invalidInputs.increment();
+	    }
+	    return cp;
+	}
+	
+	/**
+	 * Validate a code point input string without throwing. The result
+	 * holds either the code point or what is wrong with the input.
+	 * 
+	 * @param i the input String
+	 * @param type the interpretation of the input
+	 * @return the result
+	 */
+	public static ValidationResult validate(String i, InputType type) {
+	    return new ValidationResult(i, type, tryParseCodePoint(i, type));
+	}
+	
 	/*
-	 * Parse the hex input string
+	 * The message key describing invalid input of a type.
 	 */
-	private int parseHexInput(String i) {
-        String s = 
-                i.trim().replaceFirst("0x", "").replaceFirst("U\\+", "");
-        return Integer.valueOf(s, 16);
+	static String messageKey(InputType type) {
+	    switch (type) {
+	        case CHARACTER:
+	            return "INV_CHAR";
+	        case UTF8:
+	            return "INV_UTF8";
+	        case NAME:
+	            return "INV_NAME";
+	        case DECCODEPOINT:
+	            return "INV_DEC_CP";
+	        default:
+	            return "INV_HEX_CP";
+	    }
 	}
 	
-    // Validate the input codepoint value for a hex input
-	private void validateHexCodePoint(String i) {
-        try {
-            int cp = parseHexInput(i);
-            if (cp < 0 || cp > MAX_CODEPOINT) {
-                throw new UncheckedModelException("INV_HEX_CP", i);
-            }
-        } catch (NumberFormatException e) {
-            throw new UncheckedModelException("INV_HEX_CP", i);
-        }
+	/**
+	 * Describe a code point. This is a pure function safe for concurrent
+	 * use from any number of threads.
+	 * 
+	 * @param cp the code point
+	 * @return an immutable CodePointInfo for the code point
+	 * @throws IllegalArgumentException if cp is not a valid code point
+	 */
+	public static CodePointInfo describe(int cp) {
+	    return new CodePointInfo(cp, getUnicodeCharacterName(cp),
+	                             getUTF8Encoding(cp), getUTF16Encoding(cp));
+	}
+	
+	/*
+	 * Parse a decimal or hex input in one pass, allowing any of the
+	 * notations CodePointParser accepts.
+	 */
+	private static int parseNumberInput(String i, int radix) {
+	    int cp = i == null ? INVALID
+	                       : CodePointParser.parse(i, 0, i.length(), radix);
+	    return cp < 0 ? INVALID : cp;
+	}
+	
+	/*
+	 * Parse a single character input, which must hold exactly one
+	 * code point.
+	 */
+	private static int parseCharacterInput(String i) {
+	    if (i == null || i.isEmpty() ||
+	        i.codePointCount(0, i.length()) != 1) {
+	        return INVALID;
+	    }
+	    return i.codePointAt(0);
+	}
+	
+	/*
+	 * Parse a UTF-8 input of hex bytes such as "F0 9F 98 80", "F09F9880"
+	 * or "0xF0 0x9F 0x98 0x80" which must decode to exactly one code point.
+	 */
+	private static int parseUTF8Input(String i) {
+	    if (i == null) {
+	        return INVALID;
+	    }
+	    String s = i.replaceAll("\\s+|0x|\\\\x", "");
+	    if (s.isEmpty() || s.length() % 2 != 0 ||
+	        s.length() > 2 * UTF8Codec.MAX_BYTES_PER_CODEPOINT) {
+	        return INVALID;
+	    }
+	    byte[] b = new byte[s.length() / 2];
+	    for (int j = 0; j < b.length; j++) {
+	        int hi = Character.digit(s.charAt(2 * j), 16);
+	        int lo = Character.digit(s.charAt(2 * j + 1), 16);
+	        if (hi < 0 || lo < 0) {
+	            return INVALID;
+	        }
+	        b[j] = (byte) (hi << 4 | lo);
+	    }
+	    UTF8Decoder d = new UTF8Decoder();
+	    int[] cps = new int[b.length + 1];
+	    int n = d.decode(b, 0, b.length, cps, 0);
+	    n += d.finish(cps, n);
+	    if (n != 1 || d.getErrorCount() != 0) {
+	        return INVALID;
+	    }
+	    return cps[0];
 	}
 	
 	/* Get the Unicode string description for the codepoint
 	 * 
 	 */
 	public String getUnicodeCharacterName() {
-	    return Character.getName(m_codepoint);
+	    return getUnicodeCharacterName(m_codepoint);
+	}
+	
+	/* Get the Unicode string description for the given codepoint
+	 * 
+	 */
+	public static String getUnicodeCharacterName(int cp) {
+	    long start = Metrics.start();
+	    String name;
+	    // Use the name index or property database if something has already
+	    // paid to load them, or if they may not match the JDK
+	    UnicodeNameIndex idx = UnicodeNameIndex.getIfBuilt();
+	    if (idx != null) {
+	        name = idx.getName(cp);
+	    } else {
+	        PropertyDatabase db = PropertyDatabase.isExternal()
+	                                  ? PropertyDatabase.getInstance()
+	                                  : PropertyDatabase.getIfLoaded();
+	        name = db != null ? db.getName(cp) : Character.getName(cp);
+	    }
+	    s_nameTime.stop(start);
+	    return name;
+	}
+	
+	/**
+	 * Get the general category of a code point from the property database.
+	 * 
+	 * @param cp the code point
+	 * @return the category as a <code>Character.getType()</code> value
+	 */
+	public static int getGeneralCategory(int cp) {
+	    return PropertyDatabase.getInstance().getGeneralCategory(cp);
+	}
+	
+	/**
+	 * Get the script of a code point from the property database.
+	 * 
+	 * @param cp the code point
+	 * @return the script name, for example LATIN
+	 */
+	public static String getScriptName(int cp) {
+	    return PropertyDatabase.getInstance().getScript(cp);
+	}
+	
+	/**
+	 * Get the block of a code point from the property database.
+	 * 
+	 * @param cp the code point
+	 * @return the block name, for example BASIC_LATIN, or null if the code
+	 * point is in no block
+	 */
+	public static String getBlockName(int cp) {
+	    return PropertyDatabase.getInstance().getBlock(cp);
+	}
+	
+	/**
+	 * Look up a code point by its Unicode character name, ignoring case.
+	 * 
+	 * @param name the character name
+	 * @return the code point, or -1 if there is no character of that name
+	 */
+	public static int codePointForName(String name) {
+	    long start = Metrics.start();
+	    int cp = UnicodeNameIndex.getInstance().codePointOf(name);
+	    s_nameLookupTime.stop(start);
+	    return cp;
+	}
+	
+	/**
+	 * Find the code points whose Unicode character names start with the
+	 * given prefix, ignoring case.
+	 * 
+	 * @param prefix the name prefix
+	 * @param limit the maximum number of code points to return
+	 * @return the matching code points
+	 * @throws IllegalArgumentException if limit is negative
+	 */
+	public static int[] findByNamePrefix(String prefix, int limit) {
+	    return UnicodeNameIndex.getInstance().findByPrefix(prefix, limit);
+	}
+	
+	/**
+	 * Search the Unicode character names for every character whose name
+	 * contains all the words of the query, ignoring case. The results are
+	 * ranked, best match first.
+	 * 
+	 * @param query the words to search for
+	 * @param limit the maximum number of code points to return
+	 * @return the matching code points
+	 */
+	public static int[] searchNames(String query, int limit) {
+	    long start = Metrics.start();
+	    int[] cps = NameSearchIndex.getInstance().search(query, limit);
+	    s_nameSearchTime.stop(start);
+	    return cps;
+	}
+	
+	/**
+	 * Switch to the properties and names of a local copy of the Unicode
+	 * Character Database, which may be newer than that of the JDK. The
+	 * directory must hold UnicodeData.txt, Blocks.txt and Scripts.txt; a
+	 * binary snapshot is cached there so later calls are quick.
+	 * 
+	 * @param dir the UCD directory
+	 * @return a description of the Unicode version loaded
+	 */
+	public static String loadUnicodeData(Path dir) {
+	    try {
+	        PropertyDatabase db = UcdLoader.load(dir);
+	        PropertyDatabase.setInstance(db);
+	        return db.getUnicodeVersion();
+	    } catch (IOException ioe) {
+	        throw new UncheckedModelException("PROPS_LOAD_FAILED",
+	                                          dir.toString(),
+	                                          ioe.getLocalizedMessage());
+	    }
+	}
+	
+	/**
+	 * Build the name indexes now rather than on first use. This takes
+	 * around a second and may be called from a background thread to hide
+	 * that delay from the user.
+	 */
+	public static void preloadNameIndexes() {
+	    NameSearchIndex.getInstance();
 	}
 	
 	/*
 	 * Return a String containing the UTF-16 encoding for the codepoint.
 	 */
 	public String getUTF16Encoding() {
-	    int numChars = Character.charCount(m_codepoint);
-	    char utf16[] = Character.toChars(m_codepoint);
-	    StringBuffer sb = new StringBuffer();
-	    for (int i=0; i < numChars; i++) {
-            char a = (char) (utf16[i] >>> 8);
-            char b = (char) (utf16[i] & 0x00ff);
-            if (a <= 15) sb.append("0");
-            sb.append(Integer.toHexString(a));
-            if (b <= 15) sb.append("0");
-            sb.append(Integer.toHexString(b));
-            sb.append(" ");
+	    return getUTF16Encoding(m_codepoint);
+	}
+	
+	/*
+	 * Return a String containing the UTF-16 encoding for the given codepoint.
+	 */
+	public static String getUTF16Encoding(int cp) {
+	    return getUTF16Encoding(cp, HexFormatter.Style.SPACE);
+	}
+	
+	/*
+	 * Return a String containing the UTF-16 encoding for the given codepoint
+	 * formatted in the given style.
+	 */
+	public static String getUTF16Encoding(int cp, HexFormatter.Style style) {
+	    long start = Metrics.start();
+	    String s;
+	    EncodingCache cache = s_encodingCache;
+	    if (cache != null && cp >= 0 && cp <= Character.MAX_CODE_POINT) {
+	        s = style == HexFormatter.Style.SPACE ? cache.utf16Text(cp)
+	                : EncodingCache.formatUtf16(cp, style);
+	    } else {
+	        char utf16[] = new char[UTF16Codec.MAX_CHARS_PER_CODEPOINT];
+	        int numChars = UTF16Codec.encode(cp, utf16, 0);
+	        s = HexFormatter.formatUnits(utf16, 0, numChars, style);
 	    }
-	    return sb.toString().toUpperCase().trim();
+	    s_utf16Time.stop(start);
+	    return s;
 	}
 	
     /*
      * Return a String containing the UTF-8 encoding for the codepoint.
      */
 	public String getUTF8Encoding() {
-	    // First byte prefix bits
-	    final int ONE_BYTE_UTF8_PFX     = 0b00000000;
-	    final int TWO_BYTE_UTF8_PFX     = 0b11000000;
-	    final int THREE_BYTE_UTF8_PFX   = 0b11100000;
-	    final int FOUR_BYTE_UTF8_PFX    = 0b11110000;
-	    final int FIVE_BYTE_UTF8_PFX    = 0b11111000;
-	    final int SIX_BYTE_UTF8_PFX     = 0b11111100;
-	    // Prefix for bytes 2 through 6
-	    final int SUBSEQ_BYTE_UTF8_PFX  = 0b10000000;
-	    final int SUBSEQ_BYTE_UTF8_MASK = 0b00111111;
-	    
-	    // Determine the correct number of bytes to carry the encoded form
-	    int numBytes = 1;
-	    int firstBytePrefix = ONE_BYTE_UTF8_PFX;
-	    if (m_codepoint >= 0 && m_codepoint <= 0x7f) {
-	        numBytes = 1;
-	        firstBytePrefix = ONE_BYTE_UTF8_PFX;
-	    } else if (m_codepoint >= 0x80 && m_codepoint <= 0x7ff) {
-	        numBytes = 2;
-	        firstBytePrefix = TWO_BYTE_UTF8_PFX;
-	    } else if (m_codepoint >= 0x800 && m_codepoint <= 0xffff) {
-            numBytes = 3;
-            firstBytePrefix = THREE_BYTE_UTF8_PFX;
-        } else if (m_codepoint >= 0x10000 && m_codepoint <= 0x1fffff) {
-            numBytes = 4;
-            firstBytePrefix = FOUR_BYTE_UTF8_PFX;
-        } else if (m_codepoint >= 0x200000 && m_codepoint <= 0x3ffffff) {
-            numBytes = 5;
-            firstBytePrefix = FIVE_BYTE_UTF8_PFX;
-        } else if (m_codepoint >= 0x4000000 && m_codepoint <= 0x7fffffff) {
-            numBytes = 6;
-            firstBytePrefix = SIX_BYTE_UTF8_PFX;
-        } else {
-            throw new IllegalArgumentException(
-                    "Invalid code point : " + m_codepoint);
-        }
-	   
-        char[] utf8 = new char[6];
-        StringBuffer sb = new StringBuffer();
-        int tmpCp = m_codepoint;
-        for (int i=numBytes-1; i >= 0; i--) {
-            switch(i){
-            case 0:
-                // Create the byte using lowest 6 bits of value
-                utf8[i] = (char)(firstBytePrefix | tmpCp);
-                break;
-            case 1:
-            case 2:
-            case 3:
-            case 4:
-            case 5:
-                // Create the byte using lowest 6 bits of value
-                utf8[i] = (char)(SUBSEQ_BYTE_UTF8_PFX | (tmpCp & SUBSEQ_BYTE_UTF8_MASK));
-                // Shift the value right thus removing the lowest 6 bits
-                tmpCp = tmpCp >>> 6;
-                break;
-            }
-        }
-        for (int i=0; i < numBytes; i++) {
-            char a = (char) (utf8[i] & 0x00ff);
-            if (a <= 15) sb.append("0");
-            sb.append(Integer.toHexString(a));
-            sb.append(" ");
-        }
-        return sb.toString().toUpperCase().trim();
+	    return getUTF8Encoding(m_codepoint);
+	}
+	
+    /*
+     * Return a String containing the UTF-8 encoding for the given codepoint.
+     */
+	public static String getUTF8Encoding(int cp) {
+	    return getUTF8Encoding(cp, HexFormatter.Style.SPACE);
+	}
+	
+    /*
+     * Return a String containing the UTF-8 encoding for the given codepoint
+     * formatted in the given style.
+     */
+	public static String getUTF8Encoding(int cp, HexFormatter.Style style) {
+	    long start = Metrics.start();
+	    String s;
+	    EncodingCache cache = s_encodingCache;
+	    if (cache != null && cp >= 0 && cp <= Character.MAX_CODE_POINT) {
+	        s = style == HexFormatter.Style.SPACE ? cache.utf8Text(cp)
+	                : cache.formatUtf8(cp, style);
+	    } else {
+	        byte[] utf8 = new byte[UTF8Codec.MAX_BYTES_PER_CODEPOINT];
+	        int numBytes = UTF8Codec.encode(cp, utf8, 0);
+	        s = HexFormatter.formatBytes(utf8, 0, numBytes, style);
+	    }
+	    s_utf8Time.stop(start);
+	    return s;
+	}
+	
+	/**
+	 * Turn the encoding cache on or off. While it is on the UTF-8 and
+	 * UTF-16 encodings are formatted from tables of precomputed values
+	 * rather than encoded afresh, and the text of recently used code points
+	 * is kept. The tables take about 350KB, and the text around 100 bytes
+	 * for each of up to 16K code points. It starts on if the system
+	 * property ENCODING_CACHE_PROPERTY is "true".
+	 * 
+	 * @param enabled true to use the cache
+	 */
+	public static void setEncodingCacheEnabled(boolean enabled) {
+	    synchronized (Uc2oolModel.class) {
+	        if (!enabled) {
+	            s_encodingCache = null;
+	        } else if (s_encodingCache == null) {
+	            s_encodingCache = new EncodingCache();
+	        }
+	    }
+	}
+	
+	/**
+	 * @return true if the encoding cache is in use
+	 */
+	public static boolean isEncodingCacheEnabled() {
+	    return s_encodingCache != null;
+	}
+	
+	/**
+	 * Encode a run of code points as UTF-8 directly into a ByteBuffer.
+	 * This performs no per code point allocation and is suitable for bulk
+	 * conversions. See <code>UTF8Codec.encodeUtf8</code>.
+	 * 
+	 * @param cps the code points
+	 * @param off the offset of the first code point in cps
+	 * @param len the number of code points
+	 * @param dst the destination buffer
+	 * @return the number of bytes written
+	 */
+	public static int encodeUtf8(int[] cps, int off, int len,
+	                             ByteBuffer dst) {
+	    return UTF8Codec.encodeUtf8(cps, off, len, dst);
+	}
+	
+	/**
+	 * Encode code points as UTF-16 directly into a CharBuffer. This performs
+	 * no per code point allocation and is suitable for bulk conversions.
+	 * See <code>UTF16Codec</code> for byte oriented variants.
+	 * 
+	 * @param cps the code points
+	 * @param dst the destination buffer
+	 * @return the number of chars written
+	 */
+	public static int encodeUtf16(int[] cps, CharBuffer dst) {
+	    return UTF16Codec.encodeUtf16(cps, dst);
+	}
+	
+	/**
+	 * Decode a UTF-16 char sequence into code points in a single pass.
+	 * 
+	 * @param src the chars to decode
+	 * @param dst the destination array
+	 * @return the number of code points written
+	 */
+	public static int decodeUtf16(CharSequence src, int[] dst) {
+	    return UTF16Codec.decodeUtf16(src, dst);
 	}
 	
 	/**
@@ -196,12 +525,20 @@ public class Uc2oolModel {
 	}
 	
 	public String getUnicodeCharacter() {
-	    if (Character.isSupplementaryCodePoint(m_codepoint)) {
+	    return getUnicodeCharacter(m_codepoint);
+	}
+	
+	/**
+	 * Get the given codepoint as a String.
+	 * @return a String holding the character
+	 */
+	public static String getUnicodeCharacter(int cp) {
+	    if (Character.isSupplementaryCodePoint(cp)) {
 	       char[] c = new char[2];
-	       Character.toChars(m_codepoint, c, 0);
+	       Character.toChars(cp, c, 0);
 	       return new StringBuilder().append(c).toString();
 	    }
-	    return new StringBuilder().appendCodePoint(m_codepoint).toString();
+	    return new StringBuilder().appendCodePoint(cp).toString();
 	}
 	
     @Override
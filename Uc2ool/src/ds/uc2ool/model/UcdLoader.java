@@ -0,0 +1,409 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * UcdLoader builds a <code>PropertyDatabase</code> from a local copy of the
+ * Unicode Character Database, so that the tool is not limited to the
+ * Unicode version of the running JDK. It reads UnicodeData.txt, Blocks.txt
+ * and Scripts.txt from a directory, each memory-mapped and parsed in a
+ * single streaming pass.
+ *
+ * The result is cached as a binary snapshot beside the text files when
+ * their directory is writable. Later loads memory-map the snapshot directly
+ * and skip the text parse entirely unless one of the text files has since
+ * changed.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class UcdLoader {
+
+    /**
+     * The name of the binary snapshot written to the UCD directory.
+     */
+    public static final String CACHE_FILE_NAME = "uc2ool.props";
+
+    static final String UNICODE_DATA = "UnicodeData.txt";
+    static final String BLOCKS = "Blocks.txt";
+    static final String SCRIPTS = "Scripts.txt";
+
+    // General category abbreviations to Character.getType() values
+    private static final Map<String, Integer> CATEGORIES = new HashMap<>();
+    static {
+        Object[][] c = {
+            { "Cn", Character.UNASSIGNED },
+            { "Lu", Character.UPPERCASE_LETTER },
+            { "Ll", Character.LOWERCASE_LETTER },
+            { "Lt", Character.TITLECASE_LETTER },
+            { "Lm", Character.MODIFIER_LETTER },
+            { "Lo", Character.OTHER_LETTER },
+            { "Mn", Character.NON_SPACING_MARK },
+            { "Me", Character.ENCLOSING_MARK },
+            { "Mc", Character.COMBINING_SPACING_MARK },
+            { "Nd", Character.DECIMAL_DIGIT_NUMBER },
+            { "Nl", Character.LETTER_NUMBER },
+            { "No", Character.OTHER_NUMBER },
+            { "Zs", Character.SPACE_SEPARATOR },
+            { "Zl", Character.LINE_SEPARATOR },
+            { "Zp", Character.PARAGRAPH_SEPARATOR },
+            { "Cc", Character.CONTROL },
+            { "Cf", Character.FORMAT },
+            { "Co", Character.PRIVATE_USE },
+            { "Cs", Character.SURROGATE },
+            { "Pd", Character.DASH_PUNCTUATION },
+            { "Ps", Character.START_PUNCTUATION },
+            { "Pe", Character.END_PUNCTUATION },
+            { "Pc", Character.CONNECTOR_PUNCTUATION },
+            { "Po", Character.OTHER_PUNCTUATION },
+            { "Sm", Character.MATH_SYMBOL },
+            { "Sc", Character.CURRENCY_SYMBOL },
+            { "Sk", Character.MODIFIER_SYMBOL },
+            { "So", Character.OTHER_SYMBOL },
+            { "Pi", Character.INITIAL_QUOTE_PUNCTUATION },
+            { "Pf", Character.FINAL_QUOTE_PUNCTUATION }
+        };
+        for (Object[] e : c) {
+            CATEGORIES.put((String) e[0], ((Byte) e[1]).intValue());
+        }
+    }
+
+    // Range labels in UnicodeData.txt whose names are the prefix plus the
+    // hex code point (Unicode rule NR2)
+    private static final String[][] GENERATED = {
+        { "CJK Ideograph", "CJK UNIFIED IDEOGRAPH-" },
+        { "Tangut Ideograph", "TANGUT IDEOGRAPH-" },
+        { "Khitan Small Script", "KHITAN SMALL SCRIPT CHARACTER-" },
+        { "Nushu Character", "NUSHU CHARACTER-" }
+    };
+
+    // Hangul syllable name parts (Unicode rule NR1)
+    private static final int S_BASE = 0xAC00;
+    private static final int V_COUNT = 21;
+    private static final int T_COUNT = 28;
+    private static final int S_COUNT = 19 * V_COUNT * T_COUNT;
+    private static final String[] JAMO_L = {
+        "G", "GG", "N", "D", "DD", "R", "M", "B", "BB", "S", "SS", "", "J",
+        "JJ", "C", "K", "T", "P", "H"
+    };
+    private static final String[] JAMO_V = {
+        "A", "AE", "YA", "YAE", "EO", "E", "YEO", "YE", "O", "WA", "WAE",
+        "OE", "YO", "U", "WEO", "WE", "WI", "YU", "EU", "YI", "I"
+    };
+    private static final String[] JAMO_T = {
+        "", "G", "GG", "GS", "N", "NJ", "NH", "D", "L", "LG", "LM", "LB",
+        "LS", "LT", "LP", "LH", "M", "B", "BS", "S", "SS", "NG", "J", "C",
+        "K", "T", "P", "H"
+    };
+
+    private UcdLoader() {
+    }
+
+    /**
+     * Load the database for a UCD directory, using its cached snapshot when
+     * that is newer than all the text files, otherwise parsing the text
+     * files and writing a new snapshot. If the snapshot cannot be written,
+     * as for a read-only system copy of the UCD, the parsed database is
+     * returned from memory instead and the text is parsed again next time.
+     *
+     * @param ucdDir the directory holding the UCD text files
+     * @return the database
+     * @throws IOException if the files cannot be read
+     */
+    public static PropertyDatabase load(Path ucdDir) throws IOException {
+        Path cache = ucdDir.resolve(CACHE_FILE_NAME);
+        if (isFresh(cache, ucdDir)) {
+            return PropertyDatabase.load(cache);
+        }
+        PropertyDatabaseBuilder b = parse(ucdDir);
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(ucdDir, CACHE_FILE_NAME, ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                b.write(out);
+            }
+            Files.move(tmp, cache, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e2) {
+                    // Only a stray temporary file is left behind
+                }
+            }
+            return PropertyDatabase.wrap(b.build());
+        }
+        return PropertyDatabase.load(cache);
+    }
+
+    /**
+     * Parse the UCD text files in a directory.
+     *
+     * @param ucdDir the directory holding the UCD text files
+     * @return a builder holding the parsed properties
+     * @throws IOException if the files cannot be read
+     */
+    public static PropertyDatabaseBuilder parse(Path ucdDir)
+    throws IOException {
+        MappedByteBuffer scripts = map(ucdDir.resolve(SCRIPTS));
+        PropertyDatabaseBuilder b =
+            new PropertyDatabaseBuilder("Unicode " + version(scripts));
+        parseUnicodeData(map(ucdDir.resolve(UNICODE_DATA)), b);
+        parseRanges(map(ucdDir.resolve(BLOCKS)), b, true);
+        parseRanges(scripts, b, false);
+        return b;
+    }
+
+    /*
+     * Is the snapshot present and newer than every source file.
+     */
+    private static boolean isFresh(Path cache, Path ucdDir)
+    throws IOException {
+        if (!Files.isRegularFile(cache)) {
+            return false;
+        }
+        long t = Files.getLastModifiedTime(cache).toMillis();
+        for (String f : new String[] { UNICODE_DATA, BLOCKS, SCRIPTS }) {
+            if (Files.getLastModifiedTime(ucdDir.resolve(f)).toMillis() > t) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            return fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+        }
+    }
+
+    /*
+     * Find the version in a header line such as "# Scripts-15.0.0.txt".
+     */
+    private static String version(MappedByteBuffer b) {
+        int end = 0;
+        while (end < b.limit() && end < 256 && b.get(end) != '\n') {
+            end++;
+        }
+        String first = field(b, 0, end);
+        int dash = first.indexOf('-');
+        int txt = first.lastIndexOf(".txt");
+        if (dash > 0 && txt > dash) {
+            return first.substring(dash + 1, txt);
+        }
+        return "(unknown version)";
+    }
+
+    /*
+     * Parse UnicodeData.txt. Each line is "code;name;category;...;
+     * unicode 1 name;..." with ranges given as a pair of "<Label, First>"
+     * and "<Label, Last>" lines.
+     */
+    private static void parseUnicodeData(MappedByteBuffer b,
+                                         PropertyDatabaseBuilder db) {
+        int[] f = new int[16];   // field start offsets, and one past the end
+        int rangeStart = -1;
+        int pos = 0;
+        int limit = b.limit();
+        while (pos < limit) {
+            int eol = pos;
+            while (eol < limit && b.get(eol) != '\n') {
+                eol++;
+            }
+            int n = fields(b, pos, eol, f);
+            if (n >= 3) {
+                int cp = hex(b, f[0], f[1] - 1);
+                Integer gc = CATEGORIES.get(field(b, f[2], f[3] - 1));
+                int category = gc == null ? Character.UNASSIGNED : gc;
+                boolean bracket = b.get(f[1]) == '<';
+                if (bracket && endsWith(b, f[2] - 1, "First>")) {
+                    rangeStart = cp;
+                } else if (bracket && endsWith(b, f[2] - 1, "Last>") &&
+                           rangeStart >= 0) {
+                    String label = field(b, f[1] + 1, f[2] - 1);
+                    for (int c = rangeStart; c <= cp; c++) {
+                        db.setCategory(c, category);
+                    }
+                    rangeNames(db, label, rangeStart, cp);
+                    rangeStart = -1;
+                } else {
+                    db.setCategory(cp, category);
+                    if (!bracket) {
+                        db.setName(cp, field(b, f[1], f[2] - 1));
+                    } else if (n > 10 && f[11] - 1 > f[10]) {
+                        // Controls are known by their Unicode 1 names
+                        db.setName(cp, field(b, f[10], f[11] - 1));
+                    }
+                }
+            }
+            pos = eol + 1;
+        }
+    }
+
+    /*
+     * Name the code points of a UnicodeData.txt range.
+     */
+    private static void rangeNames(PropertyDatabaseBuilder db, String label,
+                                   int start, int end) {
+        if (label.startsWith("Hangul Syllable")) {
+            for (int c = start; c <= end; c++) {
+                int s = c - S_BASE;
+                if (s >= 0 && s < S_COUNT) {
+                    db.setName(c, "HANGUL SYLLABLE " +
+                               JAMO_L[s / (V_COUNT * T_COUNT)] +
+                               JAMO_V[(s % (V_COUNT * T_COUNT)) / T_COUNT] +
+                               JAMO_T[s % T_COUNT]);
+                }
+            }
+            return;
+        }
+        for (String[] g : GENERATED) {
+            if (label.startsWith(g[0])) {
+                db.addGeneratedRun(start, end, g[1]);
+                return;
+            }
+        }
+    }
+
+    /*
+     * Parse Blocks.txt or Scripts.txt, whose lines are
+     * "start[..end]; value # comment".
+     */
+    private static void parseRanges(MappedByteBuffer b,
+                                    PropertyDatabaseBuilder db,
+                                    boolean blocks) {
+        int pos = 0;
+        int limit = b.limit();
+        while (pos < limit) {
+            int eol = pos;
+            while (eol < limit && b.get(eol) != '\n') {
+                eol++;
+            }
+            int semi = indexOf(b, pos, eol, ';');
+            if (semi > pos && b.get(pos) != '#') {
+                int dots = indexOf(b, pos, semi, '.');
+                int start = hex(b, pos, dots < 0 ? semi : dots);
+                int end = dots < 0 ? start : hex(b, dots + 2, semi);
+                int hash = indexOf(b, semi, eol, '#');
+                String value = field(b, semi + 1, hash < 0 ? eol : hash);
+                value = blocks ? blockName(value) : normalize(value);
+                for (int c = start; c <= end; c++) {
+                    if (blocks) {
+                        db.setBlock(c, value);
+                    } else {
+                        db.setScript(c, value);
+                    }
+                }
+            }
+            pos = eol + 1;
+        }
+    }
+
+    /*
+     * Convert a Blocks.txt name to the name of its
+     * <code>Character.UnicodeBlock</code>, which is not always the upper
+     * cased UCD name: "Greek and Coptic" is GREEK. Blocks the JDK does not
+     * know are normalized.
+     */
+    private static String blockName(String s) {
+        try {
+            return Character.UnicodeBlock.forName(s).toString();
+        } catch (IllegalArgumentException e) {
+            return normalize(s);
+        }
+    }
+
+    /*
+     * Convert a UCD value such as "Latin-1 Supplement" or "Old_Italic" to
+     * the Java enum style, "LATIN_1_SUPPLEMENT" or "OLD_ITALIC".
+     */
+    private static String normalize(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            sb.append(c == ' ' || c == '-' ? '_' : Character.toUpperCase(c));
+        }
+        return sb.toString();
+    }
+
+    /*
+     * Record the start of each ';' separated field of a line in f, with one
+     * extra entry one past the end of the line. Returns the field count.
+     */
+    private static int fields(MappedByteBuffer b, int pos, int eol, int[] f) {
+        int n = 0;
+        f[n++] = pos;
+        for (int i = pos; i < eol && n < f.length - 1; i++) {
+            if (b.get(i) == ';') {
+                f[n++] = i + 1;
+            }
+        }
+        f[n] = eol + 1;
+        return n;
+    }
+
+    private static int indexOf(MappedByteBuffer b, int from, int to,
+                               int c) {
+        for (int i = from; i < to; i++) {
+            if (b.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean endsWith(MappedByteBuffer b, int end, String s) {
+        int start = end - s.length();
+        if (start < 0) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (b.get(start + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Parse hex digits in [from, to), ignoring surrounding white space
+    private static int hex(MappedByteBuffer b, int from, int to) {
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            int d = Character.digit(b.get(i), 16);
+            if (d >= 0) {
+                v = (v << 4) | d;
+            }
+        }
+        return v;
+    }
+
+    // Extract the trimmed ASCII text in [from, to)
+    private static String field(MappedByteBuffer b, int from, int to) {
+        while (from < to && b.get(from) <= ' ') {
+            from++;
+        }
+        while (to > from && b.get(to - 1) <= ' ') {
+            to--;
+        }
+        byte[] s = new byte[to - from];
+        for (int i = 0; i < s.length; i++) {
+            s[i] = b.get(from + i);
+        }
+        return new String(s, StandardCharsets.US_ASCII);
+    }
+}
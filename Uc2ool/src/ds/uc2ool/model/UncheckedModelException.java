@@ -29,4 +29,17 @@ public class UncheckedModelException extends Uc2oolRuntimeException {
     UncheckedModelException(String msgKey, Object... args) {
         super(msgKey, args);
     }
+    
+    /*
+     * Constructor which can leave out the stack trace, used for invalid
+     * user input since where it was found is of no interest.
+     * 
+     * @param stackTrace false to skip filling in the stack trace
+     * @param msgKey the resource bundle message key for the message
+     * @param args arguments required by the message substitution string
+     */
+    UncheckedModelException(boolean stackTrace, String msgKey,
+                            Object... args) {
+        super(stackTrace, msgKey, args);
+    }
 }
@@ -0,0 +1,351 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * UnicodeNameIndex is an in memory index of Unicode character names serving
+ * code point to name and name to code point lookups, the latter both exact
+ * and by prefix, in logarithmic time.
+ *
+ * The index is built once, on first use, from the names held in the shared
+ * <code>PropertyDatabase</code> and is immutable thereafter so it may be
+ * shared freely between threads. To keep it compact the explicit names are
+ * held as ASCII bytes in a single array. Generated names, such as those of
+ * CJK ideographs and the private use areas, are not stored at all; only the
+ * code point ranges and name prefixes are kept and the names are rebuilt on
+ * demand.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class UnicodeNameIndex {
+
+    private static volatile UnicodeNameIndex s_instance;
+
+    // The most hex digits in a generated name, as in 10FFFF
+    private static final int MAX_HEX_DIGITS = 6;
+
+    // Explicitly named code points in ascending order, their names as
+    // ASCII bytes and the offset of each name, with a final end offset.
+    private final int[] m_codepoints;
+    private final byte[] m_names;
+    private final int[] m_nameOffsets;
+
+    // Indices into m_codepoints in ascending name order
+    private final int[] m_byName;
+
+    // Runs of code points with generated names and their name prefixes
+    private final int[] m_genStart;
+    private final int[] m_genEnd;
+    private final String[] m_genPrefix;
+
+    /*
+     * Build the index from the name tables of a property database.
+     */
+    private UnicodeNameIndex(PropertyDatabase db) {
+        int count = db.nameCount();
+        m_codepoints = new int[count];
+        m_nameOffsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            m_codepoints[i] = db.nameCodePoint(i);
+            m_nameOffsets[i] = db.nameOffset(i);
+        }
+        m_nameOffsets[count] = db.nameOffset(count);
+        m_names = new byte[m_nameOffsets[count]];
+        db.nameBytes(m_names);
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compareNames(a, b));
+        m_byName = new int[count];
+        for (int i = 0; i < count; i++) {
+            m_byName[i] = order[i];
+        }
+
+        m_genStart = db.generatedStarts();
+        m_genEnd = db.generatedEnds();
+        m_genPrefix = db.generatedPrefixes();
+    }
+
+    /**
+     * Get the shared index, building it on first use.
+     *
+     * @return the index
+     */
+    public static UnicodeNameIndex getInstance() {
+        UnicodeNameIndex idx = s_instance;
+        if (idx == null) {
+            synchronized (UnicodeNameIndex.class) {
+                idx = s_instance;
+                if (idx == null) {
+                    s_instance = idx =
+                        new UnicodeNameIndex(PropertyDatabase.getInstance());
+                }
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * Get the shared index only if it has already been built. This lets
+     * single lookups avoid the cost of the build.
+     *
+     * @return the index or null
+     */
+    public static UnicodeNameIndex getIfBuilt() {
+        return s_instance;
+    }
+
+    /*
+     * Discard the shared index so the next use rebuilds it from the
+     * current property database.
+     */
+    static void invalidate() {
+        synchronized (UnicodeNameIndex.class) {
+            s_instance = null;
+        }
+    }
+
+    /**
+     * Get the name of a code point. For a database built from the JDK the
+     * result is identical to <code>Character.getName()</code>.
+     *
+     * @param cp the code point
+     * @return the name or null if the code point is unassigned
+     * @throws IllegalArgumentException if cp is not a valid code point
+     */
+    public String getName(int cp) {
+        if (!Character.isValidCodePoint(cp)) {
+            throw new IllegalArgumentException("Invalid code point : " + cp);
+        }
+        int i = Arrays.binarySearch(m_codepoints, cp);
+        if (i >= 0) {
+            return nameAt(i);
+        }
+        int g = generatedRun(cp);
+        if (g >= 0) {
+            return m_genPrefix[g] + Integer.toHexString(cp).toUpperCase(
+                                                           Locale.ROOT);
+        }
+        return null;
+    }
+
+    /**
+     * Look up a code point by its exact name, ignoring case.
+     *
+     * @param name the character name
+     * @return the code point or -1 if there is no such name
+     */
+    public int codePointOf(String name) {
+        String n = name.trim().toUpperCase(Locale.ROOT);
+        int i = lowerBound(n);
+        if (i < m_byName.length && compareTo(m_byName[i], n, false) == 0) {
+            return m_codepoints[m_byName[i]];
+        }
+        // Try a generated name, the last word being the hex code point
+        int sp = Math.max(n.lastIndexOf(' '), n.lastIndexOf('-'));
+        if (sp > 0 && sp < n.length() - 1 && n.length() - sp <= 7) {
+            try {
+                int cp = Integer.parseInt(n.substring(sp + 1), 16);
+                int g = generatedRun(cp);
+                if (g >= 0 && m_genPrefix[g].equals(n.substring(0, sp + 1))) {
+                    return cp;
+                }
+            } catch (NumberFormatException e) {
+                // Not a generated name
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find code points whose names start with a prefix, ignoring case.
+     * Explicitly named characters are returned first in name order,
+     * followed by any with generated names in code point order.
+     *
+     * @param prefix the name prefix
+     * @param limit the maximum number of results
+     * @return the matching code points
+     * @throws IllegalArgumentException if limit is negative
+     */
+    public int[] findByPrefix(String prefix, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid limit : " + limit);
+        }
+        String p = prefix.toUpperCase(Locale.ROOT);
+        int[] result = new int[Math.min(limit, 256)];
+        int n = 0;
+        for (int i = lowerBound(p);
+             i < m_byName.length && n < limit &&
+             compareTo(m_byName[i], p, true) == 0;
+             i++) {
+            if (n == result.length) {
+                result = Arrays.copyOf(result, Math.min(limit, n * 2));
+            }
+            result[n++] = m_codepoints[m_byName[i]];
+        }
+        for (int g = 0; g < m_genStart.length && n < limit; g++) {
+            String gp = m_genPrefix[g];
+            int digits = p.length() - gp.length();
+            if (digits <= 0 ? !gp.startsWith(p) : !p.startsWith(gp)) {
+                continue;
+            }
+            digits = Math.max(digits, 0);
+            long value = hexValue(p, gp.length());
+            if (value < 0) {
+                continue;
+            }
+            // The code points of d hex digits, which has no leading zero,
+            // starting with the given digits form a range, and the ranges
+            // ascend with d
+            for (int d = Math.max(digits, 1); d <= MAX_HEX_DIGITS && n < limit;
+                 d++) {
+                long scale = 1L << (4 * (d - digits));
+                long lo = Math.max(Math.max(value * scale, 1L << (4 * d - 4)),
+                                   m_genStart[g]);
+                long hi = Math.min((value + 1) * scale - 1, m_genEnd[g]);
+                for (long cp = lo; cp <= hi && n < limit; cp++) {
+                    if (n == result.length) {
+                        result = Arrays.copyOf(result,
+                                               Math.min(limit, n * 2));
+                    }
+                    result[n++] = (int) cp;
+                }
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * @return the number of explicitly named code points held
+     */
+    public int size() {
+        return m_codepoints.length;
+    }
+
+    /*
+     * Get the code point of the i'th explicit name.
+     */
+    int codePointAt(int i) {
+        return m_codepoints[i];
+    }
+
+    /*
+     * Get the length of the i'th explicit name.
+     */
+    int nameLength(int i) {
+        return m_nameOffsets[i + 1] - m_nameOffsets[i];
+    }
+
+    /*
+     * Get the j'th ASCII character of the i'th explicit name.
+     */
+    int nameCharAt(int i, int j) {
+        return m_names[m_nameOffsets[i] + j] & 0xff;
+    }
+
+    // The value of the upper case hex digits of s from an index, 0 if
+    // there are none or -1 if there is anything else
+    private static long hexValue(String s, int from) {
+        if (s.length() - from > MAX_HEX_DIGITS) {
+            return -1;
+        }
+        long v = 0;
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                v = (v << 4) | (c - '0');
+            } else if (c >= 'A' && c <= 'F') {
+                v = (v << 4) | (c - 'A' + 10);
+            } else {
+                return -1;
+            }
+        }
+        return v;
+    }
+
+    // Find the generated name run holding cp, or -1
+    private int generatedRun(int cp) {
+        int lo = 0;
+        int hi = m_genStart.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cp < m_genStart[mid]) {
+                hi = mid - 1;
+            } else if (cp > m_genEnd[mid]) {
+                lo = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // Decode the i'th explicit name
+    String nameAt(int i) {
+        int start = m_nameOffsets[i];
+        char[] c = new char[m_nameOffsets[i + 1] - start];
+        for (int j = 0; j < c.length; j++) {
+            c[j] = (char) m_names[start + j];
+        }
+        return new String(c);
+    }
+
+    // Index in m_byName of the first name not less than s
+    private int lowerBound(String s) {
+        int lo = 0;
+        int hi = m_byName.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareTo(m_byName[mid], s, false) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /*
+     * Compare the i'th explicit name with s. If prefix is true a name that
+     * starts with s compares as equal.
+     */
+    private int compareTo(int i, String s, boolean prefix) {
+        int start = m_nameOffsets[i];
+        int len = m_nameOffsets[i + 1] - start;
+        int n = Math.min(len, s.length());
+        for (int j = 0; j < n; j++) {
+            int d = (m_names[start + j] & 0xff) - s.charAt(j);
+            if (d != 0) {
+                return d;
+            }
+        }
+        if (prefix && len >= s.length()) {
+            return 0;
+        }
+        return len - s.length();
+    }
+
+    // Compare the a'th and b'th explicit names
+    private int compareNames(int a, int b) {
+        int sa = m_nameOffsets[a];
+        int la = m_nameOffsets[a + 1] - sa;
+        int sb = m_nameOffsets[b];
+        int lb = m_nameOffsets[b + 1] - sb;
+        int n = Math.min(la, lb);
+        for (int j = 0; j < n; j++) {
+            int d = (m_names[sa + j] & 0xff) - (m_names[sb + j] & 0xff);
+            if (d != 0) {
+                return d;
+            }
+        }
+        return la - lb;
+    }
+}
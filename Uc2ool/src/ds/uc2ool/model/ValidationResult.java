@@ -0,0 +1,97 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import ds.uc2ool.model.Uc2oolModel.InputType;
+
+/**
+ * ValidationResult is the outcome of checking a code point input with
+ * <code>Uc2oolModel.validate()</code>: either the code point, or the reason
+ * the input is invalid. The reason is kept as a message key and only
+ * formatted into text by <code>getMessage()</code>, which gives the same
+ * text the <code>UncheckedModelException</code> from
+ * <code>Uc2oolModel.parseCodePoint()</code> would.
+ *
+ * Instances are immutable.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class ValidationResult {
+
+    private final String m_input;
+    private final InputType m_type;
+    private final int m_codepoint;
+
+    ValidationResult(String input, InputType type, int codepoint) {
+        m_input = input;
+        m_type = type;
+        m_codepoint = codepoint;
+    }
+
+    /**
+     * @return true if the input is a valid code point
+     */
+    public boolean isValid() {
+        return m_codepoint != Uc2oolModel.INVALID;
+    }
+
+    /**
+     * @return the code point, or <code>Uc2oolModel.INVALID</code>
+     */
+    public int getCodePoint() {
+        return m_codepoint;
+    }
+
+    /**
+     * @return the input checked
+     */
+    public String getInput() {
+        return m_input;
+    }
+
+    /**
+     * @return how the input was interpreted
+     */
+    public InputType getInputType() {
+        return m_type;
+    }
+
+    /**
+     * @return the resource bundle key of the message describing invalid
+     * input, or null if the input is valid
+     */
+    public String getMessageKey() {
+        return isValid() ? null : Uc2oolModel.messageKey(m_type);
+    }
+
+    /**
+     * @return the localized message describing invalid input, or null if
+     * the input is valid
+     */
+    public String getMessage() {
+        return isValid() ? null : toException().getLocalizedMessage();
+    }
+
+    /**
+     * Get an exception describing invalid input, for code which reports
+     * errors by throwing. It has no stack trace.
+     *
+     * @return the exception
+     * @throws IllegalStateException if the input is valid
+     */
+    public UncheckedModelException toException() {
+        if (isValid()) {
+            throw new IllegalStateException("Valid input " + m_input);
+        }
+        return new UncheckedModelException(false, getMessageKey(), m_input);
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationResult [m_input=" + m_input + ", m_type=" +
+               m_type + ", m_codepoint=" + m_codepoint + "]";
+    }
+}
@@ -20,6 +20,11 @@ public class Messages extends ListResourceBundle {
     static final Object[][] m_contents = {
             { "INV_DEC_CP", "Invalid decimal code point %1$s." },
             { "INV_HEX_CP", "Invalid hexadecimal code point %1$s." },
+            { "INV_UTF8", "Invalid UTF-8 encoding %1$s." },
+            { "INV_CHAR", "Input %1$s is not a single character." },
+            { "INV_NAME", "No character is named %1$s." },
+            { "PROPS_LOAD_FAILED",
+              "Unable to load the property database %1$s: %2$s" },
             
             // Fatal errors requiring development, or at least code,
             // investigation
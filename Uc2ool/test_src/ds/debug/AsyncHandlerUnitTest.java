@@ -0,0 +1,156 @@
+package ds.debug;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that {@link AsyncHandler} writes every record, in order per
+ * thread, rotates its files and drops records only when told to.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class AsyncHandlerUnitTest {
+
+    private Path m_dir;
+
+    @Before
+    public void setUp() throws IOException {
+        m_dir = Files.createTempDirectory("AsyncHandlerUnitTest");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (File f : m_dir.toFile().listFiles()) {
+            f.delete();
+        }
+        Files.delete(m_dir);
+    }
+
+    private static LogRecord record(String message) {
+        LogRecord r = new LogRecord(Level.INFO, message);
+        r.setSourceClassName("AsyncHandlerUnitTest");
+        r.setSourceMethodName("test");
+        return r;
+    }
+
+    @Test
+    public void testEveryRecordInOrder() throws Exception {
+        final AsyncHandler h = new AsyncHandler(
+            m_dir + "/log%g.txt", 0, 1, false, 64,
+            AsyncHandler.OverflowPolicy.BLOCK, 50);
+        final int threads = 4;
+        final int records = 5000;
+        Thread[] t = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int id = i;
+            t[i] = new Thread(() -> {
+                for (int n = 0; n < records; n++) {
+                    h.publish(record(id + ":" + n));
+                }
+            });
+            t[i].start();
+        }
+        for (Thread thread : t) {
+            thread.join();
+        }
+        h.flush();
+        List<String> lines = Files.readAllLines(m_dir.resolve("log0.txt"),
+                                                StandardCharsets.UTF_8);
+        assertTrue("" + lines.size(), lines.size() == threads * records);
+        int[] next = new int[threads];
+        for (String line : lines) {
+            String m = line.substring(line.lastIndexOf(' ') + 1);
+            int id = Integer.parseInt(m.substring(0, m.indexOf(':')));
+            int n = Integer.parseInt(m.substring(m.indexOf(':') + 1));
+            assertTrue(line, n == next[id]++);
+        }
+        assertTrue(h.getDroppedCount() == 0);
+        h.close();
+        // Ignored once closed
+        h.publish(record("late"));
+        assertTrue(Files.readAllLines(m_dir.resolve("log0.txt"),
+                   StandardCharsets.UTF_8).size() == threads * records);
+    }
+
+    @Test
+    public void testRotation() throws IOException {
+        AsyncHandler h = new AsyncHandler(m_dir + "/log%g.txt", 1000, 3,
+                                          false);
+        for (int n = 0; n < 200; n++) {
+            h.publish(record("message " + n));
+        }
+        h.close();
+        for (int g = 0; g < 3; g++) {
+            File f = m_dir.resolve("log" + g + ".txt").toFile();
+            assertTrue(f.exists() && f.length() > 0 && f.length() <= 1000);
+        }
+        assertTrue(!m_dir.resolve("log3.txt").toFile().exists());
+        List<String> lines = Files.readAllLines(m_dir.resolve("log0.txt"),
+                                                StandardCharsets.UTF_8);
+        assertTrue(lines.get(lines.size() - 1).endsWith("message 199"));
+    }
+
+    @Test
+    public void testDrop() throws IOException {
+        AsyncHandler h = new AsyncHandler(
+            m_dir + "/log.txt", 0, 1, false, 2,
+            AsyncHandler.OverflowPolicy.DROP, 1000);
+        int records = 100000;
+        for (int n = 0; n < records; n++) {
+            h.publish(record("message " + n));
+        }
+        h.close();
+        List<String> lines = Files.readAllLines(m_dir.resolve("log.txt"),
+                                                StandardCharsets.UTF_8);
+        long dropped = h.getDroppedCount();
+        long notices = 0;
+        for (String line : lines) {
+            if (line.contains("log records dropped")) {
+                notices++;
+            }
+        }
+        assertTrue(dropped > 0 && notices > 0);
+        assertTrue(lines.size() - notices + dropped == records);
+    }
+
+    @Test
+    public void testFileNames() throws IOException {
+        AsyncHandler h = new AsyncHandler(m_dir + "/a%%b%g", 0, 2, false);
+        assertTrue(h.file(1).getPath().equals(m_dir + "/a%b1"));
+        h.close();
+        h = new AsyncHandler(m_dir + "/plain", 0, 2, false);
+        assertTrue(h.file(0).getPath().equals(m_dir + "/plain.0"));
+        h.close();
+        h = new AsyncHandler("%t/x", 0, 1, false);
+        assertTrue(h.file(0).getPath().equals(
+            new File(System.getProperty("java.io.tmpdir"), "x").getPath()));
+        h.close();
+        h.file(0).delete();
+    }
+
+    @Test
+    public void testFlushMillis() throws IOException {
+        // An idle writer parks for flushMillis, so 0 would spin
+        try {
+            new AsyncHandler(m_dir + "/log.txt", 0, 1, false, 2,
+                             AsyncHandler.OverflowPolicy.BLOCK, 0);
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            assertTrue(m_dir.toFile().list().length == 0);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package ds.debug;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.ErrorManager;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that records written by {@link BinaryTraceHandler} are read back
+ * by {@link BinaryTraceReader} as the same text.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class BinaryTraceUnitTest {
+
+    private File m_file;
+
+    @Before
+    public void setUp() throws IOException {
+        m_file = File.createTempFile("BinaryTraceUnitTest", ".trace");
+    }
+
+    @After
+    public void tearDown() {
+        m_file.delete();
+    }
+
+    private static LogRecord record(Level level, String cls, String method,
+                                    String message, Object... params) {
+        LogRecord r = new LogRecord(level, message);
+        r.setMillis(1430000000000L + level.intValue());
+        r.setSourceClassName(cls);
+        r.setSourceMethodName(method);
+        r.setThreadID(7);
+        if (params.length > 0) {
+            r.setParameters(params);
+        }
+        return r;
+    }
+
+    private List<String> read(File f) throws IOException {
+        return read(f, BinaryTraceReader.WINDOW_SIZE);
+    }
+
+    private List<String> read(File f, int windowSize) throws IOException {
+        DebugFormatter formatter = new DebugFormatter();
+        List<String> lines = new ArrayList<>();
+        try (BinaryTraceReader reader = new BinaryTraceReader(f, windowSize)) {
+            for (LogRecord r; (r = reader.next()) != null;) {
+                lines.add(formatter.format(r));
+            }
+            assertTrue(reader.next() == null);
+        }
+        return lines;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<LogRecord> records = new ArrayList<>();
+        records.add(record(Level.INFO, "a.B", "run", "plain message"));
+        records.add(record(Level.FINEST, "a.B", "run", "{0} then {1}",
+                           "first", null));
+        records.add(record(Level.FINEST, "a.B", "stop", "{0} then {1}",
+                           Integer.valueOf(2), "caf\u00e9 \ud83d\ude00"));
+        records.add(record(Level.SEVERE, null, null, null));
+        records.add(record(Level.parse("850"), "c.D", "x", "custom level"));
+        // Small regions so that records and names cross several
+        BinaryTraceHandler h =
+            new BinaryTraceHandler(m_file.getPath(), 0, 1, 64);
+        DebugFormatter f = new DebugFormatter();
+        List<String> expected = new ArrayList<>();
+        for (int pass = 0; pass < 20; pass++) {
+            for (LogRecord r : records) {
+                h.publish(r);
+                expected.add(f.format(r));
+            }
+        }
+        // Readable before it is closed, ending at the zeros past the end
+        assertTrue(read(m_file).equals(expected));
+        long mapped = m_file.length();
+        h.close();
+        assertTrue(m_file.length() < mapped);
+        List<String> lines = read(m_file);
+        assertTrue(lines.equals(expected));
+        // Read through windows smaller than some entries
+        assertTrue(read(m_file, 40).equals(expected));
+        assertTrue(lines.get(1).endsWith("a.B.run FINEST first then null\n"));
+        // Ignored once closed
+        h.publish(records.get(0));
+        assertTrue(read(m_file).size() == expected.size());
+    }
+
+    @Test
+    public void testDebugLoggerRecords() throws IOException {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.FINEST);
+        BinaryTraceHandler h = new BinaryTraceHandler(m_file);
+        logger.addHandler(h);
+        Object model = new Object() {
+            @Override
+            public String toString() {
+                return "Uc2ool [m_input=41]";
+            }
+        };
+        for (int i = 0; i < 1000; i++) {
+            DebugLogger.log(logger, Level.FINEST, "ds.uc2ool.Model",
+                            "setInput", "{0}", model);
+        }
+        h.close();
+        List<String> lines = read(m_file);
+        assertTrue(lines.size() == 1000);
+        assertTrue(lines.get(999).endsWith(
+            "ds.uc2ool.Model.setInput FINEST Uc2ool [m_input=41]\n"));
+        // The names and pattern are written once, leaving 30 bytes a
+        // record besides the text of its argument
+        assertTrue("" + m_file.length(),
+                   m_file.length() < (30 + 4 + 19) * 1000 + 100);
+    }
+
+    @Test
+    public void testRotation() throws IOException {
+        File dir = m_file.getParentFile();
+        String pattern = new File(dir, "BinaryTraceUnitTest%g.trace")
+            .getPath();
+        DebugFormatter f = new DebugFormatter();
+        List<String> expected = new ArrayList<>();
+        BinaryTraceHandler h = new BinaryTraceHandler(pattern, 2000, 3, 256);
+        try {
+            for (int i = 0; i < 500; i++) {
+                LogRecord r = record(Level.FINE, "a.B", "run",
+                                     "record {0}", Integer.valueOf(i));
+                h.publish(r);
+                expected.add(f.format(r));
+            }
+            h.close();
+            assertTrue(!h.file(3).exists());
+            // Each file stands alone and holds the newest records
+            List<String> lines = new ArrayList<>();
+            for (int g = 2; g >= 0; g--) {
+                File file = h.file(g);
+                assertTrue(file + " " + file.length(),
+                           file.length() < 2000 + 100);
+                lines.addAll(read(file));
+            }
+            assertTrue(lines.size() > 100);
+            assertTrue(lines.equals(expected.subList(
+                expected.size() - lines.size(), expected.size())));
+
+            // A new handler keeps the trace of the last
+            List<String> last = read(h.file(0));
+            h = new BinaryTraceHandler(pattern, 2000, 3, 256);
+            h.publish(record(Level.INFO, "a.B", "run", "next run"));
+            h.close();
+            assertTrue(read(h.file(1)).equals(last));
+            assertTrue(read(h.file(0)).size() == 1);
+        } finally {
+            for (int g = 0; g < 3; g++) {
+                h.file(g).delete();
+            }
+        }
+    }
+
+    @Test
+    public void testRenameFailureReported() throws IOException {
+        File dir = m_file.getParentFile();
+        String pattern = new File(dir, "BinaryTraceUnitTestR%g.trace")
+            .getPath();
+        // A directory that cannot be deleted in the way of generation 1
+        File blocked = new File(dir, "BinaryTraceUnitTestR1.trace");
+        File inside = new File(blocked, "x");
+        assertTrue(blocked.mkdir() && inside.createNewFile());
+        final List<String> errors = new ArrayList<>();
+        BinaryTraceHandler h = new BinaryTraceHandler(pattern, 200, 2, 64);
+        try {
+            h.setErrorManager(new ErrorManager() {
+                @Override
+                public void error(String msg, Exception e, int code) {
+                    errors.add(code + " " + e.getMessage());
+                }
+            });
+            DebugFormatter f = new DebugFormatter();
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                LogRecord r = record(Level.FINE, "a.B", "run",
+                                     "record {0}", Integer.valueOf(i));
+                h.publish(r);
+                expected.add(f.format(r));
+            }
+            // Too small to rotate, so certain to be in the first file
+            LogRecord last = record(Level.INFO, "a.B", "run", "last");
+            h.publish(last);
+            expected.add(f.format(last));
+            h.close();
+            assertTrue(errors.toString(), !errors.isEmpty() &&
+                       errors.get(0).startsWith(
+                           ErrorManager.GENERIC_FAILURE + " Cannot rename"));
+            // The first file was started again, so still holds the newest
+            List<String> lines = read(h.file(0));
+            assertTrue(!lines.isEmpty() && lines.equals(expected.subList(
+                expected.size() - lines.size(), expected.size())));
+        } finally {
+            inside.delete();
+            blocked.delete();
+            h.file(0).delete();
+        }
+    }
+
+    @Test
+    public void testNotATrace() throws IOException {
+        try {
+            new BinaryTraceReader(m_file);
+            assertTrue(false);
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("not a trace file"));
+        }
+    }
+}
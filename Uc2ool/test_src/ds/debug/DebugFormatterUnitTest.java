@@ -0,0 +1,86 @@
+package ds.debug;
+
+import static org.junit.Assert.assertTrue;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.junit.Test;
+
+/**
+ * Tests that {@link DebugFormatter} gives the lines it always has, from
+ * any number of threads at once.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class DebugFormatterUnitTest {
+
+    // The line as formatted before DebugFormatter was made thread-safe
+    private static String expected(LogRecord r) {
+        SimpleDateFormat f =
+            new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+        return f.format(new Date(r.getMillis())) + " " +
+               r.getSourceClassName() + "." + r.getSourceMethodName() + " " +
+               r.getLevel() + " " + r.getMessage() + "\n";
+    }
+
+    private static LogRecord record(long millis, String message) {
+        LogRecord r = new LogRecord(Level.FINEST, message);
+        r.setMillis(millis);
+        r.setSourceClassName("ds.debug.DebugFormatterUnitTest");
+        r.setSourceMethodName("record");
+        return r;
+    }
+
+    @Test
+    public void testMatchesSimpleDateFormat() {
+        DebugFormatter f = new DebugFormatter();
+        long[] times = { 0, 1, 999, 1000, 1001, -1, -999, -1000, -1001,
+                         1430000000007L, 1430000000070L, 1430000000700L,
+                         1430000000999L, 1430000001000L,
+                         System.currentTimeMillis() };
+        for (long t : times) {
+            LogRecord r = record(t, "message " + t);
+            String line = f.format(r);
+            assertTrue(line, line.equals(expected(r)));
+        }
+        // A long message is formatted whole
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append(i % 10);
+        }
+        LogRecord r = record(5, sb.toString());
+        assertTrue(f.format(r).equals(expected(r)));
+        r = record(6, "short");
+        assertTrue(f.format(r).equals(expected(r)));
+    }
+
+    @Test
+    public void testConcurrentThreads() throws InterruptedException {
+        final DebugFormatter f = new DebugFormatter();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] t = new Thread[4];
+        for (int i = 0; i < t.length; i++) {
+            final long base = 1430000000000L + i * 86400000L * 97;
+            t[i] = new Thread(() -> {
+                for (int n = 0; n < 20000 && failure.get() == null; n++) {
+                    LogRecord r = record(base + n * 37L, "n" + n);
+                    String line = f.format(r);
+                    if (!line.equals(expected(r))) {
+                        failure.set(line + " != " + expected(r));
+                    }
+                }
+            });
+            t[i].start();
+        }
+        for (Thread thread : t) {
+            thread.join();
+        }
+        assertTrue(failure.get(), failure.get() == null);
+    }
+}
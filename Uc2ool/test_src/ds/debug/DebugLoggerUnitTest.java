@@ -0,0 +1,109 @@
+package ds.debug;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the lazy logging helpers of {@link DebugLogger}: the messages they
+ * build when a level is enabled, and that they allocate nothing when it
+ * is not.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class DebugLoggerUnitTest {
+
+    private static final String CLASS_NAME =
+        DebugLoggerUnitTest.class.getName();
+    private static final Supplier<String> MESSAGE = () -> "supplied";
+
+    private Logger m_logger;
+    private final List<LogRecord> m_records = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        m_logger = Logger.getAnonymousLogger();
+        m_logger.setUseParentHandlers(false);
+        m_logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord r) {
+                m_records.add(r);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    @Test
+    public void testMessages() {
+        m_logger.setLevel(Level.FINEST);
+        DebugLogger.log(m_logger, Level.FINEST, CLASS_NAME, "a", MESSAGE);
+        DebugLogger.log(m_logger, Level.FINE, CLASS_NAME, "b", "x={0}.",
+                        Integer.valueOf(7));
+        DebugLogger.log(m_logger, Level.INFO, CLASS_NAME, "c",
+                        "{1} {0} {0}{2}{x", "p", null);
+        DebugLogger.log(null, Level.SEVERE, CLASS_NAME, "d", MESSAGE);
+        assertTrue(m_records.size() == 3);
+        LogRecord r = m_records.get(0);
+        assertTrue(r.getLevel() == Level.FINEST &&
+                   r.getMessage().equals("supplied") &&
+                   r.getSourceClassName().equals(CLASS_NAME) &&
+                   r.getSourceMethodName().equals("a"));
+        DebugFormatter f = new DebugFormatter();
+        assertTrue(f.formatMessage(m_records.get(1)).equals("x=7."));
+        assertTrue(m_records.get(1).getSourceMethodName().equals("b"));
+        // The arguments are kept as text apart from the pattern
+        assertTrue(m_records.get(2).getMessage().equals("{1} {0} {0}{2}{x"));
+        assertTrue(m_records.get(2).getParameters()[1].equals("null"));
+        assertTrue(f.formatMessage(m_records.get(2)),
+                   f.formatMessage(m_records.get(2)).equals("null p p{2}{x"));
+        assertTrue(f.format(m_records.get(2)).endsWith(
+            CLASS_NAME + ".c INFO null p p{2}{x\n"));
+    }
+
+    @Test
+    public void testNoAllocationWhenDisabled() {
+        m_logger.setLevel(Level.INFO);
+        Object arg = new Object();
+        com.sun.management.ThreadMXBean mx =
+            (com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean();
+        if (!mx.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        long id = Thread.currentThread().getId();
+        for (int pass = 0; pass < 3; pass++) {
+            long before = mx.getThreadAllocatedBytes(id);
+            for (int i = 0; i < 100000; i++) {
+                DebugLogger.log(m_logger, Level.FINEST, CLASS_NAME, "a",
+                                MESSAGE);
+                DebugLogger.log(m_logger, Level.FINEST, CLASS_NAME, "b",
+                                "{0}", arg);
+                DebugLogger.log(m_logger, Level.FINE, CLASS_NAME, "c",
+                                "{0} {1}", arg, CLASS_NAME);
+            }
+            long allocated = mx.getThreadAllocatedBytes(id) - before;
+            // Allow for the measurement itself, not a byte per call
+            assertTrue("" + allocated, allocated < 1024);
+        }
+        assertTrue(m_records.isEmpty());
+    }
+}
@@ -0,0 +1,158 @@
+package ds.debug;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the {@link Metrics} registry, its {@link Counter}s and
+ * {@link LatencyHistogram}s and their JMX and log views.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class MetricsUnitTest {
+
+    @After
+    public void tearDown() {
+        Metrics.stopDump();
+        Metrics.setEnabled(false);
+    }
+
+    @Test
+    public void testBuckets() {
+        long last = -1;
+        for (int i = 0; i < 900; i++) {
+            long high = LatencyHistogram.highest(i);
+            assertTrue(high > last);
+            assertTrue(LatencyHistogram.index(high) == i);
+            assertTrue(LatencyHistogram.index(last + 1) == i);
+            // Every bucket is within 1/16 of the times it holds
+            assertTrue(high - last - 1 <= Math.max(0, (last + 1) / 16));
+            last = high;
+        }
+        assertTrue(LatencyHistogram.index(Long.MAX_VALUE) <
+                   (64 - 4) * LatencyHistogram.SUB_BUCKETS);
+    }
+
+    @Test
+    public void testHistogram() {
+        Metrics.setEnabled(true);
+        LatencyHistogram h = Metrics.histogram("MetricsUnitTest.histogram");
+        h.reset();
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i * 1000L);
+        }
+        assertTrue(h.getCount() == 1000);
+        assertTrue(Math.abs(h.getMeanMicros() - 500.5) < 0.001);
+        assertTrue(h.getMaxMicros() == 1000);
+        assertTrue("" + h.getP50Micros(),
+                   Math.abs(h.getP50Micros() - 500) <= 500 / 16.0);
+        assertTrue(Math.abs(h.getP99Micros() - 990) <= 990 / 16.0);
+        assertTrue(h.getPercentile(1) == 1000000);
+        assertTrue(h.toString().startsWith(
+            "MetricsUnitTest.histogram count=1000 mean=500.50us"));
+        h.reset();
+        assertTrue(h.getCount() == 0 && h.getPercentile(0.5) == 0);
+        assertTrue(Metrics.histogram("MetricsUnitTest.histogram") == h);
+        try {
+            Metrics.counter("MetricsUnitTest.histogram");
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // A name has one kind of metric
+        }
+    }
+
+    @Test
+    public void testDisabled() {
+        Counter c = Metrics.counter("MetricsUnitTest.disabled");
+        LatencyHistogram h = Metrics.histogram("MetricsUnitTest.timer");
+        c.reset();
+        h.reset();
+        Metrics.setEnabled(false);
+        long start = Metrics.start();
+        assertTrue(start == 0);
+        c.increment();
+        c.add(5);
+        h.stop(start);
+        assertTrue(c.getCount() == 0 && h.getCount() == 0);
+        Metrics.setEnabled(true);
+        start = Metrics.start();
+        c.increment();
+        c.add(5);
+        h.stop(start);
+        assertTrue(c.getCount() == 6 && h.getCount() == 1);
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        Counter c = Metrics.counter("MetricsUnitTest.jmx");
+        Metrics.setEnabled(true);
+        c.reset();
+        c.add(3);
+        LatencyHistogram h = Metrics.histogram("MetricsUnitTest.jmxTime");
+        h.reset();
+        h.record(2000);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName on =
+            new ObjectName("ds.debug:type=Counter,name=MetricsUnitTest.jmx");
+        assertTrue(server.getAttribute(on, "Count").equals(3L));
+        on = new ObjectName(
+            "ds.debug:type=LatencyHistogram,name=MetricsUnitTest.jmxTime");
+        assertTrue(server.getAttribute(on, "MaxMicros").equals(2.0));
+        server.invoke(on, "reset", null, null);
+        assertTrue(h.getCount() == 0);
+    }
+
+    @Test
+    public void testDump() throws InterruptedException {
+        Metrics.setEnabled(true);
+        Metrics.counter("MetricsUnitTest.dump").increment();
+        assertTrue(Metrics.dump().contains("MetricsUnitTest.dump count="));
+        final List<String> messages = new ArrayList<>();
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler() {
+            @Override
+            public synchronized void publish(LogRecord r) {
+                messages.add(r.getMessage());
+                notifyAll();
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        Metrics.startDump(logger, 1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        Handler h = logger.getHandlers()[0];
+        synchronized (h) {
+            while (messages.isEmpty() && System.nanoTime() < deadline) {
+                h.wait(100);
+            }
+        }
+        Metrics.stopDump();
+        synchronized (h) {
+            assertTrue(messages.contains(
+                Metrics.counter("MetricsUnitTest.dump").toString()) ||
+                messages.toString().contains("MetricsUnitTest.dump"));
+        }
+    }
+}
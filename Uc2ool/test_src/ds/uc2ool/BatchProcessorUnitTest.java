@@ -0,0 +1,162 @@
+package ds.uc2ool;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the ordering, formats and bounded read ahead of
+ * {@link BatchProcessor}.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class BatchProcessorUnitTest {
+
+    private ExecutorService m_pool;
+
+    @Before
+    public void setUp() {
+        m_pool = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        m_pool.shutdownNow();
+    }
+
+    @Test
+    public void testJson() throws IOException {
+        String in =
+            "{\"id\":1,\"codepoint\":\"U+1F600\"}\n" +
+            "{\"codepoint\":65, \"id\":\"b\"}\n" +
+            "\n" +
+            "{\"id\":3,\"text\":\"A\\u00e9\"}\n" +
+            "\"\\ud83d\\ude00\"\n" +
+            "233\n" +
+            "{\"id\":6,\"codepoint\":\"zz\"}\n" +
+            "{\"id\":7}\n" +
+            "{\"id\":8,\"codepoint\":[1]}\n" +
+            "not json\n";
+        StringWriter out = new StringWriter();
+        BatchProcessor p = new BatchProcessor(BatchProcessor.Format.JSON,
+                                              false);
+        assertTrue(p.process(new StringReader(in), out) == 4);
+        assertTrue(p.getRecordCount() == 9);
+        String[] lines = out.toString().split("\n");
+        assertTrue(out.toString(), lines.length == 9);
+        assertTrue(lines[0].equals(
+            "{\"id\":1,\"codepoint\":\"U+1F600\",\"name\":\"GRINNING FACE\"," +
+            "\"utf8\":\"F0 9F 98 80\",\"utf16\":\"D83D DE00\"," +
+            "\"decimal\":128512}"));
+        assertTrue(lines[1].startsWith(
+            "{\"id\":\"b\",\"codepoint\":\"U+0041\""));
+        assertTrue(lines[2], lines[2].startsWith(
+            "{\"id\":3,\"codepoints\":[{\"codepoint\":\"U+0041\""));
+        assertTrue(lines[2].endsWith("\"decimal\":233}]}"));
+        assertTrue(lines[3].startsWith(
+            "{\"codepoints\":[{\"codepoint\":\"U+1F600\""));
+        assertTrue(lines[3].endsWith("\"decimal\":128512}]}"));
+        assertTrue(lines[4].startsWith("{\"codepoint\":\"U+00E9\""));
+        assertTrue(lines[5].startsWith("{\"id\":6,\"input\":\"zz\",\"error\":"));
+        assertTrue(lines[6].startsWith("{\"id\":7,\"input\":"));
+        assertTrue(lines[7].contains("\"error\":\"Nested"));
+        assertTrue(lines[8].startsWith("{\"input\":\"not json\",\"error\":"));
+    }
+
+    @Test
+    public void testNumbers() throws IOException {
+        String in =
+            "{\"id\":1,\"codepoint\":65}\n" +
+            "{\"id\":2,\"codepoint\":1e99999999}\n" +
+            "{\"id\":3,\"codepoint\":1e-99999999}\n" +
+            "{\"id\":4,\"codepoint\":65.5}\n" +
+            "{\"id\":5,\"codepoint\":-1}\n" +
+            "{\"id\":6,\"codepoint\":1114112}\n" +
+            "{\"id\":7,\"codepoint\":6.5E+1}\n";
+        StringWriter out = new StringWriter();
+        BatchProcessor p = new BatchProcessor(BatchProcessor.Format.JSON,
+                                              false);
+        assertTrue(p.process(new StringReader(in), out) == 5);
+        String[] lines = out.toString().split("\n");
+        assertTrue(out.toString(), lines.length == 7);
+        assertTrue(lines[0].startsWith("{\"id\":1,\"codepoint\":\"U+0041\""));
+        assertTrue(lines[1], lines[1].startsWith(
+            "{\"id\":2,\"input\":\"1E+99999999\",\"error\":"));
+        assertTrue(lines[2].startsWith(
+            "{\"id\":3,\"input\":\"1E-99999999\",\"error\":"));
+        assertTrue(lines[3].startsWith("{\"id\":4,\"input\":\"65.5\""));
+        assertTrue(lines[4].startsWith("{\"id\":5,\"input\":\"-1\""));
+        assertTrue(lines[5].startsWith("{\"id\":6,\"input\":\"1114112\""));
+        assertTrue(lines[6].startsWith("{\"id\":7,\"codepoint\":\"U+0041\""));
+    }
+
+    @Test
+    public void testTsv() throws IOException {
+        StringWriter out = new StringWriter();
+        BatchProcessor p = new BatchProcessor(BatchProcessor.Format.TSV,
+                                              false, m_pool, 2, 1);
+        long errors = p.process(
+            new StringReader("41\tignored\n\nU+E9\nzz\n1F600\n"), out);
+        assertTrue(errors == 1);
+        assertTrue(out.toString().equals(
+            "U+0041\tLATIN CAPITAL LETTER A\t41\t0041\t65\n" +
+            "U+00E9\tLATIN SMALL LETTER E WITH ACUTE\tC3 A9\t00E9\t233\n" +
+            "ERROR\tzz\t" + ds.uc2ool.model.Uc2oolModel.validate(
+                "zz", ds.uc2ool.model.Uc2oolModel.InputType.HEXCODEPOINT)
+                .getMessage() + "\n" +
+            "U+1F600\tGRINNING FACE\tF0 9F 98 80\tD83D DE00\t128512\n"));
+    }
+
+    @Test
+    public void testOrderAndReadAhead() throws IOException {
+        final int records = 20000;
+        final int batchSize = 7;
+        final int maxPending = 3;
+        final int[] read = new int[1];
+        BufferedReader in = new BufferedReader(new StringReader("")) {
+            @Override
+            public String readLine() {
+                return read[0] < records ? Integer.toString(read[0]++) : null;
+            }
+
+            @Override
+            public boolean ready() {
+                return read[0] < records;
+            }
+        };
+        final int[] written = new int[1];
+        final int[] maxAhead = new int[1];
+        StringWriter out = new StringWriter() {
+            @Override
+            public StringWriter append(CharSequence s) {
+                // Count lines and check their order as they are written
+                String[] lines = s.toString().split("\n");
+                for (String line : lines) {
+                    String expected = String.format("U+%04X", written[0]++);
+                    assertTrue(line, line.startsWith(expected + "\t"));
+                }
+                maxAhead[0] = Math.max(maxAhead[0], read[0] - written[0]);
+                return this;
+            }
+        };
+        BatchProcessor p = new BatchProcessor(BatchProcessor.Format.TSV,
+                                              true, m_pool, batchSize,
+                                              maxPending);
+        assertTrue(p.process(in, out) == 0);
+        assertTrue(written[0] == records);
+        // The batches pending and the one being filled
+        assertTrue("" + maxAhead[0],
+                   maxAhead[0] <= (maxPending + 1) * batchSize);
+    }
+}
@@ -0,0 +1,99 @@
+package ds.uc2ool;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the headless {@link Uc2oolCli} entry point.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class Uc2oolCliUnitTest {
+
+    private ByteArrayOutputStream m_out;
+    private ByteArrayOutputStream m_err;
+    private Uc2oolCli m_cli;
+
+    @Before
+    public void setUp() {
+        m_out = new ByteArrayOutputStream();
+        m_err = new ByteArrayOutputStream();
+        m_cli = new Uc2oolCli(new PrintStream(m_out, true),
+                              new PrintStream(m_err, true));
+    }
+
+    @Test
+    public void testArgumentsTsv() throws IOException {
+        int rc = m_cli.run(new String[] { "U+1F600", "&#65;", "0x41", "e9" },
+                           new StringReader(""));
+        assertTrue(rc == 0);
+        assertTrue(m_out.toString().equals(
+            "U+1F600\tGRINNING FACE\tF0 9F 98 80\tD83D DE00\t128512\n" +
+            "U+0041\tLATIN CAPITAL LETTER A\t41\t0041\t65\n" +
+            "U+0041\tLATIN CAPITAL LETTER A\t41\t0041\t65\n" +
+            "U+00E9\tLATIN SMALL LETTER E WITH ACUTE\tC3 A9\t00E9\t233\n"));
+    }
+
+    @Test
+    public void testRadix() throws IOException {
+        // Bare numbers are hex whatever their digits, decimal with --dec
+        assertTrue(m_cli.run(new String[] { "0041", "00E9" },
+                             new StringReader("")) == 0);
+        assertTrue(m_out.toString().equals(
+            "U+0041\tLATIN CAPITAL LETTER A\t41\t0041\t65\n" +
+            "U+00E9\tLATIN SMALL LETTER E WITH ACUTE\tC3 A9\t00E9\t233\n"));
+        m_out.reset();
+        assertTrue(m_cli.run(new String[] { "--dec", "65", "U+41", "e9" },
+                             new StringReader("")) == 1);
+        assertTrue(m_out.toString().equals(
+            "U+0041\tLATIN CAPITAL LETTER A\t41\t0041\t65\n" +
+            "U+0041\tLATIN CAPITAL LETTER A\t41\t0041\t65\n"));
+        assertTrue(m_err.toString().contains("e9"));
+    }
+
+    @Test
+    public void testStdinJson() throws IOException {
+        int rc = m_cli.run(new String[] { "--json", "--hex" },
+                           new StringReader("41\n\nzz\n"));
+        assertTrue(rc == 1);
+        assertTrue(m_out.toString().equals(
+            "{\"codepoint\":\"U+0041\",\"name\":\"LATIN CAPITAL LETTER A\"," +
+            "\"utf8\":\"41\",\"utf16\":\"0041\",\"decimal\":65}\n"));
+        assertTrue(m_err.toString().contains("zz"));
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        Path f = Files.createTempFile("uc2ool", ".txt");
+        try {
+            Files.write(f, new byte[] { 'A', (byte) 0xC3, (byte) 0xA9 });
+            int rc = m_cli.run(new String[] { "--file", f.toString() },
+                               new StringReader(""));
+            assertTrue(rc == 0);
+            assertTrue(m_out.toString().equals(
+                "0\tU+0041\tLATIN CAPITAL LETTER A\t41\t0041\t65\n" +
+                "1\tU+00E9\tLATIN SMALL LETTER E WITH ACUTE\tC3 A9\t00E9\t233\n"));
+        } finally {
+            Files.delete(f);
+        }
+    }
+
+    @Test
+    public void testBadOption() throws IOException {
+        assertTrue(m_cli.run(new String[] { "--bogus" },
+                             new StringReader("")) == 2);
+        assertTrue(m_cli.run(new String[] { "--file", "x", "--to", "utf-9" },
+                             new StringReader("")) == 2);
+    }
+}
@@ -0,0 +1,130 @@
+package ds.uc2ool;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ds.uc2ool.model.Uc2oolModel;
+
+/**
+ * Tests the {@link Uc2oolServer} HTTP endpoints over a loopback connection.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class Uc2oolServerUnitTest {
+
+    private Uc2oolServer m_server;
+    private int m_status;
+
+    @Before
+    public void setUp() throws IOException {
+        m_server = new Uc2oolServer(new InetSocketAddress("127.0.0.1", 0));
+        m_server.start();
+    }
+
+    @After
+    public void tearDown() {
+        m_server.stop(0);
+        Uc2oolModel.setEncodingCacheEnabled(false);
+    }
+
+    // Make a request, returning the body and setting m_status
+    private String request(String method, String path, String body)
+    throws IOException {
+        URL url = new URL("http://127.0.0.1:" + m_server.getPort() + path);
+        HttpURLConnection c = (HttpURLConnection) url.openConnection();
+        c.setRequestMethod(method);
+        if (body != null) {
+            c.setDoOutput(true);
+            try (OutputStream out = c.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        m_status = c.getResponseCode();
+        assertTrue(c.getContentType().startsWith("application/json"));
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        try (InputStream in = m_status < 400 ? c.getInputStream()
+                                             : c.getErrorStream()) {
+            byte[] buf = new byte[4096];
+            for (int n; (n = in.read(buf)) > 0;) {
+                b.write(buf, 0, n);
+            }
+        }
+        return new String(b.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testCodePoint() throws IOException {
+        String expected =
+            "{\"codepoint\":\"U+1F600\",\"name\":\"GRINNING FACE\"," +
+            "\"utf8\":\"F0 9F 98 80\",\"utf16\":\"D83D DE00\"," +
+            "\"decimal\":128512}";
+        assertTrue(request("GET", "/cp/1F600", null).equals(expected));
+        assertTrue(m_status == 200);
+        assertTrue(request("GET", "/cp/U+1F600", null).equals(expected));
+        String r = request("GET", "/cp/zz", null);
+        assertTrue(r, m_status == 400 && r.contains("\"error\":") &&
+                      r.contains("zz"));
+        request("POST", "/cp/41", "");
+        assertTrue(m_status == 405);
+    }
+
+    @Test
+    public void testName() throws IOException {
+        String r = request("GET", "/name?q=greek+small+alpha&limit=3", null);
+        assertTrue(r, m_status == 200 && r.startsWith("[{") &&
+                      r.contains("\"codepoint\":\"U+03B1\""));
+        assertTrue(request("GET", "/name?q=xyzzyq", null).equals("[]"));
+        request("GET", "/name", null);
+        assertTrue(m_status == 400);
+        request("GET", "/name?q=arrow&limit=x", null);
+        assertTrue(m_status == 400);
+        request("POST", "/name?q=arrow", "");
+        assertTrue(m_status == 405);
+    }
+
+    @Test
+    public void testBatch() throws IOException {
+        String r = request("POST", "/batch", "41 U+E9\nzz 1F600");
+        assertTrue(r, m_status == 200);
+        String[] items = r.substring(1, r.length() - 1).split(",\n");
+        assertTrue(items.length == 4);
+        assertTrue(items[0].contains("LATIN CAPITAL LETTER A"));
+        assertTrue(items[1].contains("\"decimal\":233"));
+        assertTrue(items[2].startsWith("{\"input\":\"zz\",\"error\":"));
+        assertTrue(items[3].contains("GRINNING FACE"));
+        r = request("POST", "/batch?radix=10", "65");
+        assertTrue(r.contains("\"codepoint\":\"U+0041\""));
+        assertTrue(request("POST", "/batch", "").equals("[]"));
+    }
+
+    @Test
+    public void testParseQuery() throws IOException {
+        Map<String, String> m = Uc2oolServer.parseQuery("q=a%20b+c&x&l=5");
+        assertTrue(m.size() == 2 && m.get("q").equals("a b c") &&
+                   m.get("l").equals("5"));
+        assertTrue(Uc2oolServer.parseQuery(null).isEmpty());
+        for (String query : new String[] { "q=%zz", "radix=%1", "%-1=x" }) {
+            try {
+                Uc2oolServer.parseQuery(query);
+                assertTrue(query, false);
+            } catch (IllegalArgumentException e) {
+                // Reported by the handlers as 400
+            }
+        }
+    }
+}
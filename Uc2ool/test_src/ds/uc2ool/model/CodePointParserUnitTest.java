@@ -0,0 +1,80 @@
+package ds.uc2ool.model;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CodePointParser}.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class CodePointParserUnitTest {
+
+    private static int parse(String s, int radix) {
+        return CodePointParser.parse(s, 0, s.length(), radix);
+    }
+
+    @Test
+    public void testNotations() {
+        String[] forms = { "0x1F600", "0X1f600", "U+1F600", "u+1f600",
+                           "\\u1F600", "\\U0001F600", "&#x1F600;",
+                           "&#X1F600;", "&#128512;", "\\uD83D\\uDE00",
+                           "  U+1F600\t" };
+        for (String f : forms) {
+            assertTrue(f, parse(f, 10) == 0x1F600);
+        }
+        assertTrue(parse("128512", 10) == 0x1F600);
+        assertTrue(parse("1F600", 16) == 0x1F600);
+        assertTrue(parse("0", 10) == 0);
+        assertTrue(parse("10FFFF", 16) == Character.MAX_CODE_POINT);
+        // A surrogate on its own is still a code point
+        assertTrue(parse("\\uD83D", 16) == 0xD83D);
+    }
+
+    @Test
+    public void testErrors() {
+        assertTrue(parse("", 16) == CodePointParser.NO_DIGITS);
+        assertTrue(parse("   ", 16) == CodePointParser.NO_DIGITS);
+        assertTrue(parse("U+", 16) == CodePointParser.NO_DIGITS);
+        assertTrue(parse("&#;", 16) == CodePointParser.NO_DIGITS);
+        assertTrue(parse("1F600", 10) == CodePointParser.BAD_DIGIT);
+        assertTrue(parse("-12", 16) == CodePointParser.BAD_DIGIT);
+        assertTrue(parse("12 34", 10) == CodePointParser.BAD_DIGIT);
+        assertTrue(parse("&#x41;;", 16) == CodePointParser.BAD_DIGIT);
+        assertTrue(parse("\\uD83D\\u0041", 16) == CodePointParser.BAD_DIGIT);
+        assertTrue(parse("\\uD83Dx", 16) == CodePointParser.BAD_DIGIT);
+        assertTrue(parse("110000", 16) == CodePointParser.OUT_OF_RANGE);
+        assertTrue(parse("99999999999999999999", 10) ==
+                   CodePointParser.OUT_OF_RANGE);
+        assertTrue(parse("&#x41", 16) == CodePointParser.UNTERMINATED);
+    }
+
+    @Test
+    public void testBuffer() {
+        StringBuilder sb = new StringBuilder("  ");
+        for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp += 97) {
+            sb.append(Integer.toHexString(cp)).append(cp % 3 == 0 ? " " : "\n");
+        }
+        sb.append("U+41 zz 0x110000");
+        CodePointParser p = new CodePointParser(sb, 16);
+        for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp += 97) {
+            assertTrue(p.next() == cp);
+            String token = sb.substring(p.getTokenStart(), p.getTokenEnd());
+            assertTrue(token.equals(Integer.toHexString(cp)));
+        }
+        assertTrue(p.next() == 'A');
+        assertTrue(p.next() == CodePointParser.BAD_DIGIT);
+        assertTrue(sb.substring(p.getTokenStart(), p.getTokenEnd())
+                     .equals("zz"));
+        assertTrue(p.next() == CodePointParser.OUT_OF_RANGE);
+        assertTrue(p.next() == CodePointParser.END);
+        assertTrue(p.next() == CodePointParser.END);
+
+        p = new CodePointParser("x 65 66 x", 2, 7, 10);
+        assertTrue(p.next() == 'A' && p.next() == 'B');
+        assertTrue(p.next() == CodePointParser.END);
+    }
+}
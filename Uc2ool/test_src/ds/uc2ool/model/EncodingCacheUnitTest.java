@@ -0,0 +1,92 @@
+package ds.uc2ool.model;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for {@link EncodingCache}, checked against the uncached encodings
+ * given by {@link Uc2oolModel} with the cache off.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class EncodingCacheUnitTest {
+
+    @After
+    public void tearDown() {
+        Uc2oolModel.setEncodingCacheEnabled(false);
+    }
+
+    @Test
+    public void testEveryCodePoint() {
+        EncodingCache cache = new EncodingCache();
+        byte[] b = new byte[4];
+        char[] c = new char[2];
+        for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+            int n = UTF8Codec.encode(cp, b, 0);
+            int packed = 0;
+            for (int i = 0; i < n; i++) {
+                packed = packed << 8 | (b[i] & 0xff);
+            }
+            // Twice, for the miss and then the hit
+            assertTrue(Integer.toHexString(cp), cache.utf8(cp) == packed);
+            assertTrue(cache.utf8(cp) == packed);
+            n = UTF16Codec.encode(cp, c, 0);
+            packed = n == 1 ? c[0] : c[0] << 16 | c[1];
+            assertTrue(EncodingCache.utf16(cp) == packed);
+        }
+    }
+
+    @Test
+    public void testFormattingMatchesUncached() {
+        int[] cps = { 0, 0x41, 0x7F, 0x80, 0x7FF, 0x800, 0xD800, 0xFFFF,
+                      0x10000, 0x1F600, Character.MAX_CODE_POINT };
+        HexFormatter.Style[] styles = HexFormatter.Style.values();
+        String[][] expected = new String[cps.length * styles.length][];
+        for (int i = 0; i < cps.length; i++) {
+            for (int s = 0; s < styles.length; s++) {
+                expected[i * styles.length + s] = new String[] {
+                    Uc2oolModel.getUTF8Encoding(cps[i], styles[s]),
+                    Uc2oolModel.getUTF16Encoding(cps[i], styles[s])
+                };
+            }
+        }
+        Uc2oolModel.setEncodingCacheEnabled(true);
+        assertTrue(Uc2oolModel.isEncodingCacheEnabled());
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < cps.length; i++) {
+                for (int s = 0; s < styles.length; s++) {
+                    String[] e = expected[i * styles.length + s];
+                    String u8 = Uc2oolModel.getUTF8Encoding(cps[i],
+                                                            styles[s]);
+                    String u16 = Uc2oolModel.getUTF16Encoding(cps[i],
+                                                              styles[s]);
+                    assertTrue(u8, u8.equals(e[0]));
+                    assertTrue(u16, u16.equals(e[1]));
+                }
+            }
+        }
+        // Values beyond Unicode are not cached but still encoded
+        assertTrue(Uc2oolModel.getUTF8Encoding(0x200000).equals(
+                       "F8 88 80 80 80"));
+        // A repeated lookup in the default style is the same String
+        assertTrue(Uc2oolModel.getUTF8Encoding(0x1F600) ==
+                   Uc2oolModel.getUTF8Encoding(0x1F600));
+    }
+
+    @Test
+    public void testSupplementaryEviction() {
+        EncodingCache cache = new EncodingCache();
+        int a = 0x1F600;
+        int b = a + EncodingCache.SUPPLEMENTARY_SLOTS;
+        assertTrue(!cache.holds(a));
+        cache.utf8(a);
+        assertTrue(cache.holds(a) && !cache.holds(b));
+        cache.utf8(b);
+        assertTrue(cache.holds(b) && !cache.holds(a));
+        assertTrue(cache.utf8(a) == 0xF09F9880);
+    }
+}
@@ -0,0 +1,128 @@
+package ds.uc2ool.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ds.uc2ool.model.FileTranscoder.Encoding;
+
+/**
+ * Tests for {@link FileTranscoder}, with input large enough that sequences
+ * fall across the chunk boundaries.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class FileTranscoderUnitTest {
+
+    private static final Encoding[] ENCODINGS = Encoding.values();
+    private static final Charset[] CHARSETS = {
+        StandardCharsets.UTF_8, StandardCharsets.UTF_16LE,
+        StandardCharsets.UTF_16BE
+    };
+
+    private Path m_in;
+    private Path m_out;
+
+    @Before
+    public void setUp() throws IOException {
+        m_in = Files.createTempFile("uc2ool", ".in");
+        m_out = Files.createTempFile("uc2ool", ".out");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(m_in);
+        Files.deleteIfExists(m_out);
+    }
+
+    /*
+     * Random text of about 3 chunks mixing 1 to 4 byte UTF-8 sequences.
+     */
+    private static String text() {
+        Random r = new Random(11);
+        StringBuilder sb = new StringBuilder();
+        int[] starts = { 0x20, 0x3B1, 0x4E00, 0x1F600 };
+        while (sb.length() < FileTranscoder.CHUNK_SIZE) {
+            int cp = starts[r.nextInt(starts.length)] + r.nextInt(64);
+            sb.appendCodePoint(cp);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testTranscodeAllPairs() throws IOException {
+        String text = text();
+        for (int f = 0; f < ENCODINGS.length; f++) {
+            Files.write(m_in, text.getBytes(CHARSETS[f]));
+            FileTranscoder t = new FileTranscoder(ENCODINGS[f]);
+            for (int o = 0; o < ENCODINGS.length; o++) {
+                long n = t.transcode(m_in, m_out, ENCODINGS[o]);
+                byte[] expected = text.getBytes(CHARSETS[o]);
+                assertTrue(ENCODINGS[f] + " to " + ENCODINGS[o],
+                           n == expected.length &&
+                           Arrays.equals(Files.readAllBytes(m_out), expected));
+                assertTrue(t.getErrorCount() == 0);
+            }
+        }
+    }
+
+    @Test
+    public void testAnalyzeOffsets() throws IOException {
+        String text = text();
+        for (int f = 0; f < ENCODINGS.length; f++) {
+            byte[] b = text.getBytes(CHARSETS[f]);
+            Files.write(m_in, b);
+            List<long[]> seen = new ArrayList<>();
+            long n = new FileTranscoder(ENCODINGS[f]).analyze(
+                m_in, (offset, cp) -> seen.add(new long[] { offset, cp }));
+            assertTrue(n == text.codePointCount(0, text.length()));
+            long offset = 0;
+            int i = 0;
+            for (long[] s : seen) {
+                int cp = text.codePointAt(i);
+                assertTrue(ENCODINGS[f] + " at " + offset,
+                           s[0] == offset && s[1] == cp);
+                offset += new String(Character.toChars(cp))
+                              .getBytes(CHARSETS[f]).length;
+                i += Character.charCount(cp);
+            }
+            assertTrue(offset == b.length);
+        }
+    }
+
+    @Test
+    public void testMalformedInput() throws IOException {
+        // Truncated UTF-8 at the end of the file
+        Files.write(m_in, new byte[] { 'A', (byte) 0xE2, (byte) 0x82 });
+        FileTranscoder t = new FileTranscoder(Encoding.UTF8);
+        t.transcode(m_in, m_out, Encoding.UTF16BE);
+        assertTrue(Arrays.equals(Files.readAllBytes(m_out),
+                                 new byte[] { 0, 'A', (byte) 0xFF,
+                                              (byte) 0xFD }));
+        assertTrue(t.getErrorCount() == 1);
+
+        // An unpaired surrogate and an odd final byte in UTF-16LE
+        Files.write(m_in, new byte[] { 'A', 0, 0x00, (byte) 0xDC, 'B' });
+        t = new FileTranscoder(Encoding.UTF16LE);
+        t.transcode(m_in, m_out, Encoding.UTF8);
+        assertTrue(Arrays.equals(Files.readAllBytes(m_out),
+                                 new byte[] { 'A', (byte) 0xEF, (byte) 0xBF,
+                                              (byte) 0xBD, (byte) 0xEF,
+                                              (byte) 0xBF, (byte) 0xBD }));
+        assertTrue(t.getErrorCount() == 2);
+    }
+}
@@ -0,0 +1,69 @@
+package ds.uc2ool.model;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ds.uc2ool.model.HexFormatter.Style;
+
+/**
+ * Tests for the table driven {@link HexFormatter}.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class HexFormatterUnitTest {
+
+    private static final byte[] BYTES = {
+        (byte) 0xF0, (byte) 0x9F, 0x0A
+    };
+
+    @Test
+    public void testByteStyles() {
+        testBytes(Style.SPACE, "F0 9F 0A");
+        testBytes(Style.NONE, "F09F0A");
+        testBytes(Style.BACKSLASH_X, "\\xF0\\x9F\\x0A");
+        testBytes(Style.PERCENT, "%F0%9F%0A");
+        testBytes(Style.HEX_LITERAL, "0xF0, 0x9F, 0x0A");
+    }
+
+    @Test
+    public void testAllByteValues() {
+        for (int i = 0; i < 256; i++) {
+            String s = HexFormatter.formatBytes(new byte[] { (byte) i }, 0, 1,
+                                                Style.NONE);
+            assertTrue(s, s.equals(String.format("%02X", i)));
+        }
+    }
+
+    @Test
+    public void testUnits() {
+        char[] c = { 0xD83D, 0xDE00, 0x0041 };
+        String s = HexFormatter.formatUnits(c, 0, c.length, Style.SPACE);
+        assertTrue(s, s.equals("D83D DE00 0041"));
+        StringBuilder sb = HexFormatter.appendUnits(c, 1, 2, Style.HEX_LITERAL,
+                                                    new StringBuilder("["));
+        assertTrue(sb.toString(), sb.toString().equals("[0xDE00, 0x0041"));
+    }
+
+    @Test
+    public void testModelStyles() {
+        assertTrue(Uc2oolModel.getUTF8Encoding(0x1F600, Style.PERCENT).equals(
+                       "%F0%9F%98%80"));
+        assertTrue(Uc2oolModel.getUTF16Encoding(0x1F600, Style.NONE).equals(
+                       "D83DDE00"));
+    }
+
+    /*
+     * Check both the char[] and StringBuilder forms against the expected
+     * result.
+     */
+    private void testBytes(Style s, String result) {
+        String a = HexFormatter.formatBytes(BYTES, 0, BYTES.length, s);
+        assertTrue(a, a.equals(result));
+        String b = HexFormatter.appendBytes(BYTES, 0, BYTES.length, s,
+                                            new StringBuilder()).toString();
+        assertTrue(b, b.equals(result));
+    }
+}
@@ -0,0 +1,124 @@
+package ds.uc2ool.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ds.uc2ool.model.UTF8Decoder.ErrorType;
+
+/**
+ * Tests that {@link ParallelAnalyzer} gives the same statistics as a
+ * sequential decode, however finely the file is split.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class ParallelAnalyzerUnitTest {
+
+    private Path m_file;
+
+    @Before
+    public void setUp() throws IOException {
+        m_file = Files.createTempFile("uc2ool", ".txt");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(m_file);
+    }
+
+    /*
+     * Mostly well formed text of every sequence length, with some random
+     * bytes mixed in.
+     */
+    private static byte[] text() {
+        Random r = new Random(12);
+        StringBuilder sb = new StringBuilder();
+        int[] starts = { 0x20, 0x3B1, 0x4E00, 0x1F600 };
+        while (sb.length() < 256 * 1024) {
+            sb.appendCodePoint(starts[r.nextInt(starts.length)] +
+                               r.nextInt(64));
+        }
+        byte[] b = sb.toString().getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < 2000; i++) {
+            b[r.nextInt(b.length)] = (byte) r.nextInt(256);
+        }
+        return b;
+    }
+
+    @Test
+    public void testMatchesSequential() throws IOException {
+        byte[] b = text();
+        Files.write(m_file, b);
+        TextStatistics expected = new TextStatistics();
+        int[] cps = UTF8Decoder.decodeAll(b, null);
+        expected.add(cps, 0, cps.length);
+        UTF8Decoder.decodeAll(b, (t, o) -> expected.addError(t));
+        expected.addBytes(b.length);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int split : new int[] { 1000, 4099, 65536, b.length }) {
+                TextStatistics s = ParallelAnalyzer.analyze(m_file, pool, split);
+                String at = "Split " + split;
+                assertTrue(at, s.getByteCount() == b.length);
+                assertTrue(at, s.getCodePointCount() == cps.length);
+                assertTrue(at, s.getErrorCount() == expected.getErrorCount());
+                for (ErrorType t : ErrorType.values()) {
+                    assertTrue(at, s.getErrorCount(t) ==
+                                   expected.getErrorCount(t));
+                }
+                for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+                    if (s.getCount(cp) != expected.getCount(cp)) {
+                        assertTrue(at + " at " + Integer.toHexString(cp),
+                                   false);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(expected.getErrorCount() > 0);
+    }
+
+    @Test
+    public void testContinuationBytesToEnd() throws IOException {
+        // Resyncing from the middle reaches the end, leaving nothing to
+        // split off
+        Files.write(m_file, new byte[] { 'A', (byte) 0x80, (byte) 0x80,
+                                         (byte) 0x80, (byte) 0x80 });
+        TextStatistics s = ParallelAnalyzer.analyze(m_file,
+                                                    ForkJoinPool.commonPool(),
+                                                    4);
+        assertTrue(s.getByteCount() == 5 && s.getCodePointCount() == 5);
+        assertTrue(s.getErrorCount(ErrorType.UNEXPECTED_CONTINUATION) == 4);
+    }
+
+    @Test
+    public void testDistributions() throws IOException {
+        Files.write(m_file, "AB\u03B1\u4E00\u4E00\u4E00".getBytes(
+                                StandardCharsets.UTF_8));
+        TextStatistics s = ParallelAnalyzer.analyze(m_file);
+        assertTrue(s.getDistinctCount() == 4);
+        assertTrue(s.getMostFrequent(2)[0] == 0x4E00);
+        assertTrue(s.getMostFrequent(2)[1] == 'A');
+        Map<String, Long> blocks = s.getBlockCounts();
+        assertTrue(blocks.keySet().iterator().next().equals(
+                       "CJK_UNIFIED_IDEOGRAPHS"));
+        assertTrue(blocks.get("BASIC_LATIN") == 2);
+        Map<String, Long> scripts = s.getScriptCounts();
+        assertTrue(scripts.get("HAN") == 3 && scripts.get("LATIN") == 2 &&
+                   scripts.get("GREEK") == 1);
+    }
+}
@@ -0,0 +1,52 @@
+package ds.uc2ool.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Objects;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that a {@link PropertyDatabase} generated from the JDK answers
+ * exactly as the <code>java.lang.Character</code> queries it replaces.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class PropertyDatabaseUnitTest {
+
+    private static PropertyDatabase s_db;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        s_db = PropertyDatabase.wrap(PropertyDatabaseBuilder.fromJDK().build());
+    }
+
+    @Test
+    public void testAllCodePointsMatchJDK() {
+        for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+            Character.UnicodeBlock b = Character.UnicodeBlock.of(cp);
+            String at = "At " + Integer.toHexString(cp);
+            assertTrue(at, s_db.getGeneralCategory(cp) == Character.getType(cp));
+            assertTrue(at, s_db.getScript(cp).equals(
+                               Character.UnicodeScript.of(cp).name()));
+            assertTrue(at, Objects.equals(s_db.getBlock(cp),
+                                          b == null ? null : b.toString()));
+            assertTrue(at, s_db.getUTF8Length(cp) ==
+                               UTF8Codec.encodedLength(cp));
+            assertTrue(at, s_db.getUTF16Length(cp) == Character.charCount(cp));
+        }
+    }
+
+    @Test
+    public void testNamesMatchJDK() {
+        int[] sample = { 0x0, 0x41, 0x3B1, 0x4E00, 0xAC00, 0xE000, 0x10385,
+                         0x1F600, 0xF0000, 0x10FFFF, 0x378 };
+        for (int cp : sample) {
+            assertTrue(Integer.toHexString(cp),
+                       Objects.equals(s_db.getName(cp), Character.getName(cp)));
+        }
+    }
+}
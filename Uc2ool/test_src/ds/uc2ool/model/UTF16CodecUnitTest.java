@@ -0,0 +1,111 @@
+package ds.uc2ool.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for the bulk {@link UTF16Codec} encoder and decoder.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class UTF16CodecUnitTest {
+
+    private static final int[] SAMPLE = {
+        0x0, 0x41, 0xffff, 0x10000, 0x11000, 0x10ffff, 0xfb25
+    };
+
+    private static final String SAMPLE_STRING = new String(SAMPLE, 0,
+                                                           SAMPLE.length);
+
+    @Test
+    public void testEncodeCharBuffer() {
+        CharBuffer dst = CharBuffer.allocate(32);
+        int n = Uc2oolModel.encodeUtf16(SAMPLE, dst);
+        dst.flip();
+        assertTrue("Wrote " + n, n == SAMPLE_STRING.length());
+        assertTrue(dst.toString().equals(SAMPLE_STRING));
+    }
+
+    @Test
+    public void testEncodeMatchesModelEncoding() {
+        char[] c = new char[2];
+        for (int cp : SAMPLE) {
+            int n = UTF16Codec.encode(cp, c, 0);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < n; i++) {
+                sb.append(String.format("%04X ", (int) c[i]));
+            }
+            assertTrue(sb.toString(),
+                       sb.toString().trim().equals(
+                           Uc2oolModel.getUTF16Encoding(cp)));
+        }
+    }
+
+    @Test
+    public void testDecodeRoundTrip() {
+        int[] cps = new int[SAMPLE.length];
+        int n = Uc2oolModel.decodeUtf16(SAMPLE_STRING, cps);
+        assertTrue("Decoded " + n, n == SAMPLE.length);
+        assertTrue(Arrays.equals(SAMPLE, cps));
+    }
+
+    @Test
+    public void testDecodeUnpairedSurrogate() {
+        int[] cps = new int[4];
+        int n = UTF16Codec.decodeUtf16("a\uD800b\uDC00", cps);
+        assertTrue("Decoded " + n, n == 4);
+        assertTrue(cps[1] == 0xD800 && cps[3] == 0xDC00);
+    }
+
+    @Test
+    public void testByteOrderVariants() {
+        ByteBuffer be = ByteBuffer.allocate(64);
+        ByteBuffer le = ByteBuffer.allocate(64);
+        UTF16Codec.encodeUtf16BE(SAMPLE, 0, SAMPLE.length, be);
+        UTF16Codec.encodeUtf16LE(SAMPLE, 0, SAMPLE.length, le);
+        assertTrue(Arrays.equals(
+                       SAMPLE_STRING.getBytes(StandardCharsets.UTF_16BE),
+                       Arrays.copyOf(be.array(), be.position())));
+        assertTrue(Arrays.equals(
+                       SAMPLE_STRING.getBytes(StandardCharsets.UTF_16LE),
+                       Arrays.copyOf(le.array(), le.position())));
+
+        // Decode with the final byte held back to split the last code unit
+        le.flip();
+        le.limit(le.limit() - 1);
+        int[] cps = new int[SAMPLE.length];
+        int n = UTF16Codec.decodeUtf16(le, false, cps, 0);
+        assertTrue("Decoded " + n, n == SAMPLE.length - 1);
+        le.limit(le.limit() + 1);
+        n += UTF16Codec.decodeUtf16(le, false, cps, n);
+        assertTrue(Arrays.equals(SAMPLE, cps));
+    }
+
+    @Test
+    public void testInvalidCodePointInByteBuffers() {
+        ByteBuffer[] buffers = {
+            ByteBuffer.allocate(16), ByteBuffer.allocateDirect(16)
+        };
+        for (ByteBuffer dst : buffers) {
+            for (int bad : new int[] { -1, 0x110000, Integer.MIN_VALUE }) {
+                dst.clear();
+                try {
+                    UTF16Codec.encodeUtf16BE(new int[] { 0x41, bad }, 0, 2,
+                                             dst);
+                    assertTrue(dst.isDirect() + " " + bad, false);
+                } catch (IllegalArgumentException e) {
+                    // Only the valid code point before it is written
+                    assertTrue(dst.position() == 2);
+                }
+            }
+        }
+    }
+}
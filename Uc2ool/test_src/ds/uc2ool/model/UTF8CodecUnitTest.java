@@ -0,0 +1,102 @@
+package ds.uc2ool.model;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for the bulk {@link UTF8Codec} encoder, checking it against the
+ * String based {@link Uc2oolModel} encoding and the JDK UTF-8 charset.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class UTF8CodecUnitTest {
+
+    /*
+     * Code points on the edges of, and within, each encoding range
+     */
+    private static final int[] RANGE_EDGES = {
+        0x0, 0x41, 0x7f,
+        0x80, 0x600, 0x7ff,
+        0x800, 0xfb25, 0xffff,
+        0x10000, 0x10385, 0x10ffff, 0x1fffff,
+        0x200000, 0x3ffffff,
+        0x4000000, 0x7fffffff
+    };
+
+    @Test
+    public void testBulkMatchesModelEncoding() {
+        ByteBuffer dst = ByteBuffer.allocate(
+                UTF8Codec.encodedLength(RANGE_EDGES, 0, RANGE_EDGES.length));
+        int n = Uc2oolModel.encodeUtf8(RANGE_EDGES, 0, RANGE_EDGES.length,
+                                       dst);
+        assertTrue("Wrote " + n, n == dst.capacity());
+        dst.flip();
+        for (int cp : RANGE_EDGES) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < UTF8Codec.encodedLength(cp); i++) {
+                sb.append(String.format("%02X ", dst.get() & 0xff));
+            }
+            String expected = Uc2oolModel.getUTF8Encoding(cp);
+            assertTrue(Integer.toHexString(cp) + " : " + sb,
+                       sb.toString().trim().equals(expected));
+        }
+    }
+
+    @Test
+    public void testAllScalarValuesMatchJDK() {
+        int[] cps = new int[0x110000 - 0x800];
+        int len = 0;
+        for (int cp = 0; cp <= 0x10ffff; cp++) {
+            if (cp < Character.MIN_SURROGATE || cp > Character.MAX_SURROGATE) {
+                cps[len++] = cp;
+            }
+        }
+        ByteBuffer dst = ByteBuffer.allocateDirect(
+                UTF8Codec.encodedLength(cps, 0, len));
+        UTF8Codec.encodeUtf8(cps, 0, len, dst);
+        byte[] actual = new byte[dst.flip().remaining()];
+        dst.get(actual);
+        byte[] expected =
+            new String(cps, 0, len).getBytes(StandardCharsets.UTF_8);
+        assertTrue(Arrays.equals(expected, actual));
+    }
+
+    @Test
+    public void testOverflowWritesWholeCodePoints() {
+        int[] cps = { 0x41, 0x10385 };
+        ByteBuffer dst = ByteBuffer.allocate(3);
+        try {
+            UTF8Codec.encodeUtf8(cps, 0, cps.length, dst);
+            fail("Expected BufferOverflowException");
+        } catch (BufferOverflowException boe) {
+            // Expected
+            assertTrue("Position : " + dst.position(), dst.position() == 1);
+        }
+    }
+
+    @Test
+    public void testInvalidCodePointWritesWholeCodePoints() {
+        int[] cps = { 0x41, 0xE9, -1, 0x42 };
+        ByteBuffer[] buffers = { ByteBuffer.allocate(8),
+                                 ByteBuffer.allocateDirect(8) };
+        for (ByteBuffer dst : buffers) {
+            try {
+                UTF8Codec.encodeUtf8(cps, 0, cps.length, dst);
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException iae) {
+                // The same on both paths
+                assertTrue("Position : " + dst.position(),
+                           dst.position() == 3);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package ds.uc2ool.model;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ds.debug.DebugLogger;
+import ds.uc2ool.model.Uc2oolModel.InputType;
+import ds.uc2ool.model.UTF8Decoder.ErrorType;
+
+/**
+ * Tests for the incremental {@link UTF8Decoder} and the UTF-8 and character
+ * input types of {@link Uc2oolModel} which use it.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class UTF8DecoderUnitTest {
+
+    /*
+     * Decode input one chunk at a time, chunk sizes cycling 1 to 7 bytes
+     */
+    private static int[] decodeChunked(byte[] src, UTF8Decoder d) {
+        int[] dst = new int[src.length + 1];
+        int n = 0;
+        int off = 0;
+        int chunk = 1;
+        while (off < src.length) {
+            int len = Math.min(chunk, src.length - off);
+            n += d.decode(src, off, len, dst, n);
+            off += len;
+            chunk = chunk % 7 + 1;
+        }
+        n += d.finish(dst, n);
+        return Arrays.copyOf(dst, n);
+    }
+
+    @Test
+    public void testChunkedMatchesJDK() {
+        String s = "A\u00E9\u0800\uFB25\uD800\uDC00\uDBFF\uDFFF z";
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        int[] expected = s.codePoints().toArray();
+        assertTrue(Arrays.equals(expected,
+                                 decodeChunked(b, new UTF8Decoder())));
+    }
+
+    @Test
+    public void testRandomBytesMatchJDKReplacement() {
+        Random r = new Random(8);
+        byte[] b = new byte[64 * 1024];
+        r.nextBytes(b);
+        // The JDK replaces an encoded surrogate prefix such as ED A2 with a
+        // single U+FFFD rather than one per maximal subpart, so avoid ED.
+        for (int i = 0; i < b.length; i++) {
+            if (b[i] == (byte) 0xED) {
+                b[i] = (byte) 0xEE;
+            }
+        }
+        int[] expected =
+            new String(b, StandardCharsets.UTF_8).codePoints().toArray();
+        assertTrue(Arrays.equals(expected,
+                                 decodeChunked(b, new UTF8Decoder())));
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        byte[] b = "x\uD83D\uDE00y".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer src = ByteBuffer.allocateDirect(b.length);
+        src.put(b).flip();
+        int[] dst = new int[8];
+        int n = new UTF8Decoder().decode(src, dst, 0);
+        assertTrue("Decoded " + n, n == 3 && dst[1] == 0x1F600);
+    }
+
+    @Test
+    public void testArrayTooSmall() {
+        byte[] b = "ab\u00e9cd".getBytes(StandardCharsets.UTF_8);
+        UTF8Decoder d = new UTF8Decoder();
+        int[] dst = new int[5];
+        assertTrue(d.decode(b, 0, b.length, dst, 0) == 5);
+        // Every byte must be consumed, so too small a dst is an error
+        try {
+            new UTF8Decoder().decode(b, 0, b.length, dst, 1);
+            fail();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            assertTrue(dst[4] == 'c');
+        }
+    }
+
+    @Test
+    public void testErrorOffsets() {
+        final List<String> errors = new ArrayList<>();
+        UTF8Decoder d = new UTF8Decoder(
+            (t, off) -> errors.add(t + "@" + off));
+        byte[] b = {
+            0x41,                               // A
+            (byte) 0xC0, (byte) 0xAF,           // overlong '/'
+            (byte) 0xE0, (byte) 0x80, 0x41,     // overlong 3 byte
+            (byte) 0xED, (byte) 0xA0,           // surrogate
+            (byte) 0xF4, (byte) 0x90,           // above U+10FFFF
+            (byte) 0xFF,                        // invalid
+            (byte) 0xE2, (byte) 0x82            // truncated
+        };
+        decodeChunked(b, d);
+        List<String> expected = Arrays.asList(
+            "OVERLONG@1", "UNEXPECTED_CONTINUATION@2",
+            "OVERLONG@3", "UNEXPECTED_CONTINUATION@4",
+            "SURROGATE@6", "UNEXPECTED_CONTINUATION@7",
+            "OUT_OF_RANGE@8", "UNEXPECTED_CONTINUATION@9",
+            "INVALID_LEAD_BYTE@10",
+            "TRUNCATED_SEQUENCE@11");
+        assertTrue(errors.toString(), errors.equals(expected));
+        assertTrue(d.getFirstError() == ErrorType.OVERLONG);
+        assertTrue(d.getFirstErrorOffset() == 1);
+    }
+
+    @Test
+    public void testModelUTF8Input() throws Exception {
+        Uc2oolModel m = new Uc2oolModel(
+            new DebugLogger("UTF8DecoderUnitTest", "uc2oolTests%g.log"));
+        m.setInput("F0 90 8E 85", InputType.UTF8);
+        assertTrue(m.getDecimalCodePoint().equals("66437"));
+        m.setInput("c3a9", InputType.UTF8);
+        assertTrue(m.getUTF16Encoding().equals("00E9"));
+        m.setInput("\uD83D\uDE00", InputType.CHARACTER);
+        assertTrue(m.getUTF8Encoding().equals("F0 9F 98 80"));
+        try {
+            m.setInput("C0 AF", InputType.UTF8);
+            fail("Expected exception not thrown");
+        } catch (UncheckedModelException uce) {
+            // Expected
+            assertTrue("Got : " + uce.getLocalizedMessage(),
+                       uce.getLocalizedMessage().equals(
+                           "Invalid UTF-8 encoding C0 AF."));
+        }
+        try {
+            m.setInput("ab", InputType.CHARACTER);
+            fail("Expected exception not thrown");
+        } catch (UncheckedModelException uce) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package ds.uc2ool.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link UTF8Validator}, checked against {@link UTF8Codec}
+ * encodings and the first error reported by {@link UTF8Decoder}. The
+ * scanner tests use the vector implementation when run with
+ * <code>--add-modules jdk.incubator.vector</code>.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class UTF8ValidatorUnitTest {
+
+    /*
+     * Check b in heap and direct buffers of both byte orders, at a non
+     * zero position, returning the common result.
+     */
+    private static int validate(byte[] b) {
+        int result = 0;
+        boolean first = true;
+        for (boolean direct : new boolean[] { false, true }) {
+            for (ByteOrder order : new ByteOrder[] {
+                     ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+                int n = b.length + 3;
+                ByteBuffer buf = direct ? ByteBuffer.allocateDirect(n)
+                                        : ByteBuffer.allocate(n);
+                buf.order(order);
+                buf.position(3);
+                buf.put(b).position(3);
+                int r = UTF8Validator.validate(buf);
+                assertTrue(buf.position() == 3);
+                assertTrue(first || r == result);
+                result = r;
+                first = false;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testEveryCodePoint() {
+        byte[] b = new byte[20];
+        for (int cp = 0; cp <= 0x10FFFF; cp++) {
+            // Surround each encoding with ASCII so both paths are used
+            int n = UTF8Codec.encode(cp, b, 9);
+            for (int i = 0; i < 9; i++) {
+                b[i] = 'a';
+            }
+            b[9 + n] = 'z';
+            ByteBuffer buf = ByteBuffer.wrap(b, 0, 10 + n);
+            int r = UTF8Validator.validate(buf);
+            boolean surrogate = cp >= 0xD800 && cp <= 0xDFFF;
+            assertTrue(Integer.toHexString(cp), r == (surrogate ? 9 : -1));
+        }
+    }
+
+    @Test
+    public void testOutOfRange() {
+        byte[] b = new byte[6];
+        for (int cp : new int[] { 0x110000, 0x1FFFFF, 0x200000, 0x3FFFFFF,
+                                  0x4000000, Integer.MAX_VALUE }) {
+            int n = UTF8Codec.encode(cp, b, 0);
+            assertTrue(Integer.toHexString(cp),
+                       !UTF8Validator.isValid(ByteBuffer.wrap(b, 0, n)));
+        }
+    }
+
+    @Test
+    public void testMalformed() {
+        assertTrue(validate(new byte[] { 'a', (byte) 0xC0, (byte) 0x80 })
+                   == 1);
+        assertTrue(validate(new byte[] { (byte) 0xE0, (byte) 0x9F,
+                                         (byte) 0xBF }) == 0);
+        assertTrue(validate(new byte[] { 'a', 'b', 'c', 'd', 'e', 'f', 'g',
+                                         'h', 'i', (byte) 0x80 }) == 9);
+        assertTrue(validate(new byte[] { 'a', (byte) 0xF0, (byte) 0x9F,
+                                         (byte) 0x98 }) == 1);
+        assertTrue(validate(new byte[] { (byte) 0xF4, (byte) 0x90,
+                                         (byte) 0x80, (byte) 0x80 }) == 0);
+        assertTrue(validate(new byte[] { (byte) 0xFF }) == 0);
+        assertTrue(validate(new byte[0]) == -1);
+    }
+
+    @Test
+    public void testRandomMatchesDecoder() {
+        Random r = new Random(13);
+        for (int t = 0; t < 20000; t++) {
+            byte[] b = new byte[r.nextInt(40)];
+            for (int i = 0; i < b.length; i++) {
+                // Mostly ASCII with the occasional byte of any value
+                b[i] = (byte) (r.nextInt(8) == 0 ? r.nextInt(256)
+                                                 : r.nextInt(128));
+            }
+            UTF8Decoder d = new UTF8Decoder();
+            int[] dst = new int[b.length + 1];
+            d.decode(b, 0, b.length, dst, 0);
+            d.finish(dst, 0);
+            assertTrue(validate(b) == (int) d.getFirstErrorOffset());
+        }
+    }
+
+    @Test
+    public void testCountCodePoints() {
+        Random r = new Random(17);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.appendCodePoint(r.nextInt(4) != 0 ? 'a' + r.nextInt(26)
+                                                 : r.nextInt(0xD800));
+            sb.appendCodePoint(0x10000 + r.nextInt(0x100000));
+        }
+        String text = sb.toString();
+        byte[] b = text.getBytes(StandardCharsets.UTF_8);
+        long n = text.codePointCount(0, text.length());
+        UTF8Scanner s = UTF8Validator.getScanner();
+        for (int off = 0; off < 40; off += 3) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(b.length + off);
+            buf.position(off);
+            buf.put(b).position(off);
+            assertTrue(UTF8Validator.countCodePoints(buf) == n);
+            assertTrue(s.countCodePoints(buf) == n);
+            assertTrue(s.validate(buf) == -1);
+            assertTrue(buf.position() == off);
+        }
+    }
+
+    @Test
+    public void testScannerMatchesValidator() {
+        UTF8Scanner s = UTF8Validator.getScanner();
+        assertTrue(s == UTF8Validator.getScanner());
+        Random r = new Random(19);
+        for (int t = 0; t < 20000; t++) {
+            // Long enough for several vector registers
+            byte[] b = new byte[r.nextInt(300)];
+            for (int i = 0; i < b.length; i++) {
+                b[i] = (byte) (r.nextInt(64) == 0 ? r.nextInt(256)
+                                                  : r.nextInt(128));
+            }
+            ByteBuffer buf = ByteBuffer.wrap(b);
+            int expected = UTF8Validator.validate(buf);
+            assertTrue(s.validate(buf) == expected);
+            long count = 0;
+            for (byte x : b) {
+                count += (x & 0xc0) != 0x80 ? 1 : 0;
+            }
+            assertTrue(s.countCodePoints(buf) == count);
+            assertTrue(UTF8Validator.countCodePoints(buf) == count);
+        }
+    }
+
+    @Test
+    public void testScannerArrayOffset() {
+        // Heap buffers are read through their arrays, so a slice, whose
+        // array offset is not zero, must be read from the right place
+        byte[] b = new byte[200];
+        Arrays.fill(b, (byte) 'a');
+        b[150] = (byte) 0xC3;
+        b[151] = (byte) 0xA9;
+        b[180] = (byte) 0xFF;
+        ByteBuffer whole = ByteBuffer.wrap(b);
+        whole.position(10).limit(175);
+        ByteBuffer slice = whole.slice();
+        UTF8Scanner s = UTF8Validator.getScanner();
+        for (ByteBuffer buf : new ByteBuffer[] { whole, slice,
+                                                 slice.asReadOnlyBuffer() }) {
+            assertTrue(s.validate(buf) == -1);
+            assertTrue(s.countCodePoints(buf) == 164);
+        }
+        whole.limit(200);
+        assertTrue(s.validate(whole) == 170);
+        assertTrue(UTF8Validator.validate(whole) == 170);
+    }
+}
@@ -3,11 +3,17 @@ package ds.uc2ool.model;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
+import java.util.Locale;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import ds.debug.Counter;
 import ds.debug.DebugLogger;
+import ds.debug.LatencyHistogram;
+import ds.debug.Metrics;
 import ds.uc2ool.model.Uc2oolModel;
 import ds.uc2ool.model.UncheckedModelException;
 import ds.uc2ool.model.Uc2oolModel.InputType;
@@ -301,6 +307,211 @@ public class Uc2oolUnitTest {
                    m_calc.getUTF16Encoding().equals(result));
     }
     
+    /*
+     * Test the stateless describe() facade agrees with the instance methods
+     */
+    @Test
+    public void testDescribeMatchesInstance() {
+        m_calc.setInput("10385", InputType.HEXCODEPOINT);
+        CodePointInfo info = Uc2oolModel.describe(0x10385);
+        assertTrue(info.getUnicodeCharacterName(),
+                   info.getUnicodeCharacterName().equals(
+                       m_calc.getUnicodeCharacterName()));
+        assertTrue(info.getUTF8Encoding(),
+                   info.getUTF8Encoding().equals("F0 90 8E 85"));
+        assertTrue(info.getUTF16Encoding(),
+                   info.getUTF16Encoding().equals(
+                       m_calc.getUTF16Encoding()));
+        assertTrue(info.getDecimalCodePoint(),
+                   info.getDecimalCodePoint().equals("66437"));
+        assertTrue(info.getUnicodeCharacter().equals(
+                       m_calc.getUnicodeCharacter()));
+    }
+    
+    @Test
+    public void testParseCodePoint() {
+        assertTrue(Uc2oolModel.parseCodePoint("U+1F600",
+                                              InputType.HEXCODEPOINT)
+                   == 0x1F600);
+        assertTrue(Uc2oolModel.parseCodePoint("128",
+                                              InputType.DECCODEPOINT)
+                   == 128);
+        assertTrue(Uc2oolModel.parseCodePoint("&#x1F600;",
+                                              InputType.DECCODEPOINT)
+                   == 0x1F600);
+        assertTrue(Uc2oolModel.parseCodePoint("&#233;",
+                                              InputType.HEXCODEPOINT)
+                   == 0xE9);
+        assertTrue(Uc2oolModel.parseCodePoint("\\uD83D\\uDE00",
+                                              InputType.HEXCODEPOINT)
+                   == 0x1F600);
+        try {
+            Uc2oolModel.parseCodePoint("1114112", InputType.DECCODEPOINT);
+            fail("Excepted exception not thrown");
+        } catch (UncheckedModelException uce) {
+            // Expected
+        }
+    }
+    
+    /*
+     * Test the exception free validation path gives the same results and
+     * messages as the throwing one
+     */
+    @Test
+    public void testValidate() {
+        ValidationResult r = Uc2oolModel.validate("1F600",
+                                                  InputType.HEXCODEPOINT);
+        assertTrue(r.isValid() && r.getCodePoint() == 0x1F600);
+        assertTrue(r.getMessage() == null && r.getMessageKey() == null);
+        assertTrue(Uc2oolModel.tryParseCodePoint("F0 9F 98 80",
+                                                 InputType.UTF8) == 0x1F600);
+        String[][] bad = { { "CHARACTER", "ab" }, { "UTF8", "C3" },
+                           { "DECCODEPOINT", "1F600" },
+                           { "HEXCODEPOINT", "-12" },
+                           { "NAME", "NOT A CHARACTER" } };
+        for (String[] b : bad) {
+            InputType type = InputType.valueOf(b[0]);
+            assertTrue(b[1], Uc2oolModel.tryParseCodePoint(b[1], type) ==
+                             Uc2oolModel.INVALID);
+            r = Uc2oolModel.validate(b[1], type);
+            assertTrue(!r.isValid() && r.getCodePoint() == Uc2oolModel.INVALID);
+            try {
+                m_calc.setInput(b[1], type);
+                fail("Excepted exception not thrown");
+            } catch (UncheckedModelException uce) {
+                assertTrue(uce.getLocalizedMessage().equals(r.getMessage()));
+                assertTrue(uce.getMessageKey().equals(r.getMessageKey()));
+                assertTrue(uce.getStackTrace().length == 0);
+            }
+            assertTrue(r.toException().getLocalizedMessage().equals(
+                           r.getMessage()));
+        }
+        assertTrue(Uc2oolModel.tryParseCodePoint(null, InputType.UTF8) ==
+                   Uc2oolModel.INVALID);
+    }
+    
+    /*
+     * Test name to code point lookups through the name index
+     */
+    @Test
+    public void testNameInput() {
+        m_calc.setInput("ugaritic letter ho", InputType.NAME);
+        assertTrue(m_calc.getDecimalCodePoint(),
+                   m_calc.getDecimalCodePoint().equals("66437"));
+        m_calc.setInput("CJK UNIFIED IDEOGRAPHS 4E00", InputType.NAME);
+        assertTrue(m_calc.getUTF16Encoding(),
+                   m_calc.getUTF16Encoding().equals("4E00"));
+        assertTrue(m_calc.getUnicodeCharacterName().equals(
+                       Character.getName(0x4E00)));
+    }
+    
+    @Test
+    public void testNamePrefix() {
+        int[] cps = Uc2oolModel.findByNamePrefix("LATIN CAPITAL LETTER A", 3);
+        assertTrue("Found " + cps.length, cps.length == 3);
+        assertTrue(cps[0] == 0x41);
+    }
+    
+    @Test
+    public void testGeneratedNamePrefix() {
+        UnicodeNameIndex idx = UnicodeNameIndex.getInstance();
+        String[] prefixes = {
+            "CJK UNIFIED IDEOGRAPHS 4E", "cjk unified ideographs 9",
+            "CJK UNIFIED IDEOGRAPHS ", "CJK UNIFIED IDEOGRAPHS E",
+            "CJK UNIFIED IDEOGRAPHS 4E00", "CJK UNIFIED IDEOGRAPHS 04E",
+            "CJK UNIFIED IDEOGRAPHS 4EZ", "CJK UNIFIED IDEOGRAPHS 4E0000",
+            "CJK UNIFIED IDEOGRAPHS EXTENSION B 2A6"
+        };
+        for (String prefix : prefixes) {
+            String p = prefix.toUpperCase(Locale.ROOT);
+            int[] expected = new int[Character.MAX_CODE_POINT + 1];
+            int n = 0;
+            for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+                String name = idx.getName(cp);
+                if (name != null && name.startsWith(p)) {
+                    expected[n++] = cp;
+                }
+            }
+            int[] found = Uc2oolModel.findByNamePrefix(prefix, 1 << 20);
+            Arrays.sort(found);
+            assertTrue(prefix, Arrays.equals(
+                found, Arrays.copyOf(expected, n)));
+        }
+        int[] cps = Uc2oolModel.findByNamePrefix("CJK UNIFIED IDEOGRAPHS 4E",
+                                                 300);
+        assertTrue(cps.length == 256 && cps[0] == 0x4E00 &&
+                   cps[255] == 0x4EFF);
+        assertTrue(Uc2oolModel.findByNamePrefix(
+            "CJK UNIFIED IDEOGRAPHS EXTENSION B 2", 3)[2] == 0x20002);
+        assertTrue(Uc2oolModel.findByNamePrefix("LATIN", 0).length == 0);
+        try {
+            Uc2oolModel.findByNamePrefix("LATIN", -1);
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+    
+    @Test
+    public void testNameSearch() {
+        int[] cps = Uc2oolModel.searchNames("greek small alpha", 5);
+        assertTrue("Found " + cps.length, cps.length == 5);
+        // The exact name ranks first being the shortest whole word match
+        assertTrue(cps[0] == 0x3B1);
+        for (int cp : cps) {
+            String n = Character.getName(cp);
+            assertTrue(n, n.contains("GREEK") && n.contains("SMALL") &&
+                          n.contains("ALPHA"));
+        }
+        assertTrue(Uc2oolModel.searchNames("XYZZYQ", 5).length == 0);
+    }
+    
+    @Test
+    public void testShortNameSearch() {
+        for (String q : new String[] { "ar", "A", "rr", "a b", "e s", "1" }) {
+            String[] words = q.toUpperCase().split(" ");
+            int[] all = Uc2oolModel.searchNames(q, 5000);
+            assertTrue(q, all.length > 20);
+            long last = Long.MIN_VALUE;
+            for (int cp : all) {
+                String n = Character.getName(cp);
+                int score = 0;
+                for (String w : words) {
+                    int best = 0;
+                    for (String nw : n.split(" ")) {
+                        int at = nw.indexOf(w);
+                        best = Math.max(best, nw.equals(w) ? 3
+                                              : at == 0 ? 2 : at > 0 ? 1 : 0);
+                    }
+                    assertTrue(q + " " + n, best > 0);
+                    score += best;
+                }
+                // Best score, then shortest name, then lowest code point
+                long order = ((long) (10 - score) << 40) |
+                             ((long) n.length() << 24) | cp;
+                assertTrue(q + " " + n, order > last);
+                last = order;
+            }
+            int[] some = Uc2oolModel.searchNames(q, 20);
+            for (int i = 0; i < some.length; i++) {
+                assertTrue(q, some[i] == all[i]);
+            }
+        }
+    }
+    
+    @Test
+    public void testUnknownName() {
+        try {
+            m_calc.setInput("NOT A CHARACTER", InputType.NAME);
+            fail("Excepted exception not thrown");
+        } catch (UncheckedModelException uce) {
+            // Expected
+            assertTrue("Got : " + uce.getLocalizedMessage(),
+                       uce.getLocalizedMessage().equals(
+                           "No character is named NOT A CHARACTER."));
+        }
+    }
+    
     // Test exception cases
     @Test
     public void testHCPUBelow0() {
@@ -314,6 +525,48 @@ public class Uc2oolUnitTest {
                            "Invalid hexadecimal code point -12."));
         }
     }
-    
-    
+
+    @Test
+    public void testMetrics() {
+        String[] names = { "setInput", "getUTF8Encoding", "getUTF16Encoding",
+                           "getUnicodeCharacterName", "searchNames" };
+        LatencyHistogram[] h = new LatencyHistogram[names.length];
+        for (int i = 0; i < names.length; i++) {
+            h[i] = Metrics.histogram("Uc2oolModel." + names[i]);
+            h[i].reset();
+        }
+        Counter invalid = Metrics.counter("Uc2oolModel.invalidInputs");
+        invalid.reset();
+        try {
+            // Nothing is recorded while disabled
+            m_calc.setInput("41", InputType.HEXCODEPOINT);
+            m_calc.getUTF8Encoding();
+            Uc2oolModel.tryParseCodePoint("zz", InputType.HEXCODEPOINT);
+            assertTrue(h[0].getCount() == 0 && h[1].getCount() == 0 &&
+                       invalid.getCount() == 0);
+            Metrics.setEnabled(true);
+            m_calc.setInput("1F600", InputType.HEXCODEPOINT);
+            m_calc.getUTF8Encoding();
+            m_calc.getUTF16Encoding();
+            m_calc.getUnicodeCharacterName();
+            Uc2oolModel.searchNames("grinning", 5);
+            for (int i = 0; i < names.length; i++) {
+                assertTrue(names[i], h[i].getCount() == 1);
+            }
+            Uc2oolModel.tryParseCodePoint("zz", InputType.HEXCODEPOINT);
+            assertTrue(!Uc2oolModel.validate("110000",
+                                             InputType.HEXCODEPOINT)
+                                   .isValid());
+            try {
+                m_calc.setInput("-1", InputType.DECCODEPOINT);
+                fail("Expected UncheckedModelException");
+            } catch (UncheckedModelException e) {
+                // Counted, though not timed
+            }
+            assertTrue(invalid.getCount() == 3);
+            assertTrue(h[0].getCount() == 1);
+        } finally {
+            Metrics.setEnabled(false);
+        }
+    }
 }
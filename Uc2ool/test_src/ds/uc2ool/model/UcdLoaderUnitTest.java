@@ -0,0 +1,169 @@
+package ds.uc2ool.model;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link UcdLoader} against a small Unicode Character Database
+ * written in the same format as the real files.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public class UcdLoaderUnitTest {
+
+    private static final String UNICODE_DATA =
+        "0000;<control>;Cc;0;BN;;;;;N;NULL;;;;\n" +
+        "0041;LATIN CAPITAL LETTER A;Lu;0;L;;;;;N;;;;0061;\n" +
+        "00E9;LATIN SMALL LETTER E WITH ACUTE;Ll;0;L;0065 0301;;;;N;;;00C9;;00C9\n" +
+        "3400;<CJK Ideograph Extension A, First>;Lo;0;L;;;;;N;;;;;\n" +
+        "4DBF;<CJK Ideograph Extension A, Last>;Lo;0;L;;;;;N;;;;;\n" +
+        "AC00;<Hangul Syllable, First>;Lo;0;L;;;;;N;;;;;\n" +
+        "D7A3;<Hangul Syllable, Last>;Lo;0;L;;;;;N;;;;;\n" +
+        "E000;<Private Use, First>;Co;0;L;;;;;N;;;;;\n" +
+        "F8FF;<Private Use, Last>;Co;0;L;;;;;N;;;;;\n" +
+        "1F600;GRINNING FACE;So;0;ON;;;;;N;;;;;\n";
+
+    private static final String BLOCKS =
+        "# Blocks-99.0.0.txt\n" +
+        "# Comment\n" +
+        "\n" +
+        "0000..007F; Basic Latin\n" +
+        "0080..00FF; Latin-1 Supplement\n" +
+        "0100..017F; Not A Real Block\n" +
+        "0370..03FF; Greek and Coptic\n" +
+        "0500..052F; Cyrillic Supplement\n" +
+        "3400..4DBF; CJK Unified Ideographs Extension A\n" +
+        "AC00..D7AF; Hangul Syllables\n";
+
+    private static final String SCRIPTS =
+        "# Scripts-99.0.0.txt\n" +
+        "# Date: never\n" +
+        "\n" +
+        "0000..001F    ; Common # Cc  [32] <control-0000>..<control-001F>\n" +
+        "0041..005A    ; Latin # L&  [26] LATIN CAPITAL LETTER A..Z\n" +
+        "00E9          ; Latin # L&       LATIN SMALL LETTER E WITH ACUTE\n" +
+        "AC00..D7A3    ; Hangul # Lo [11172] HANGUL SYLLABLE GA..HIH\n" +
+        "1F600         ; Common # So       GRINNING FACE\n";
+
+    private Path m_dir;
+
+    @Before
+    public void setUp() throws IOException {
+        m_dir = Files.createTempDirectory("ucd");
+        write(UcdLoader.UNICODE_DATA, UNICODE_DATA);
+        write(UcdLoader.BLOCKS, BLOCKS);
+        write(UcdLoader.SCRIPTS, SCRIPTS);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (String f : new String[] { UcdLoader.UNICODE_DATA,
+                                       UcdLoader.BLOCKS, UcdLoader.SCRIPTS,
+                                       UcdLoader.CACHE_FILE_NAME }) {
+            Files.deleteIfExists(m_dir.resolve(f));
+        }
+        Files.delete(m_dir);
+    }
+
+    @Test
+    public void testProperties() throws IOException {
+        PropertyDatabase db = UcdLoader.load(m_dir);
+        assertTrue(db.getUnicodeVersion().equals("Unicode 99.0.0"));
+        assertTrue(db.getGeneralCategory(0x41) == Character.UPPERCASE_LETTER);
+        assertTrue(db.getGeneralCategory(0xE9) == Character.LOWERCASE_LETTER);
+        assertTrue(db.getGeneralCategory(0x1F600) == Character.OTHER_SYMBOL);
+        assertTrue(db.getGeneralCategory(0x4000) == Character.OTHER_LETTER);
+        assertTrue(db.getGeneralCategory(0xF000) == Character.PRIVATE_USE);
+        assertTrue(db.getGeneralCategory(0x42) == Character.UNASSIGNED);
+        assertTrue(db.getBlock(0x41).equals("BASIC_LATIN"));
+        assertTrue(db.getBlock(0xE9).equals("LATIN_1_SUPPLEMENT"));
+        assertTrue(db.getBlock(0x4000).equals(
+                       "CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A"));
+        assertTrue(db.getBlock(0x1F600) == null);
+        // Blocks are named as by Character.UnicodeBlock, not the UCD
+        assertTrue(db.getBlock(0x3B1).equals("GREEK"));
+        assertTrue(db.getBlock(0x500).equals("CYRILLIC_SUPPLEMENTARY"));
+        assertTrue(db.getBlock(0x3B1).equals(
+                       Character.UnicodeBlock.of(0x3B1).toString()));
+        assertTrue(db.getBlock(0x100).equals("NOT_A_REAL_BLOCK"));
+        assertTrue(db.getScript(0x10).equals("COMMON"));
+        assertTrue(db.getScript(0xE9).equals("LATIN"));
+        assertTrue(db.getScript(0xAC01).equals("HANGUL"));
+        assertTrue(db.getScript(0x4000).equals("UNKNOWN"));
+    }
+
+    @Test
+    public void testNames() throws IOException {
+        PropertyDatabase db = UcdLoader.load(m_dir);
+        assertTrue(db.getName(0x0).equals("NULL"));
+        assertTrue(db.getName(0x41).equals("LATIN CAPITAL LETTER A"));
+        assertTrue(db.getName(0x1F600).equals("GRINNING FACE"));
+        assertTrue(db.getName(0x4DB5).equals("CJK UNIFIED IDEOGRAPH-4DB5"));
+        assertTrue(db.getName(0xE000) == null);
+        assertTrue(db.getName(0x42) == null);
+        assertTrue(db.getName(0xAC00).equals("HANGUL SYLLABLE GA"));
+        assertTrue(db.getName(0xAC01).equals("HANGUL SYLLABLE GAG"));
+        assertTrue(db.getName(0xAE4C).equals("HANGUL SYLLABLE GGA"));
+        assertTrue(db.getName(0xC544).equals("HANGUL SYLLABLE A"));
+        assertTrue(db.getName(0xD7A3).equals("HANGUL SYLLABLE HIH"));
+    }
+
+    @Test
+    public void testSnapshotReused() throws IOException {
+        UcdLoader.load(m_dir);
+        Path cache = m_dir.resolve(UcdLoader.CACHE_FILE_NAME);
+        assertTrue(Files.isRegularFile(cache));
+
+        // A newer snapshot is used without reparsing the text
+        Files.write(m_dir.resolve(UcdLoader.UNICODE_DATA), new byte[0]);
+        FileTime old = FileTime.fromMillis(
+            Files.getLastModifiedTime(cache).toMillis() - 60000);
+        for (String f : new String[] { UcdLoader.UNICODE_DATA,
+                                       UcdLoader.BLOCKS, UcdLoader.SCRIPTS }) {
+            Files.setLastModifiedTime(m_dir.resolve(f), old);
+        }
+        assertTrue(UcdLoader.load(m_dir).getName(0x41) != null);
+
+        // A changed text file is reparsed
+        Files.setLastModifiedTime(
+            m_dir.resolve(UcdLoader.UNICODE_DATA),
+            FileTime.fromMillis(old.toMillis() + 120000));
+        assertTrue(UcdLoader.load(m_dir).getName(0x41) == null);
+    }
+
+    @Test
+    public void testSnapshotNotWritable() throws IOException {
+        // A directory where the snapshot belongs cannot be replaced, as a
+        // read-only directory would not be written (even by root)
+        Path cache = Files.createDirectory(
+            m_dir.resolve(UcdLoader.CACHE_FILE_NAME));
+        Path inner = Files.createFile(cache.resolve("x"));
+        try {
+            PropertyDatabase db = UcdLoader.load(m_dir);
+            assertTrue(db.getName(0x41).equals("LATIN CAPITAL LETTER A"));
+            assertTrue(db.getBlock(0xE9).equals("LATIN_1_SUPPLEMENT"));
+            try (Stream<Path> s = Files.list(m_dir)) {
+                assertTrue(s.count() == 4);
+            }
+        } finally {
+            Files.delete(inner);
+        }
+    }
+
+    private void write(String name, String content) throws IOException {
+        Files.write(m_dir.resolve(name),
+                    content.getBytes(StandardCharsets.US_ASCII));
+    }
+}
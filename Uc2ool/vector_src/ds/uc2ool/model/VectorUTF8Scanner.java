@@ -0,0 +1,121 @@
+/**
+ * Copyright Daniel Semler 2015
+ */
+package ds.uc2ool.model;
+
+import java.nio.ByteBuffer;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorUTF8Scanner is a <code>UTF8Scanner</code> built on the incubating
+ * JDK Vector API, which compiles to the SSE/AVX or NEON units of the
+ * machine. It lives in its own source root, compiled for Java 17 with
+ * <code>--add-modules jdk.incubator.vector</code>, and is only ever loaded
+ * by reflection from <code>UTF8Validator.getScanner()</code>.
+ *
+ * Validation tests a whole register of bytes for a set high bit with one
+ * compare and skips runs of ASCII a register at a time; multi-byte
+ * sequences are followed by the same DFA as <code>UTF8Validator</code>, so
+ * both always agree. Counting treats bytes as signed, where continuation
+ * bytes 0x80 to 0xBF are exactly those below -64, and counts the lanes
+ * that are not.
+ *
+ * Registers are loaded with <code>ByteVector.fromArray()</code>, the one
+ * load every JDK from 17 on provides: <code>fromByteBuffer()</code> was
+ * removed in JDK 20. Buffers without an accessible array, direct or read
+ * only, are therefore left to the scalar code of
+ * <code>UTF8Validator</code>.
+ *
+ * @author  Daniel Semler
+ * @version %I%, %G%
+ * @since   1.0
+ */
+public final class VectorUTF8Scanner implements UTF8Scanner {
+
+    private static final VectorSpecies<Byte> SPECIES =
+        ByteVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    /**
+     * Create the scanner.
+     *
+     * @throws UnsupportedOperationException if the machine has no vector
+     * registers worth using
+     */
+    public VectorUTF8Scanner() {
+        if (LANES < 16) {
+            throw new UnsupportedOperationException(
+                "Vector registers of " + LANES + " bytes");
+        }
+        // Link every Vector API call now so that a JVM whose incubator API
+        // differs from the one compiled against fails here, where
+        // UTF8Validator falls back to the scalar scanner, rather than later
+        ByteBuffer b = ByteBuffer.allocate(LANES * 2);
+        b.put(LANES, (byte) 0xC3).put(LANES + 1, (byte) 0xA9);
+        if (validate(b) != -1 || countCodePoints(b) != LANES * 2 - 1) {
+            throw new UnsupportedOperationException("Self test failed");
+        }
+    }
+
+    @Override
+    public int validate(ByteBuffer b) {
+        if (!b.hasArray()) {
+            return UTF8Validator.validate(b);
+        }
+        byte[] a = b.array();
+        int base = b.arrayOffset();
+        int start = b.position();
+        int end = b.limit();
+        int i = start;
+        while (i + LANES <= end) {
+            VectorMask<Byte> high = load(a, base + i).lt((byte) 0);
+            if (!high.anyTrue()) {
+                i += LANES;
+                continue;
+            }
+            i = UTF8Validator.sequences(b, i + high.firstTrue(), end);
+            if (i < 0) {
+                return ~i - start;
+            }
+        }
+        while (i < end) {
+            if (b.get(i) >= 0) {
+                i++;
+                continue;
+            }
+            i = UTF8Validator.sequences(b, i, end);
+            if (i < 0) {
+                return ~i - start;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public long countCodePoints(ByteBuffer b) {
+        if (!b.hasArray()) {
+            return UTF8Validator.countCodePoints(b);
+        }
+        byte[] a = b.array();
+        int base = b.arrayOffset();
+        int end = b.limit();
+        int i = b.position();
+        long n = 0;
+        for (; i + LANES <= end; i += LANES) {
+            n += LANES - load(a, base + i).lt((byte) -64).trueCount();
+        }
+        for (; i < end; i++) {
+            if (b.get(i) >= -64) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static ByteVector load(byte[] a, int i) {
+        return ByteVector.fromArray(SPECIES, a, i);
+    }
+}